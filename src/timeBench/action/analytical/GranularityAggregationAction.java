@@ -15,6 +15,7 @@ import timeBench.data.Instant;
 import timeBench.data.TemporalDataException;
 import timeBench.data.TemporalDataset;
 import timeBench.data.TemporalDatasetProvider;
+import timeBench.data.TemporalDatasetSnapshot;
 import timeBench.data.TemporalObject;
 
 /**
@@ -33,6 +34,7 @@ public class GranularityAggregationAction extends prefuse.action.Action implemen
     private final Logger logger = Logger.getLogger(this.getClass());
     
 	TemporalDataset sourceDataset;
+	TemporalDatasetSnapshot sourceSnapshot = null;
 	GranularityAggregationTree workingDataset;
 	Calendar calendar;
 	Granularity[] granularities;	
@@ -71,6 +73,29 @@ public class GranularityAggregationAction extends prefuse.action.Action implemen
 		}
 		this.missingValueIdentifier = missingValueIdentifier;
 	}
+
+	/**
+	 * Creates an action that aggregates a snapshot of a temporal dataset, so
+	 * that it can run on another thread than the one modifying the dataset.
+	 * Each run aggregates a copy of the snapshot (see
+	 * {@link TemporalDatasetSnapshot#toTemporalDataset()}).
+	 * 
+	 * @param sourceSnapshot
+	 *            the snapshot to aggregate
+	 * @param granularities
+	 *            the granularities of the aggregation levels
+	 * @param aggFct
+	 *            the aggregation function per level or <tt>null</tt> for
+	 *            the mean
+	 * @param missingValueIdentifier
+	 *            the value of missing data
+	 */
+	public GranularityAggregationAction(TemporalDatasetSnapshot sourceSnapshot,
+			Granularity[] granularities, GranularityAggregationFunction[] aggFct,
+			Double missingValueIdentifier) {
+		this((TemporalDataset) null, granularities, aggFct, missingValueIdentifier);
+		this.sourceSnapshot = sourceSnapshot;
+	}
 	
 
 	/* (non-Javadoc)
@@ -80,6 +105,8 @@ public class GranularityAggregationAction extends prefuse.action.Action implemen
 	public void run(double frac) {
 		logger.trace("run -> begin of method");
 		try {
+			if (sourceSnapshot != null)
+				sourceDataset = sourceSnapshot.toTemporalDataset();
 			workingDataset = new GranularityAggregationTree(sourceDataset.getDataColumnSchema(),granularities.length+1);
 			
 
@@ -162,10 +189,10 @@ public class GranularityAggregationAction extends prefuse.action.Action implemen
 					aggregate(workingDataset.getTemporalObject(roots[i]),currentLeaves.get(i),0);
 			}
 			
-			// TODO this could be cleaned
-			for (long rootId : roots) {
-			    workingDataset.getTemporalObject(rootId).setRoot(true);
-			}
+			int[] rootRows = new int[roots.length];
+			for(int i=0; i<rootRows.length; i++)
+				rootRows[i] = workingDataset.getTemporalObjectRow(roots[i]);
+			workingDataset.setRoots(rootRows);
 			
 		} catch (TemporalDataException e1) {
 			// TODO Auto-generated catch block
@@ -63,10 +63,12 @@ public class InterpolationIndexingAction extends IndexingAction {
 //        System.out.printf("searching window: %tF - %tF %n", (indexTime-windowSize), (indexTime+windowSize));
         
         while (ii.hasNext()) {
-            GenericTemporalElement el = store.getTemporalElementByRow(ii.nextInt());
+            int elRow = ii.nextInt();
+            GenericTemporalElement el = store.getTemporalElementByRow(elRow);
 //            System.out.println("in window: " + el);
             if (el.isAnchored()) {
-                for (TemporalObject obj : el.temporalObjects(tmpds)) {
+                for (int objRow : tmpds.getTemporalObjectRowsByElementRow(elRow)) {
+                    TemporalObject obj = (TemporalObject) tmpds.getNode(objRow);
 //                    System.out.println("     with: " + obj + " value=" + obj.getDouble(absoluteValueField));
                     if (el.getSup() < indexTime) {
                         TemporalObject prev = left.get(obj.get(categoryField));
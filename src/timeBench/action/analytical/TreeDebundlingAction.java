@@ -5,12 +5,14 @@ import java.util.Arrays;
 import java.util.Hashtable;
 import java.util.Iterator;
 
+import prefuse.data.column.Column;
 import prefuse.data.tuple.TableTuple;
 
 import timeBench.data.TemporalDataException;
 import timeBench.data.TemporalDataset;
 import timeBench.data.TemporalDatasetProvider;
 import timeBench.data.TemporalObject;
+import timeBench.data.util.DictionaryColumn;
 
 /**
  * 
@@ -42,7 +44,7 @@ public class TreeDebundlingAction extends prefuse.action.Action implements Tempo
 	public void run(double frac) {
 		try {
 			workingDataset = new TemporalDataset();
-			workingDataset.addDataColumn("label", String.class, "");
+			workingDataset.addDataColumn("label", String.class, "", true);
 			workingDataset.addDataColumn("class", int.class, -1);
 			
 			for(TemporalObject root : sourceDataset.roots()) {
@@ -67,14 +69,30 @@ public class TreeDebundlingAction extends prefuse.action.Action implements Tempo
 			}
 			
 			workingClasses = new ArrayList<String>();
-			for(TemporalObject iTo : workingDataset.temporalObjects()) {
-				String label = iTo.getString("label");
-				int thisclass = workingClasses.indexOf(label);
-				if (thisclass == -1) {
-					workingClasses.add(label);
-					thisclass = workingClasses.size()-1;
+			Column labels = workingDataset.getNodeTable().getColumn("label");
+			if (labels instanceof DictionaryColumn) {
+				// group by label codes instead of comparing label strings
+				DictionaryColumn dictionary = (DictionaryColumn) labels;
+				int[] classOfCode = new int[dictionary.getDictionarySize()+1];
+				Arrays.fill(classOfCode, -1);
+				for(TemporalObject iTo : workingDataset.temporalObjects()) {
+					int code = dictionary.getCode(iTo.getRow());
+					if (classOfCode[code+1] == -1) {
+						workingClasses.add(dictionary.getValue(code));
+						classOfCode[code+1] = workingClasses.size()-1;
+					}
+					iTo.setInt("class", classOfCode[code+1]);
+				}
+			} else {
+				for(TemporalObject iTo : workingDataset.temporalObjects()) {
+					String label = iTo.getString("label");
+					int thisclass = workingClasses.indexOf(label);
+					if (thisclass == -1) {
+						workingClasses.add(label);
+						thisclass = workingClasses.size()-1;
+					}
+					iTo.setInt("class", thisclass);
 				}
-				iTo.setInt("class", thisclass);
 			}
 			
 			classes = new Hashtable<String, Integer>();
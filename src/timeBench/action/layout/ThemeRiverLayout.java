@@ -89,13 +89,14 @@ public class ThemeRiverLayout extends Layout {
         float maxLower = 0;
         IntIterator elIterator = sourceDataset.getTemporalElements().getNodeTable().index(TemporalElement.INF).allRows(Index.TYPE_ASCENDING);
         while (elIterator.hasNext()) {
-            TemporalElement el = sourceDataset.getTemporalElements().getTemporalPrimitiveByRow(elIterator.nextInt());
-            TemporalObject iTO = (TemporalObject)el.temporalObjects().iterator().next();
+            int elRow = elIterator.nextInt();
+            TemporalObject iTO = (TemporalObject) sourceDataset.getNode(sourceDataset
+                    .getTemporalObjectRowsByElementRow(elRow)[0]);
         	float upper = 0;
         	float lower = 0;
         	//System.out.print(JavaDateCalendarManager.formatDebugString(el.asGeneric().getInf())+"|");
         	for(int j=0; j<dataColumnIndices.length; j++) {
-            	buffer[j][i*2] = timeScale.getPixelForDate(iTO.getTemporalElement().asGeneric().getInf());
+            	buffer[j][i*2] = timeScale.getPixelForDate(sourceDataset.getTemporalElements().getInf(elRow));
             	float val = iTO.getFloat(dataColumnIndices[j]);
             	//System.out.print(val+"|");
         		if(j % 2 == 0) {
@@ -0,0 +1,269 @@
+package timeBench.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.event.ColumnListener;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * Caches for each temporal element row whether it is anchored and the rows of
+ * its first and last instant. Values are computed on demand and cleared for
+ * an element and its ancestors, when its kind or its children change. Thus,
+ * repeated queries do not walk the temporal element graph.
+ *
+ * <p>
+ * The cache listens to the source and target columns of the edge table, so
+ * that it is invalidated after the graph has updated its adjacency lists.
+ *
+ * @see TemporalElementStore#isAnchored(int)
+ */
+class AnchorCache {
+
+    /**
+     * the first or last instant cannot be determined from rows (e.g., the end
+     * of an interval given by a begin instant and a span)
+     */
+    static final int UNRESOLVED = -3;
+
+    /**
+     * marks a row whose first or last instant has not been computed yet
+     */
+    private static final int UNKNOWN = -2;
+
+    private final TemporalElementStore store;
+    private final Column colSource;
+    private final Column colTarget;
+
+    private final BitSet known = new BitSet();
+    private final BitSet anchored = new BitSet();
+    private int[] firstInstants = new int[0];
+    private int[] lastInstants = new int[0];
+
+    AnchorCache(TemporalElementStore store) {
+        this.store = store;
+        Table edges = store.getEdgeTable();
+        this.colSource = edges.getColumn(store.getEdgeSourceField());
+        this.colTarget = edges.getColumn(store.getEdgeTargetField());
+
+        store.getNodeTable().addTableListener(new ElementListener());
+        EdgeListener edgeListener = new EdgeListener();
+        edges.addTableListener(edgeListener);
+        colSource.addColumnListener(edgeListener);
+        colTarget.addColumnListener(edgeListener);
+    }
+
+    /**
+     * Check whether a temporal element is anchored, i.e., its kind is instant
+     * or interval or its kind is set and at least one child is anchored.
+     */
+    boolean isAnchored(int row) {
+        if (!known.get(row)) {
+            boolean value = false;
+            int kind = store.getKind(row);
+            if (kind == TemporalElementStore.PRIMITIVE_INSTANT
+                    || kind == TemporalElementStore.PRIMITIVE_INTERVAL) {
+                value = true;
+            } else if (kind == TemporalElementStore.PRIMITIVE_SET) {
+                IntIterator edges = store.inEdgeRows(row);
+                while (edges.hasNext() && !value) {
+                    value = isAnchored(store.getSourceNode(edges.nextInt()));
+                }
+            }
+            anchored.set(row, value);
+            known.set(row);
+        }
+        return anchored.get(row);
+    }
+
+    /**
+     * Get the row of the first instant of a temporal element.
+     *
+     * @return the row, -1 if there is no instant, or {@link #UNRESOLVED}
+     * @see TemporalElement#getFirstInstant()
+     */
+    int getFirstInstantRow(int row) {
+        ensureCapacity(row);
+        if (firstInstants[row] == UNKNOWN) {
+            // the recursion might grow the array
+            int instant = instantRow(row, true);
+            firstInstants[row] = instant;
+        }
+        return firstInstants[row];
+    }
+
+    /**
+     * Get the row of the last instant of a temporal element.
+     *
+     * @return the row, -1 if there is no instant, or {@link #UNRESOLVED}
+     * @see TemporalElement#getLastInstant()
+     */
+    int getLastInstantRow(int row) {
+        ensureCapacity(row);
+        if (lastInstants[row] == UNKNOWN) {
+            // the recursion might grow the array
+            int instant = instantRow(row, false);
+            lastInstants[row] = instant;
+        }
+        return lastInstants[row];
+    }
+
+    private int instantRow(int row, boolean first) {
+        int kind = store.getKind(row);
+        if (kind == TemporalElementStore.PRIMITIVE_INSTANT) {
+            return row;
+        }
+        int count = store.getInDegree(row);
+        if (count == 0) {
+            return (kind == TemporalElementStore.PRIMITIVE_INTERVAL) ? UNRESOLVED
+                    : -1;
+        }
+        int child = store.getChildRow(row, first ? 0 : count - 1);
+        if (kind == TemporalElementStore.PRIMITIVE_INTERVAL) {
+            // begin or end of an interval, unless it is derived from a span
+            return (store.getKind(child) == TemporalElementStore.PRIMITIVE_INSTANT) ? child
+                    : UNRESOLVED;
+        }
+        return first ? getFirstInstantRow(child) : getLastInstantRow(child);
+    }
+
+    private void ensureCapacity(int row) {
+        if (row >= firstInstants.length) {
+            int size = Math.max(row + 1, firstInstants.length * 3 / 2);
+            int old = firstInstants.length;
+            firstInstants = Arrays.copyOf(firstInstants, size);
+            lastInstants = Arrays.copyOf(lastInstants, size);
+            Arrays.fill(firstInstants, old, size, UNKNOWN);
+            Arrays.fill(lastInstants, old, size, UNKNOWN);
+        }
+    }
+
+    /**
+     * Clear the cached values of an element and all ancestors. Ancestors of
+     * an element without cached values are not visited, because their values
+     * do not depend on it.
+     */
+    private void invalidate(int row) {
+        if (row < 0) {
+            return;
+        }
+        boolean cached = known.get(row);
+        known.clear(row);
+        if (row < firstInstants.length) {
+            cached |= firstInstants[row] != UNKNOWN
+                    || lastInstants[row] != UNKNOWN;
+            firstInstants[row] = UNKNOWN;
+            lastInstants[row] = UNKNOWN;
+        }
+        if (cached && store.getNodeTable().isValidRow(row)) {
+            IntIterator edges = store.outEdgeRows(row);
+            while (edges.hasNext()) {
+                invalidate(store.getTargetNode(edges.nextInt()));
+            }
+        }
+    }
+
+    /**
+     * Clear the cached value of an element without visiting its ancestors.
+     */
+    private void clear(int row) {
+        known.clear(row);
+        if (row < firstInstants.length) {
+            firstInstants[row] = UNKNOWN;
+            lastInstants[row] = UNKNOWN;
+        }
+    }
+
+    private void clearAll() {
+        known.clear();
+        Arrays.fill(firstInstants, UNKNOWN);
+        Arrays.fill(lastInstants, UNKNOWN);
+    }
+
+    /**
+     * Clears cached values if the kind of an element changes. New and removed
+     * rows are cleared, because row numbers are reused; their relationships
+     * are tracked by the {@link EdgeListener}.
+     */
+    private class ElementListener implements TableListener {
+        @Override
+        public void tableChanged(Table t, int start, int end, int col, int type) {
+            if (col == EventConstants.ALL_COLUMNS) {
+                if (type != EventConstants.UPDATE) {
+                    for (int r = start; r <= end; r++) {
+                        clear(r);
+                    }
+                }
+            } else if (type != EventConstants.UPDATE) {
+                // column added or removed
+                clearAll();
+            } else if (TemporalElement.KIND.equals(t.getColumnName(col))) {
+                for (int r = start; r <= end; r++) {
+                    invalidate(r);
+                }
+            }
+        }
+    }
+
+    /**
+     * Clears cached values of the parent elements of changed edges.
+     */
+    private class EdgeListener implements TableListener, ColumnListener {
+        @Override
+        public void tableChanged(Table t, int start, int end, int col, int type) {
+            if (col != EventConstants.ALL_COLUMNS) {
+                if (type != EventConstants.UPDATE) {
+                    clearAll();
+                }
+            } else if (type != EventConstants.UPDATE) {
+                // values of deleted edges are still accessible
+                for (int e = start; e <= end; e++) {
+                    invalidate(store.getTargetNode(e));
+                }
+            }
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, int prev) {
+            columnChanged(src, idx, (long) prev);
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, long prev) {
+            // removed edges are reverted to defaults after the delete event
+            if (!store.getEdgeTable().isValidRow(idx)) {
+                return;
+            }
+            if (src == colTarget) {
+                invalidate(store.getNodeIndex(prev));
+            }
+            invalidate(store.getTargetNode(idx));
+        }
+
+        @Override
+        public void columnChanged(Column src, int type, int start, int end) {
+            clearAll();
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, Object prev) {
+            clearAll();
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, float prev) {
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, double prev) {
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, boolean prev) {
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package timeBench.data;
+
+import prefuse.data.DataTypeException;
+import prefuse.data.column.Column;
+import timeBench.data.util.DictionaryColumn;
+import timeBench.data.util.DoubleArrayColumn;
+import timeBench.data.util.IntArrayColumn;
+import timeBench.data.util.LongArrayColumn;
+
+/**
+ * Read-only values of a column at the time a snapshot was taken. Columns
+ * backed by primitive arrays and dictionary columns share their segments
+ * copy-on-write, other columns are copied.
+ *
+ * @see TemporalDatasetSnapshot
+ */
+abstract class ColumnSnapshot {
+
+    private static final int SHIFT = LongArrayColumn.SEGMENT_SHIFT;
+    private static final int MASK = LongArrayColumn.SEGMENT_MASK;
+
+    /**
+     * number of rows in the snapshot; shared segments may be longer
+     */
+    protected final int size;
+
+    protected ColumnSnapshot(int size) {
+        this.size = size;
+    }
+
+    /**
+     * Take a snapshot of the first rows of a column.
+     *
+     * @param col
+     *            the column
+     * @param size
+     *            the number of rows to include
+     * @return the snapshot
+     */
+    static ColumnSnapshot of(Column col, int size) {
+        // share segments unless values are stored off-heap
+        if (col instanceof LongArrayColumn) {
+            long[][] values = ((LongArrayColumn) col).shareValues();
+            if (values != null) {
+                return new LongValues(values, size);
+            }
+        } else if (col instanceof IntArrayColumn) {
+            int[][] values = ((IntArrayColumn) col).shareValues();
+            if (values != null) {
+                return new IntValues(values, size);
+            }
+        } else if (col instanceof DoubleArrayColumn) {
+            return new DoubleValues(((DoubleArrayColumn) col).shareValues(),
+                    size);
+        } else if (col instanceof DictionaryColumn) {
+            DictionaryColumn dc = (DictionaryColumn) col;
+            return new DictionaryValues(dc.shareCodes(),
+                    dc.shareDictionary(), size);
+        }
+
+        Class<?> type = col.getColumnType();
+        if (type == long.class) {
+            long[][] values = new long[segments(size)][];
+            for (int s = 0; s < values.length; s++) {
+                values[s] = new long[segmentLength(s, size)];
+                for (int i = 0; i < values[s].length; i++) {
+                    values[s][i] = col.getLong((s << SHIFT) + i);
+                }
+            }
+            return new LongValues(values, size);
+        } else if (type == int.class) {
+            int[][] values = new int[segments(size)][];
+            for (int s = 0; s < values.length; s++) {
+                values[s] = new int[segmentLength(s, size)];
+                for (int i = 0; i < values[s].length; i++) {
+                    values[s][i] = col.getInt((s << SHIFT) + i);
+                }
+            }
+            return new IntValues(values, size);
+        } else if (type == double.class || type == float.class) {
+            double[][] values = new double[segments(size)][];
+            for (int s = 0; s < values.length; s++) {
+                values[s] = new double[segmentLength(s, size)];
+                for (int i = 0; i < values[s].length; i++) {
+                    values[s][i] = col.getDouble((s << SHIFT) + i);
+                }
+            }
+            return new DoubleValues(values, size);
+        } else {
+            Object[] values = new Object[size];
+            for (int row = 0; row < size; row++) {
+                values[row] = col.get(row);
+            }
+            return new ObjectValues(values, size);
+        }
+    }
+
+    private static int segments(int size) {
+        return (int) (((long) size + MASK) >>> SHIFT);
+    }
+
+    private static int segmentLength(int segment, int size) {
+        return Math.min(MASK + 1, size - (segment << SHIFT));
+    }
+
+    abstract Object get(int row);
+
+    abstract long getLong(int row);
+
+    abstract int getInt(int row);
+
+    abstract double getDouble(int row);
+
+    protected void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + row);
+        }
+    }
+
+    private static class LongValues extends ColumnSnapshot {
+        private final long[][] values;
+
+        LongValues(long[][] values, int size) {
+            super(size);
+            this.values = values;
+        }
+
+        @Override
+        Object get(int row) {
+            return Long.valueOf(getLong(row));
+        }
+
+        @Override
+        long getLong(int row) {
+            checkRow(row);
+            return values[row >>> SHIFT][row & MASK];
+        }
+
+        @Override
+        int getInt(int row) {
+            return (int) getLong(row);
+        }
+
+        @Override
+        double getDouble(int row) {
+            return (double) getLong(row);
+        }
+    }
+
+    private static class IntValues extends ColumnSnapshot {
+        private final int[][] values;
+
+        IntValues(int[][] values, int size) {
+            super(size);
+            this.values = values;
+        }
+
+        @Override
+        Object get(int row) {
+            return Integer.valueOf(getInt(row));
+        }
+
+        @Override
+        long getLong(int row) {
+            return getInt(row);
+        }
+
+        @Override
+        int getInt(int row) {
+            checkRow(row);
+            return values[row >>> SHIFT][row & MASK];
+        }
+
+        @Override
+        double getDouble(int row) {
+            return getInt(row);
+        }
+    }
+
+    private static class DoubleValues extends ColumnSnapshot {
+        private final double[][] values;
+
+        DoubleValues(double[][] values, int size) {
+            super(size);
+            this.values = values;
+        }
+
+        @Override
+        Object get(int row) {
+            return Double.valueOf(getDouble(row));
+        }
+
+        @Override
+        long getLong(int row) {
+            return (long) getDouble(row);
+        }
+
+        @Override
+        int getInt(int row) {
+            return (int) getDouble(row);
+        }
+
+        @Override
+        double getDouble(int row) {
+            checkRow(row);
+            return values[row >>> SHIFT][row & MASK];
+        }
+    }
+
+    private static class ObjectValues extends ColumnSnapshot {
+        private final Object[] values;
+
+        ObjectValues(Object[] values, int size) {
+            super(size);
+            this.values = values;
+        }
+
+        @Override
+        Object get(int row) {
+            checkRow(row);
+            return values[row];
+        }
+
+        @Override
+        long getLong(int row) {
+            return number(row).longValue();
+        }
+
+        @Override
+        int getInt(int row) {
+            return number(row).intValue();
+        }
+
+        @Override
+        double getDouble(int row) {
+            return number(row).doubleValue();
+        }
+
+        private Number number(int row) {
+            Object value = get(row);
+            if (value instanceof Number) {
+                return (Number) value;
+            }
+            throw new DataTypeException((value == null) ? Object.class
+                    : value.getClass());
+        }
+    }
+
+    private static class DictionaryValues extends ColumnSnapshot {
+        private final int[][] codes;
+        private final String[] dictionary;
+
+        DictionaryValues(int[][] codes, String[] dictionary, int size) {
+            super(size);
+            this.codes = codes;
+            this.dictionary = dictionary;
+        }
+
+        @Override
+        Object get(int row) {
+            checkRow(row);
+            int code = codes[row >>> SHIFT][row & MASK];
+            return (code == DictionaryColumn.NULL_CODE) ? null
+                    : dictionary[code];
+        }
+
+        @Override
+        long getLong(int row) {
+            throw new DataTypeException(String.class);
+        }
+
+        @Override
+        int getInt(int row) {
+            throw new DataTypeException(String.class);
+        }
+
+        @Override
+        double getDouble(int row) {
+            throw new DataTypeException(String.class);
+        }
+    }
+}
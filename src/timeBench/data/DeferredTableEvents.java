@@ -0,0 +1,83 @@
+package timeBench.data;
+
+import java.util.BitSet;
+
+import prefuse.data.event.EventConstants;
+
+/**
+ * Collects the insert events of rows that are added to a table in a batch.
+ * Listeners are notified once per contiguous range of new rows when the batch
+ * ends, i.e., after the values of these rows have been set.
+ *
+ * <p>
+ * Other events (deletions, changes of existing rows, added or removed
+ * columns) are passed on immediately, but the pending insertions are
+ * announced first, so that listeners see events in a consistent order.
+ */
+abstract class DeferredTableEvents {
+
+    private int depth = 0;
+    private final BitSet pending = new BitSet();
+
+    /**
+     * Start a batch. Batches can be nested; events are fired when the
+     * outermost batch ends.
+     */
+    void begin() {
+        depth++;
+    }
+
+    /**
+     * End a batch and fire the collected insert events if this was the
+     * outermost batch.
+     */
+    void end() {
+        if (depth == 0) {
+            throw new IllegalStateException("No batch in progress.");
+        }
+        if (--depth == 0) {
+            flush();
+        }
+    }
+
+    boolean isActive() {
+        return depth > 0;
+    }
+
+    /**
+     * Check whether a table event is deferred.
+     *
+     * @return <tt>true</tt> if the event was collected and must not be fired
+     */
+    boolean defer(int row0, int row1, int col, int type) {
+        if (depth == 0) {
+            return false;
+        } else if (col == EventConstants.ALL_COLUMNS
+                && type == EventConstants.INSERT) {
+            pending.set(row0, row1 + 1);
+            return true;
+        } else {
+            flush();
+            return false;
+        }
+    }
+
+    /**
+     * Fire one insert event per contiguous range of pending rows.
+     */
+    void flush() {
+        int from = pending.nextSetBit(0);
+        while (from >= 0) {
+            int to = pending.nextClearBit(from);
+            pending.clear(from, to);
+            fire(from, to - 1, EventConstants.ALL_COLUMNS,
+                    EventConstants.INSERT);
+            from = pending.nextSetBit(to);
+        }
+    }
+
+    /**
+     * Pass an event on to the table listeners.
+     */
+    protected abstract void fire(int row0, int row1, int col, int type);
+}
@@ -0,0 +1,66 @@
+package timeBench.data;
+
+import prefuse.data.Graph;
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.event.EventConstants;
+import timeBench.data.util.IntArrayColumn;
+
+/**
+ * Edge table of a temporal object forest or a temporal element graph with the
+ * default source and target columns of {@link Graph}. By default, the columns
+ * are backed by primitive arrays, so that snapshots share them instead of
+ * copying the edges.
+ *
+ * @see TemporalDatasetSnapshot
+ */
+class EdgeTable extends Table {
+
+    /**
+     * Constructs an empty edge table backed by {@link IntArrayColumn}s.
+     */
+    EdgeTable() {
+        this(new IntArrayColumn(-1), new IntArrayColumn(-1));
+    }
+
+    /**
+     * Constructs an empty edge table using the given column instances. The
+     * columns must be empty.
+     *
+     * @param sources
+     *            column for the source (i.e., child) rows
+     * @param targets
+     *            column for the target (i.e., parent) rows
+     */
+    EdgeTable(Column sources, Column targets) {
+        addColumn(Graph.DEFAULT_SOURCE_KEY, sources);
+        addColumn(Graph.DEFAULT_TARGET_KEY, targets);
+    }
+
+    /**
+     * Get the row operations for renumbering the rows of this table in place
+     * (see {@link GraphCompactor}).
+     */
+    GraphCompactor.Rows compactionRows() {
+        return new GraphCompactor.Rows() {
+            @Override
+            void fire(int row0, int row1, int type) {
+                fireTableEvent(row0, row1, EventConstants.ALL_COLUMNS, type);
+            }
+
+            @Override
+            void clear() {
+                m_rows.clear();
+            }
+
+            @Override
+            void reset(int nrows) {
+                for (int i = 0; i < nrows; i++) {
+                    m_rows.addRow();
+                }
+                updateRowCount();
+                m_tuples.invalidateAll();
+            }
+        };
+    }
+}
@@ -0,0 +1,162 @@
+package timeBench.data;
+
+import java.util.Arrays;
+
+import prefuse.data.Table;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * Hash table of temporal element rows keyed by inf, sup, granularity id,
+ * granularity context id, and kind. It is used to reuse an existing temporal
+ * element instead of adding an identical one.
+ *
+ * <p>
+ * The table stores only row numbers in an open-addressing int array. Entries
+ * are not updated by listeners; instead, a row is verified against the
+ * current values of the element when it is looked up. Entries of removed or
+ * modified elements are skipped and dropped when the table grows.
+ *
+ * @see TemporalElementStore#setInterning(boolean)
+ */
+class ElementInterner {
+
+    private static final int EMPTY = -1;
+
+    private final TemporalElementStore store;
+
+    private int[] rows = new int[64];
+    private int size = 0;
+
+    ElementInterner(TemporalElementStore store) {
+        this.store = store;
+        Arrays.fill(rows, EMPTY);
+    }
+
+    /**
+     * Check whether elements of a kind are interned. Only leaf elements are
+     * interned, because composite elements are defined by their children.
+     */
+    static boolean isInterned(int kind) {
+        return kind == TemporalElementStore.PRIMITIVE_INSTANT
+                || kind == TemporalElementStore.PRIMITIVE_SPAN;
+    }
+
+    /**
+     * Add all existing temporal elements of interned kinds.
+     */
+    void addAll() {
+        IntIterator it = store.getNodeTable().rows();
+        while (it.hasNext()) {
+            int row = it.nextInt();
+            if (isInterned(store.getKind(row))) {
+                add(row);
+            }
+        }
+    }
+
+    /**
+     * Get the row of a temporal element with the given values.
+     *
+     * @return the row or -1 if there is no such element
+     */
+    int find(long inf, long sup, int granularityId, int granularityContextId,
+            int kind) {
+        int mask = rows.length - 1;
+        int i = hash(inf, sup, granularityId, granularityContextId, kind)
+                & mask;
+        while (rows[i] != EMPTY) {
+            if (matches(rows[i], inf, sup, granularityId, granularityContextId,
+                    kind)) {
+                return rows[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Add the row of a temporal element with its current values.
+     */
+    void add(int row) {
+        if ((size + 1) * 2 > rows.length) {
+            rehash();
+        }
+        insert(row);
+        size++;
+    }
+
+    private void insert(int row) {
+        int mask = rows.length - 1;
+        int i = hash(store.getInf(row), store.getSup(row),
+                store.getGranularityId(row),
+                store.getGranularityContextId(row), store.getKind(row))
+                & mask;
+        while (rows[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        rows[i] = row;
+    }
+
+    /**
+     * Rebuild the table from the current values of the elements. Stale
+     * entries are dropped and the capacity is doubled if still needed.
+     */
+    private void rehash() {
+        Table elements = store.getNodeTable();
+        int[] old = rows;
+        int live = 0;
+        for (int row : old) {
+            if (row != EMPTY && elements.isValidRow(row)) {
+                live++;
+            }
+        }
+        int capacity = old.length;
+        while ((live + 1) * 2 > capacity) {
+            capacity *= 2;
+        }
+        rows = new int[capacity];
+        Arrays.fill(rows, EMPTY);
+        size = 0;
+        for (int row : old) {
+            if (row != EMPTY && elements.isValidRow(row)
+                    && isInterned(store.getKind(row))) {
+                insert(row);
+                size++;
+            }
+        }
+    }
+
+    private boolean matches(int row, long inf, long sup, int granularityId,
+            int granularityContextId, int kind) {
+        return store.getNodeTable().isValidRow(row)
+                && store.getInf(row) == inf && store.getSup(row) == sup
+                && store.getGranularityId(row) == granularityId
+                && store.getGranularityContextId(row) == granularityContextId
+                && store.getKind(row) == kind;
+    }
+
+    private static int hash(long inf, long sup, int granularityId,
+            int granularityContextId, int kind) {
+        long h = inf * 31 + sup;
+        h = h * 31 + granularityId;
+        h = h * 31 + granularityContextId;
+        h = h * 31 + kind;
+        int x = (int) (h ^ (h >>> 32));
+        // spread the bits, because the table size is a power of two
+        return x ^ (x >>> 16) ^ (x >>> 7);
+    }
+
+    /**
+     * Get the number of entries including stale ones.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the capacity of the hash table.
+     */
+    int capacity() {
+        return rows.length;
+    }
+}
@@ -0,0 +1,273 @@
+package timeBench.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import prefuse.data.Graph;
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.column.ExpressionColumn;
+import prefuse.data.event.EventConstants;
+import prefuse.util.collections.IntIterator;
+import timeBench.data.util.AbstractIntColumn;
+import timeBench.data.util.AbstractLongColumn;
+import timeBench.data.util.DictionaryColumn;
+import timeBench.data.util.DoubleArrayColumn;
+import timeBench.data.util.MappedColumn;
+
+/**
+ * Renumbers the node and edge rows of a graph densely, so that tables no
+ * longer contain rows released by deletions.
+ *
+ * <p>
+ * The values of the remaining rows are moved in place, so that column values
+ * are neither saved nor copied to another storage (e.g., memory-mapped
+ * columns stay on the storage device). Listeners of the tables (e.g.,
+ * indices, caches, and the adjacency data of the graph) are notified by
+ * delete events for the old rows and by insert events for the new rows,
+ * whereas the moves themselves happen while all rows are released, which
+ * makes listeners ignore them. Node events cover contiguous ranges of rows.
+ * Edge events cover single rows, because {@link Graph} updates the degrees
+ * only for the first edge of an event.
+ */
+class GraphCompactor {
+
+    private GraphCompactor() {
+        // static methods only
+    }
+
+    /**
+     * Row operations of a table that bypass {@link Table#addRow()} and
+     * {@link Table#removeRow(int)}, so that rows can be renumbered without
+     * events per row and column.
+     */
+    abstract static class Rows {
+
+        /**
+         * Fire a table event for all columns of a range of rows.
+         */
+        abstract void fire(int row0, int row1, int type);
+
+        /**
+         * Release all rows without firing events. Column values are kept.
+         */
+        abstract void clear();
+
+        /**
+         * Add the rows 0 to <tt>nrows-1</tt> to a table without rows,
+         * without firing events, and invalidate all tuples of the table.
+         */
+        abstract void reset(int nrows);
+    }
+
+    /**
+     * Check whether a table contains rows released by deletions.
+     */
+    static boolean hasHoles(Table table) {
+        return table.getRowCount() != table.getMaximumRow() + 1;
+    }
+
+    /**
+     * Compact the node and edge table of a graph. Row numbers and tuples of
+     * the graph become invalid.
+     *
+     * @param graph
+     *            the graph
+     * @return the new row of each old node row (-1 for removed rows) or
+     *         <tt>null</tt> if the tables were already compact
+     * @throws UnsupportedOperationException
+     *             if the tables of the graph are not temporal element,
+     *             temporal, or edge tables of this package
+     */
+    static int[] compact(Graph graph) {
+        Table nodes = graph.getNodeTable();
+        Table edges = graph.getEdgeTable();
+        if (!hasHoles(nodes) && !hasHoles(edges)) {
+            return null;
+        }
+        Rows nodeAccess = rowsOf(nodes);
+        Rows edgeAccess = rowsOf(edges);
+
+        int nodeSize = nodes.getMaximumRow() + 1;
+        int edgeSize = edges.getMaximumRow() + 1;
+        int[] nodeRows = validRows(nodes);
+        int[] edgeRows = validRows(edges);
+        int[] rowMap = new int[nodeSize];
+        Arrays.fill(rowMap, -1);
+        for (int i = 0; i < nodeRows.length; i++) {
+            rowMap[nodeRows[i]] = i;
+        }
+
+        // announce the removal while rows and values are unchanged
+        for (int e : edgeRows) {
+            edgeAccess.fire(e, e, EventConstants.DELETE);
+        }
+        fireRanges(nodeAccess, nodeRows, EventConstants.DELETE);
+
+        // move values while all rows are released
+        nodeAccess.clear();
+        moveValues(nodes, nodeRows, nodeSize);
+        clearLinkTable(graph);
+        edgeAccess.clear();
+        moveValues(edges, edgeRows, edgeSize);
+        remap(edges.getColumn(graph.getEdgeSourceField()), rowMap,
+                edgeRows.length);
+        remap(edges.getColumn(graph.getEdgeTargetField()), rowMap,
+                edgeRows.length);
+        nodeAccess.reset(nodeRows.length);
+        edgeAccess.reset(edgeRows.length);
+        if (nodes instanceof MappedTemporalElementTable) {
+            ((MappedTemporalElementTable) nodes).truncate(nodeRows.length,
+                    edgeRows.length);
+        }
+
+        // announce the new rows, nodes before the edges that refer to them
+        if (nodeRows.length > 0) {
+            nodeAccess.fire(0, nodeRows.length - 1, EventConstants.INSERT);
+        }
+        for (int e = 0; e < edgeRows.length; e++) {
+            edgeAccess.fire(e, e, EventConstants.INSERT);
+        }
+        return rowMap;
+    }
+
+    /**
+     * Get the rows of nodes that are the target of at least one edge, i.e.,
+     * parents in a {@link ieg.prefuse.data.ParentChildGraph}. Scanning the
+     * edge table is cheaper than querying the adjacency of every node.
+     *
+     * @param graph
+     *            the graph
+     * @return the set of node rows
+     */
+    static BitSet parentRows(Graph graph) {
+        BitSet parents = new BitSet();
+        IntIterator edges = graph.getEdgeTable().rows();
+        while (edges.hasNext()) {
+            parents.set(graph.getTargetNode(edges.nextInt()));
+        }
+        return parents;
+    }
+
+    private static int[] validRows(Table table) {
+        int[] rows = new int[table.getRowCount()];
+        IntIterator it = table.rows();
+        for (int i = 0; it.hasNext(); i++) {
+            rows[i] = it.nextInt();
+        }
+        return rows;
+    }
+
+    /**
+     * Fire one event per contiguous range of the given ascending rows.
+     */
+    private static void fireRanges(Rows access, int[] rows, int type) {
+        int i = 0;
+        while (i < rows.length) {
+            int j = i + 1;
+            while (j < rows.length && rows[j] == rows[j - 1] + 1) {
+                j++;
+            }
+            access.fire(rows[i], rows[j - 1], type);
+            i = j;
+        }
+    }
+
+    /**
+     * Move the values of the given ascending rows to the rows 0 to
+     * <tt>rows.length-1</tt> and revert the remaining rows to the default
+     * values. Derived columns (i.e., expressions and temporal element
+     * proxies) are not stored; cached expression values are discarded.
+     */
+    private static void moveValues(Table table, int[] rows, int size) {
+        for (int c = 0; c < table.getColumnCount(); c++) {
+            Column col = table.getColumn(c);
+            if (col instanceof TemporalTable.TemporalColumn) {
+                continue;
+            } else if (col instanceof ExpressionColumn) {
+                if (size > 0) {
+                    ((ExpressionColumn) col).invalidateCache(0, size - 1);
+                }
+                continue;
+            }
+
+            // a row is never read after a lower row has been written
+            if (col instanceof AbstractLongColumn) {
+                ((AbstractLongColumn) col).initValues(col, rows, 0);
+            } else if (col instanceof AbstractIntColumn) {
+                ((AbstractIntColumn) col).initValues(col, rows, 0);
+            } else if (col instanceof DoubleArrayColumn) {
+                ((DoubleArrayColumn) col).initValues(col, rows, 0);
+            } else if (col instanceof DictionaryColumn) {
+                ((DictionaryColumn) col).initValues(col, rows, 0);
+            } else {
+                for (int i = 0; i < rows.length; i++) {
+                    if (rows[i] != i) {
+                        col.set(col.get(rows[i]), i);
+                    }
+                }
+            }
+
+            // mapped columns are truncated and filled with defaults on growth
+            if (!(col instanceof MappedColumn)) {
+                for (int row = rows.length; row < size; row++) {
+                    revert(col, row);
+                }
+            }
+        }
+    }
+
+    private static void revert(Column col, int row) {
+        Object value = col.getDefaultValue();
+        if (col instanceof AbstractLongColumn) {
+            ((AbstractLongColumn) col).initLong(((Number) value).longValue(),
+                    row);
+        } else if (col instanceof AbstractIntColumn) {
+            ((AbstractIntColumn) col).initInt(((Number) value).intValue(),
+                    row);
+        } else if (col instanceof DoubleArrayColumn) {
+            ((DoubleArrayColumn) col).initDouble(
+                    ((Number) value).doubleValue(), row);
+        } else {
+            col.revertToDefault(row);
+        }
+    }
+
+    /**
+     * Replace the node rows referenced by the first rows of an edge column.
+     */
+    private static void remap(Column col, int[] rowMap, int nrows) {
+        for (int i = 0; i < nrows; i++) {
+            int row = rowMap[col.getInt(i)];
+            if (col instanceof AbstractIntColumn) {
+                ((AbstractIntColumn) col).initInt(row, i);
+            } else {
+                col.setInt(row, i);
+            }
+        }
+    }
+
+    private static Rows rowsOf(Table table) {
+        if (table instanceof TemporalElementTable) {
+            return ((TemporalElementTable) table).compactionRows();
+        } else if (table instanceof TemporalTable) {
+            return ((TemporalTable) table).compactionRows();
+        } else if (table instanceof EdgeTable) {
+            return ((EdgeTable) table).compactionRows();
+        }
+        throw new UnsupportedOperationException("Rows of "
+                + table.getClass().getName() + " cannot be renumbered.");
+    }
+
+    /**
+     * Replace the adjacency data of a graph while its node table has no rows,
+     * so that adjacency rows are handed out from row 0 again.
+     */
+    private static void clearLinkTable(Graph graph) {
+        if (graph instanceof TemporalElementStore) {
+            ((TemporalElementStore) graph).clearLinkTable();
+        } else if (graph instanceof TemporalDataset) {
+            ((TemporalDataset) graph).clearLinkTable();
+        }
+    }
+}
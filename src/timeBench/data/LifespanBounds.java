@@ -0,0 +1,171 @@
+package timeBench.data;
+
+import prefuse.data.Table;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * Lifespan of the anchored temporal elements in a {@link TemporalElementStore}
+ * , i.e., the minimal inf and the maximal sup. The bounds are maintained
+ * incrementally on insertions and updates. Only if the element holding a bound
+ * is removed, loses its anchor, or moves inwards, the bounds are recomputed
+ * on the next query.
+ */
+class LifespanBounds implements Lifespan {
+
+    private final TemporalElementStore store;
+
+    private boolean valid = false;
+    private long inf;
+    private long sup;
+    private int infRow;
+    private int supRow;
+
+    LifespanBounds(TemporalElementStore store) {
+        this.store = store;
+        store.getNodeTable().addTableListener(new ElementListener());
+        store.getEdgeTable().addTableListener(new EdgeListener());
+    }
+
+    /**
+     * Get the minimal inf of all anchored temporal elements.
+     *
+     * @return the inf or {@link Long#MIN_VALUE} if there are no anchored
+     *         temporal elements
+     */
+    @Override
+    public long getInf() {
+        if (!valid) {
+            recompute();
+        }
+        return (infRow < 0) ? Long.MIN_VALUE : inf;
+    }
+
+    /**
+     * Get the maximal sup of all anchored temporal elements.
+     *
+     * @return the sup or {@link Long#MAX_VALUE} if there are no anchored
+     *         temporal elements
+     */
+    @Override
+    public long getSup() {
+        if (!valid) {
+            recompute();
+        }
+        return (supRow < 0) ? Long.MAX_VALUE : sup;
+    }
+
+    private void recompute() {
+        infRow = -1;
+        supRow = -1;
+        IntIterator rows = store.getNodeTable().rows();
+        while (rows.hasNext()) {
+            int row = rows.nextInt();
+            if (TemporalElementManager.isAnchored(store, row)) {
+                extend(row);
+            }
+        }
+        valid = true;
+    }
+
+    /**
+     * Extend the bounds by an anchored element.
+     */
+    private void extend(int row) {
+        long i = store.getInf(row);
+        long s = store.getSup(row);
+        if (infRow < 0 || i < inf) {
+            inf = i;
+            infRow = row;
+        }
+        if (supRow < 0 || s > sup) {
+            sup = s;
+            supRow = row;
+        }
+    }
+
+    /**
+     * Extend the bounds by an element and its ancestors, which might have
+     * become anchored through the element.
+     */
+    private void extendUpwards(int row) {
+        if (TemporalElementManager.isAnchored(store, row)) {
+            extend(row);
+            IntIterator parents = store.outEdgeRows(row);
+            while (parents.hasNext()) {
+                int parent = store.getTargetNode(parents.nextInt());
+                if (parent >= 0 && store.getNodeTable().isValidRow(parent)) {
+                    extendUpwards(parent);
+                }
+            }
+        }
+    }
+
+    private boolean isSet(int row) {
+        return row >= 0
+                && store.getKind(row) == TemporalElementStore.PRIMITIVE_SET;
+    }
+
+    /**
+     * Updates the bounds on changes of temporal elements.
+     */
+    private class ElementListener implements TableListener {
+        @Override
+        public void tableChanged(Table t, int start, int end, int col, int type) {
+            if (!valid) {
+                return;
+            }
+            if (type == EventConstants.DELETE) {
+                if (col != EventConstants.ALL_COLUMNS
+                        || (infRow >= start && infRow <= end)
+                        || (supRow >= start && supRow <= end)) {
+                    valid = false;
+                }
+                return;
+            }
+            if (col != EventConstants.ALL_COLUMNS
+                    && TemporalElement.KIND.equals(t.getColumnName(col))
+                    && (isSet(infRow) || isSet(supRow))) {
+                // a set holding a bound might have lost its anchor
+                valid = false;
+                return;
+            }
+            for (int r = start; r <= end && valid; r++) {
+                boolean anchored = TemporalElementManager.isAnchored(store, r);
+                if ((r == infRow && (!anchored || store.getInf(r) > inf))
+                        || (r == supRow && (!anchored || store.getSup(r) < sup))) {
+                    // a bound moves inwards
+                    valid = false;
+                } else if (anchored) {
+                    extendUpwards(r);
+                }
+            }
+        }
+    }
+
+    /**
+     * Updates the bounds on changes of the temporal element graph, which
+     * influence whether sets are anchored.
+     */
+    private class EdgeListener implements TableListener {
+        @Override
+        public void tableChanged(Table t, int start, int end, int col, int type) {
+            if (!valid) {
+                return;
+            }
+            if (type != EventConstants.INSERT && (isSet(infRow) || isSet(supRow))) {
+                // a set holding a bound might have lost its anchor
+                valid = false;
+                return;
+            }
+            for (int e = start; e <= end; e++) {
+                int parent = store.getTargetNode(e);
+                if (parent >= 0 && store.getNodeTable().isValidRow(parent)
+                        && isSet(parent)) {
+                    extendUpwards(parent);
+                }
+            }
+        }
+    }
+}
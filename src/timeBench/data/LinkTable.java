@@ -0,0 +1,159 @@
+package timeBench.data;
+
+import java.util.HashMap;
+
+import prefuse.data.DataTypeException;
+import prefuse.data.Graph;
+import prefuse.data.Schema;
+import prefuse.data.Table;
+import prefuse.data.column.AbstractColumn;
+import prefuse.data.util.RowManager;
+import prefuse.util.collections.IntIterator;
+import timeBench.data.util.MemoryReport;
+
+/**
+ * Adjacency table of a graph (i.e., degrees and edge rows per node, see
+ * {@link Graph}) that holds values only for nodes with edges. Its rows mirror
+ * the rows of the node table, so that nodes without edges (e.g., temporal
+ * primitives) take no space and a node table with many stored rows can be
+ * opened without registering each of them.
+ *
+ * @see MappedTemporalElementTable
+ */
+class LinkTable extends Table {
+
+    /**
+     * Constructs a link table for a node table.
+     *
+     * @param nodes
+     *            the node table whose rows are mirrored
+     * @param schema
+     *            the columns of the link table (see
+     *            {@link Graph#createLinkTable()})
+     */
+    LinkTable(final Table nodes, Schema schema) {
+        m_rows = new RowManager(this) {
+            @Override
+            public int getMinimumRow() {
+                return nodes.getMinimumRow();
+            }
+
+            @Override
+            public int getMaximumRow() {
+                return nodes.getMaximumRow();
+            }
+
+            @Override
+            public int getRowCount() {
+                return nodes.getRowCount();
+            }
+
+            @Override
+            public boolean isValidRow(int row) {
+                return nodes.isValidRow(row);
+            }
+
+            @Override
+            public void clear() {
+            }
+
+            @Override
+            public int addRow() {
+                // the node row has already been added
+                return nodes.getMaximumRow();
+            }
+
+            @Override
+            public boolean releaseRow(int row) {
+                // the node row is released afterwards
+                return nodes.isValidRow(row);
+            }
+
+            @Override
+            public IntIterator rows() {
+                return nodes.rows();
+            }
+
+            @Override
+            public IntIterator rows(boolean reverse) {
+                return nodes.rows(reverse);
+            }
+        };
+        for (int i = 0; i < schema.getColumnCount(); i++) {
+            addColumn(schema.getColumnName(i), new SparseColumn(schema
+                    .getColumnType(i), schema.getDefault(i)));
+        }
+    }
+
+    /**
+     * Add the estimated memory usage of the stored values to a report.
+     *
+     * @param report
+     *            the report
+     * @param structure
+     *            the name of the structure in the report
+     */
+    void reportMemory(MemoryReport report, String structure) {
+        for (int i = 0; i < getColumnCount(); i++) {
+            SparseColumn col = (SparseColumn) getColumn(i);
+            long bytes = 0;
+            for (Object value : col.values.values()) {
+                bytes += MemoryReport.MAP_ENTRY + MemoryReport.estimate(value);
+            }
+            report.add(structure, getColumnName(i), col.values.size(), bytes);
+        }
+    }
+
+    /**
+     * Column that keeps only values that differ from the default value.
+     */
+    private static class SparseColumn extends AbstractColumn {
+
+        private final HashMap<Integer, Object> values = new HashMap<Integer, Object>();
+        private int size = 0;
+
+        SparseColumn(Class<?> type, Object defaultValue) {
+            super(type, defaultValue);
+        }
+
+        @Override
+        public int getRowCount() {
+            return size;
+        }
+
+        @Override
+        public void setMaximumRow(int nrows) {
+            size = nrows;
+        }
+
+        @Override
+        public Object get(int row) {
+            Object value = values.get(row);
+            return (value == null) ? m_defaultValue : value;
+        }
+
+        @Override
+        public void set(Object val, int row) throws DataTypeException {
+            if (val == null || val.equals(m_defaultValue)) {
+                values.remove(row);
+            } else {
+                values.put(row, val);
+            }
+        }
+
+        @Override
+        public void revertToDefault(int row) {
+            values.remove(row);
+        }
+
+        @Override
+        public int getInt(int row) throws DataTypeException {
+            return ((Number) get(row)).intValue();
+        }
+
+        @Override
+        public void setInt(int val, int row) throws DataTypeException {
+            set(Integer.valueOf(val), row);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package timeBench.data;
+
+import java.io.File;
+import java.io.IOException;
+
+import timeBench.data.util.MappedColumn;
+import timeBench.data.util.MappedIntColumn;
+import timeBench.data.util.MappedRowManager;
+
+/**
+ * Edge table of a {@link MappedTemporalElementTable} that stores the source
+ * and target rows and the released rows in memory-mapped files.
+ */
+class MappedEdgeTable extends EdgeTable {
+
+    static final String SOURCE_FILE = "edge_source.col";
+    static final String TARGET_FILE = "edge_target.col";
+    static final String ROWS_FILE = "edge_rows.col";
+
+    private MappedRowManager rowManager = null;
+
+    /**
+     * Open the edges stored in a directory or create an empty table if the
+     * directory contains no edge files.
+     *
+     * @param directory
+     *            the directory of the edge files
+     * @throws IOException
+     *             if the files cannot be mapped, have an incompatible format,
+     *             or differ in their number of rows
+     */
+    MappedEdgeTable(File directory) throws IOException {
+        super(new MappedIntColumn(new File(directory, SOURCE_FILE), -1),
+                new MappedIntColumn(new File(directory, TARGET_FILE), -1));
+        try {
+            int rows = sources().getStoredRowCount();
+            if (targets().getStoredRowCount() != rows) {
+                throw new IOException("Edge files in " + directory
+                        + " differ in their number of rows.");
+            }
+            rowManager = new MappedRowManager(this, new File(directory,
+                    ROWS_FILE), rows);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+        m_rows = rowManager;
+        updateRowCount();
+    }
+
+    private MappedColumn sources() {
+        return (MappedColumn) getColumn(0);
+    }
+
+    private MappedColumn targets() {
+        return (MappedColumn) getColumn(1);
+    }
+
+    /**
+     * Discard rows from the given row on.
+     */
+    void truncate(int nrows) {
+        rowManager.truncate(nrows);
+        sources().truncate(nrows);
+        targets().truncate(nrows);
+    }
+
+    /**
+     * Write changes to the storage device.
+     */
+    void force() {
+        sources().force();
+        targets().force();
+        rowManager.force();
+    }
+
+    /**
+     * Write changes and close the edge files.
+     */
+    void close() throws IOException {
+        if (rowManager != null) {
+            force();
+            rowManager.close();
+        }
+        sources().close();
+        targets().close();
+    }
+}
@@ -0,0 +1,174 @@
+package timeBench.data;
+
+import java.io.File;
+import java.io.IOException;
+
+import prefuse.data.Schema;
+import prefuse.data.Table;
+import timeBench.data.util.MappedColumn;
+import timeBench.data.util.MappedIntColumn;
+import timeBench.data.util.MappedLongColumn;
+import timeBench.data.util.MappedRowManager;
+
+/**
+ * Node table for a {@link TemporalElementStore} that stores the temporal
+ * element columns in memory-mapped files, one file per column in a directory.
+ * This allows for stores larger than the Java heap. Opening an existing
+ * directory does not read the values and does not register the stored rows
+ * one by one; values are paged in by the operating system on access.
+ *
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * MappedTemporalElementTable elements = new MappedTemporalElementTable(dir);
+ * TemporalDataset dataset = new TemporalDataset(new TemporalElementStore(
+ *         elements));
+ * ...
+ * elements.close();
+ * </pre>
+ *
+ * <p>
+ * The temporal element columns, the released rows, and the edges of the
+ * temporal element graph (i.e., children of temporal sets) are persisted, so
+ * that removed rows stay removed when the directory is opened again.
+ * Additional columns are held in memory. The adjacency of the graph is held
+ * in memory only for temporal elements with edges.
+ */
+public class MappedTemporalElementTable extends TemporalElementTable {
+
+    static final String ID_FILE = "id.col";
+    static final String INF_FILE = "inf.col";
+    static final String SUP_FILE = "sup.col";
+    static final String GRANULARITY_ID_FILE = "granularity_id.col";
+    static final String GRANULARITY_CONTEXT_ID_FILE = "granularity_context_id.col";
+    static final String KIND_FILE = "kind.col";
+    static final String ROWS_FILE = "rows.col";
+
+    private static final String[] ELEMENT_FIELDS = { TemporalElement.ID,
+            TemporalElement.INF, TemporalElement.SUP,
+            TemporalElement.GRANULARITY_ID,
+            TemporalElement.GRANULARITY_CONTEXT_ID, TemporalElement.KIND };
+
+    private MappedRowManager rowManager = null;
+    private MappedEdgeTable edges = null;
+
+    /**
+     * Open the temporal elements stored in a directory or create an empty
+     * table if the directory contains no column files.
+     * 
+     * @param directory
+     *            the directory of the column files
+     * @throws IOException
+     *             if the column files cannot be mapped, have an incompatible
+     *             format, or differ in their number of rows
+     */
+    public MappedTemporalElementTable(File directory) throws IOException {
+        super(new MappedLongColumn(file(directory, ID_FILE), -1l),
+                new MappedLongColumn(file(directory, INF_FILE),
+                        Long.MIN_VALUE),
+                new MappedLongColumn(file(directory, SUP_FILE),
+                        Long.MAX_VALUE),
+                new MappedIntColumn(file(directory, GRANULARITY_ID_FILE), -1),
+                new MappedIntColumn(
+                        file(directory, GRANULARITY_CONTEXT_ID_FILE), -1),
+                new MappedIntColumn(file(directory, KIND_FILE), -1));
+
+        try {
+            int rows = mappedColumn(0).getStoredRowCount();
+            for (int i = 1; i < ELEMENT_FIELDS.length; i++) {
+                if (mappedColumn(i).getStoredRowCount() != rows) {
+                    throw new IOException("Column files in " + directory
+                            + " differ in their number of rows.");
+                }
+            }
+            rowManager = new MappedRowManager(this, file(directory,
+                    ROWS_FILE), rows);
+            edges = new MappedEdgeTable(directory);
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+
+        // the stored rows are registered with the table at once
+        m_rows = rowManager;
+        updateRowCount();
+    }
+
+    private static File file(File directory, String name) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory " + directory);
+        }
+        return new File(directory, name);
+    }
+
+    private MappedColumn mappedColumn(int i) {
+        return (MappedColumn) getColumn(ELEMENT_FIELDS[i]);
+    }
+
+    /**
+     * The edges are stored in the same directory.
+     */
+    @Override
+    EdgeTable createEdgeTable() {
+        return edges;
+    }
+
+    /**
+     * The adjacency holds values only for temporal elements with edges.
+     */
+    @Override
+    Table createLinkTable(Schema schema) {
+        return new LinkTable(this, schema);
+    }
+
+    /**
+     * Discard rows from the given row on, including their edges (see
+     * {@link GraphCompactor}).
+     *
+     * @param nrows
+     *            the number of rows to keep
+     * @param nedges
+     *            the number of edge rows to keep
+     */
+    void truncate(int nrows, int nedges) {
+        rowManager.truncate(nrows);
+        for (int i = 0; i < ELEMENT_FIELDS.length; i++) {
+            mappedColumn(i).truncate(nrows);
+        }
+        edges.truncate(nedges);
+    }
+
+    /**
+     * Write changes of the temporal element columns, the released rows, and
+     * the edges to the storage device.
+     */
+    public void force() {
+        for (int i = 0; i < ELEMENT_FIELDS.length; i++) {
+            mappedColumn(i).force();
+        }
+        rowManager.force();
+        edges.force();
+    }
+
+    /**
+     * Write changes and close the column files. The table must not be used
+     * afterwards.
+     * 
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void close() throws IOException {
+        for (int i = 0; i < ELEMENT_FIELDS.length; i++) {
+            mappedColumn(i).force();
+            mappedColumn(i).close();
+        }
+        if (rowManager != null) {
+            rowManager.force();
+            rowManager.close();
+        }
+        if (edges != null) {
+            edges.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package timeBench.data;
+
+import java.util.Arrays;
+
+import prefuse.data.Table;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
+
+/**
+ * Maps the data columns of a temporal object table to the columns holding
+ * their metadata (i.e., <tt>.kind</tt>, <tt>.minValue</tt>, and
+ * <tt>.maxValue</tt>). A metadata column is looked up by name only once per
+ * data column; later lookups are array accesses. The map is cleared whenever
+ * columns are added to or removed from the table.
+ */
+class MetadataColumns {
+
+    static final String KIND_SUFFIX = ".kind";
+    static final String MIN_SUFFIX = ".minValue";
+    static final String MAX_SUFFIX = ".maxValue";
+
+    /**
+     * marks a data column whose metadata column has not been looked up yet
+     */
+    private static final int UNKNOWN = -2;
+
+    private final Table table;
+
+    private int[] kindColumns = new int[0];
+    private int[] minColumns = new int[0];
+    private int[] maxColumns = new int[0];
+
+    MetadataColumns(Table table) {
+        this.table = table;
+        table.addTableListener(new TableListener() {
+            @Override
+            public void tableChanged(Table t, int start, int end, int col,
+                    int type) {
+                if (col != EventConstants.ALL_COLUMNS
+                        && type != EventConstants.UPDATE) {
+                    clear();
+                }
+            }
+        });
+    }
+
+    /**
+     * Check whether a column holds metadata (i.e., kind, minimum, or maximum)
+     * of another column in the table.
+     *
+     * @param table
+     *            the table
+     * @param field
+     *            the column name
+     * @return <tt>true</tt> if the column is a metadata column
+     */
+    static boolean isMetadataColumn(Table table, String field) {
+        String[] suffixes = { KIND_SUFFIX, MIN_SUFFIX, MAX_SUFFIX };
+        for (String suffix : suffixes) {
+            if (field.endsWith(suffix)
+                    && table.getColumnNumber(field.substring(0, field.length()
+                            - suffix.length())) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the column holding the kind of a data column.
+     *
+     * @param col
+     *            the data column index
+     * @return the column index or -1 if there is no kind column
+     */
+    int getKindColumn(int col) {
+        kindColumns = ensureCapacity(kindColumns, col);
+        if (kindColumns[col] == UNKNOWN) {
+            kindColumns[col] = lookup(col, KIND_SUFFIX);
+        }
+        return kindColumns[col];
+    }
+
+    /**
+     * Get the column holding the minimal value of a data column.
+     *
+     * @param col
+     *            the data column index
+     * @return the column index or -1 if there is no minimum column
+     */
+    int getMinColumn(int col) {
+        minColumns = ensureCapacity(minColumns, col);
+        if (minColumns[col] == UNKNOWN) {
+            minColumns[col] = lookup(col, MIN_SUFFIX);
+        }
+        return minColumns[col];
+    }
+
+    /**
+     * Get the column holding the maximal value of a data column.
+     *
+     * @param col
+     *            the data column index
+     * @return the column index or -1 if there is no maximum column
+     */
+    int getMaxColumn(int col) {
+        maxColumns = ensureCapacity(maxColumns, col);
+        if (maxColumns[col] == UNKNOWN) {
+            maxColumns[col] = lookup(col, MAX_SUFFIX);
+        }
+        return maxColumns[col];
+    }
+
+    /**
+     * Get the column holding the kind of a data column. The column is added
+     * to the table if it does not exist yet.
+     */
+    int ensureKindColumn(int col) {
+        int kindCol = getKindColumn(col);
+        return (kindCol >= 0) ? checkType(kindCol, col) : addColumn(col,
+                KIND_SUFFIX);
+    }
+
+    /**
+     * Get the column holding the minimal value of a data column. The column
+     * is added to the table if it does not exist yet.
+     */
+    int ensureMinColumn(int col) {
+        int minCol = getMinColumn(col);
+        return (minCol >= 0) ? checkType(minCol, col) : addColumn(col,
+                MIN_SUFFIX);
+    }
+
+    /**
+     * Get the column holding the maximal value of a data column. The column
+     * is added to the table if it does not exist yet.
+     */
+    int ensureMaxColumn(int col) {
+        int maxCol = getMaxColumn(col);
+        return (maxCol >= 0) ? checkType(maxCol, col) : addColumn(col,
+                MAX_SUFFIX);
+    }
+
+    private int lookup(int col, String suffix) {
+        return table.getColumnNumber(table.getColumnName(col) + suffix);
+    }
+
+    private int addColumn(int col, String suffix) {
+        table.addColumn(table.getColumnName(col) + suffix,
+                table.getColumnType(col));
+        return lookup(col, suffix);
+    }
+
+    private int checkType(int metaCol, int col) {
+        if (table.getColumnType(metaCol) != table.getColumnType(col)) {
+            throw new IllegalStateException("Field "
+                    + table.getColumnName(metaCol)
+                    + " exists but is of the wrong type");
+        }
+        return metaCol;
+    }
+
+    private int[] ensureCapacity(int[] columns, int col) {
+        if (col < columns.length) {
+            return columns;
+        }
+        int length = columns.length;
+        int[] grown = Arrays.copyOf(columns,
+                Math.max(col + 1, table.getColumnCount()));
+        Arrays.fill(grown, length, grown.length, UNKNOWN);
+        return grown;
+    }
+
+    private void clear() {
+        Arrays.fill(kindColumns, UNKNOWN);
+        Arrays.fill(minColumns, UNKNOWN);
+        Arrays.fill(maxColumns, UNKNOWN);
+    }
+}
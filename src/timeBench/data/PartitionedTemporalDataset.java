@@ -0,0 +1,724 @@
+package timeBench.data;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import prefuse.data.Schema;
+import prefuse.data.expression.AndPredicate;
+import prefuse.data.expression.OrPredicate;
+import prefuse.data.expression.Predicate;
+import prefuse.util.collections.IntIterator;
+import timeBench.calendar.Granularity;
+import timeBench.calendar.Granule;
+import timeBench.data.expression.TemporalComparisonPredicate;
+
+/**
+ * A temporal dataset split into partitions by time. Each partition is a
+ * {@link TemporalDataset} of its own and holds the temporal elements (and
+ * their temporal objects) that begin within one granule of the partitioning
+ * {@link Granularity}, e.g., one month.
+ *
+ * <p>
+ * Each partition keeps the lifespan of its anchored temporal elements. Range
+ * queries skip partitions whose lifespan does not overlap the range, so that
+ * data of a few days can be queried without touching the indices of other
+ * months. Since partitions do not share any structures, they can be processed
+ * in parallel (see {@link #process(long, long, PartitionTask, ExecutorService)})
+ * and removed to unload cold data (see {@link #removePartitionsBefore(long)}).
+ *
+ * <p>
+ * Temporal elements and objects are added to the partition of the inf of the
+ * temporal element. An interval stays in the partition of its begin together
+ * with its end instant, even if it ends in a later granule; such intervals are
+ * covered by the lifespan of the partition. Temporal elements and objects
+ * added by this class get ids that are unique across all partitions; ids of
+ * data added directly to the dataset of a partition are unique within the
+ * partition only. Relationships between temporal elements or objects of
+ * different partitions are not supported.
+ */
+public class PartitionedTemporalDataset implements Lifespan {
+
+    /**
+     * granularity whose granules determine the partitions
+     */
+    private final Granularity partitioning;
+
+    /**
+     * schema of the data columns of all partitions
+     */
+    private final Schema dataColumns;
+
+    /**
+     * partitions by the inf of their granule
+     */
+    private final TreeMap<Long, Partition> partitions = new TreeMap<Long, Partition>();
+
+    /**
+     * the partition of the last added data (appends are mostly ordered)
+     */
+    private Partition lastPartition = null;
+
+    /**
+     * the ids of the next temporal element and object added by this class
+     */
+    private long nextElementId = 0;
+    private long nextObjectId = 0;
+
+    /**
+     * Constructs an empty {@link PartitionedTemporalDataset}.
+     *
+     * @param partitioning
+     *            the granularity whose granules determine the partitions
+     */
+    public PartitionedTemporalDataset(Granularity partitioning) {
+        this(partitioning, new Schema());
+    }
+
+    /**
+     * Constructs an empty {@link PartitionedTemporalDataset} with the given
+     * schema for data elements.
+     *
+     * @param partitioning
+     *            the granularity whose granules determine the partitions
+     * @param dataColumns
+     *            schema for data elements
+     */
+    public PartitionedTemporalDataset(Granularity partitioning,
+            Schema dataColumns) {
+        this.partitioning = partitioning;
+        this.dataColumns = (Schema) dataColumns.clone();
+    }
+
+    /**
+     * Get the granularity whose granules determine the partitions.
+     *
+     * @return the partitioning granularity
+     */
+    public Granularity getPartitioning() {
+        return partitioning;
+    }
+
+    /**
+     * Add a data column to all existing and future partitions.
+     *
+     * @param name
+     *            the data field name for the column
+     * @param type
+     *            the data type, as a Java Class, for the column
+     * @param defaultValue
+     *            the default value for column data values or <tt>null</tt>
+     * @throws TemporalDataException
+     *             if a reserved column name was passed
+     * @see TemporalDataset#addDataColumn(String, Class, Object)
+     */
+    public void addDataColumn(String name,
+            @SuppressWarnings("rawtypes") Class type, Object defaultValue)
+            throws TemporalDataException {
+        for (Partition partition : partitions.values()) {
+            partition.dataset.addDataColumn(name, type, defaultValue);
+        }
+        dataColumns.addColumn(name, type, defaultValue);
+    }
+
+    /**
+     * Get schema of the data columns of all partitions.
+     *
+     * @return a copy of the schema of the data columns
+     */
+    public Schema getDataColumnSchema() {
+        return (Schema) dataColumns.clone();
+    }
+
+    // ----- partitions -----
+
+    /**
+     * Get the partition that contains the given chronon. The partition is
+     * created if it does not exist yet.
+     *
+     * @param chronon
+     *            a chronon, e.g., the inf of a temporal element
+     * @return the partition
+     * @throws TemporalDataException
+     *             if the granule of the chronon cannot be determined
+     */
+    public Partition getPartition(long chronon) throws TemporalDataException {
+        Partition partition = findPartition(chronon);
+        if (partition == null) {
+            Granule granule = new Granule(chronon, chronon, partitioning);
+            partition = new Partition(granule.getInf(), granule.getSup(),
+                    new TemporalDataset(dataColumns));
+            partitions.put(partition.inf, partition);
+        }
+        lastPartition = partition;
+        return partition;
+    }
+
+    private Partition findPartition(long chronon) {
+        if (lastPartition != null && lastPartition.contains(chronon)) {
+            return lastPartition;
+        }
+        Map.Entry<Long, Partition> entry = partitions.floorEntry(chronon);
+        return (entry != null && entry.getValue().contains(chronon)) ? entry
+                .getValue() : null;
+    }
+
+    /**
+     * Get the number of partitions.
+     *
+     * @return the number of partitions
+     */
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+
+    /**
+     * Get all partitions ordered by time.
+     *
+     * @return an unmodifiable list of partitions
+     */
+    public List<Partition> getPartitions() {
+        return Collections.unmodifiableList(new ArrayList<Partition>(
+                partitions.values()));
+    }
+
+    /**
+     * Get the partitions with anchored temporal elements that overlap the
+     * given interval ordered by time. All other partitions are pruned.
+     *
+     * @param lo
+     *            the lower end of the interval
+     * @param hi
+     *            the upper end of the interval
+     * @return a list of partitions
+     */
+    public List<Partition> getPartitions(long lo, long hi) {
+        List<Partition> result = new ArrayList<Partition>();
+        // elements begin within their partition -> later partitions are pruned
+        for (Partition partition : partitions.headMap(hi, true).values()) {
+            if (partition.overlaps(lo, hi)) {
+                result.add(partition);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add a partition, e.g., one that was unloaded before. All anchored
+     * temporal elements of the dataset that are not children of other
+     * temporal elements (e.g., the end of an interval) must begin within one
+     * granule of the partitioning granularity. Ids allocated by this class
+     * afterwards are greater than the ids in the dataset.
+     *
+     * @param dataset
+     *            the temporal dataset of the partition
+     * @return the added partition
+     * @throws TemporalDataException
+     *             if the dataset is empty, spans several granules, or a
+     *             partition for its granule exists
+     */
+    public Partition addPartition(TemporalDataset dataset)
+            throws TemporalDataException {
+        if (dataset.getTemporalElements().getInf() == Long.MIN_VALUE) {
+            throw new TemporalDataException(
+                    "The dataset has no anchored temporal elements.");
+        }
+        long inf = dataset.getTemporalElements().getInf();
+        Granule granule = new Granule(inf, inf, partitioning);
+        Partition partition = new Partition(granule.getInf(),
+                granule.getSup(), dataset);
+        TemporalElementStore store = dataset.getTemporalElements();
+        IntIterator rows = store.getNodeTable().rows();
+        while (rows.hasNext()) {
+            int row = rows.nextInt();
+            if (store.isAnchored(row) && store.getOutDegree(row) == 0
+                    && !partition.contains(store.getInf(row))) {
+                throw new TemporalDataException(
+                        "The dataset spans several partitions.");
+            }
+        }
+        if (partitions.containsKey(partition.inf)) {
+            throw new TemporalDataException("A partition for "
+                    + partition.inf + " exists already.");
+        }
+        partitions.put(partition.inf, partition);
+        nextElementId = Math.max(nextElementId, store
+                .getNextTemporalElementId());
+        nextObjectId = Math.max(nextObjectId, dataset
+                .getNextTemporalObjectId());
+        return partition;
+    }
+
+    /**
+     * Remove a partition, e.g., to unload cold data. The dataset of the
+     * partition stays intact and can be saved or added again.
+     *
+     * @param partition
+     *            the partition
+     * @return true if the partition was removed
+     */
+    public boolean removePartition(Partition partition) {
+        if (partitions.get(partition.inf) != partition) {
+            return false;
+        }
+        partitions.remove(partition.inf);
+        if (lastPartition == partition) {
+            lastPartition = null;
+        }
+        return true;
+    }
+
+    /**
+     * Remove all partitions whose granule and temporal elements end before
+     * the given chronon, e.g., to unload cold data.
+     *
+     * @param chronon
+     *            the chronon
+     * @return the removed partitions ordered by time
+     */
+    public List<Partition> removePartitionsBefore(long chronon) {
+        List<Partition> removed = new ArrayList<Partition>();
+        for (Partition partition : partitions.headMap(chronon, false).values()) {
+            if (partition.sup < chronon
+                    && (partition.isEmpty() || partition.getSup() < chronon)) {
+                removed.add(partition);
+            }
+        }
+        for (Partition partition : removed) {
+            removePartition(partition);
+        }
+        return removed;
+    }
+
+    // ----- adding data -----
+
+    /**
+     * Add a new instant and a temporal object that occurs at it. Both are
+     * added to the partition of the inf.
+     *
+     * @param inf
+     *            the lower end of the instant
+     * @param sup
+     *            the upper end of the instant
+     * @param granularityId
+     *            the granularityID of the instant
+     * @param granularityContextId
+     *            the granularityContextID of the instant
+     * @return the new temporal object
+     * @throws TemporalDataException
+     *             if the granule of the partition cannot be determined
+     */
+    public TemporalObject addTemporalObject(long inf, long sup,
+            int granularityId, int granularityContextId)
+            throws TemporalDataException {
+        TemporalDataset dataset = getPartition(inf).dataset;
+        Instant instant = dataset.addInstant(nextElementId++, inf, sup,
+                granularityId, granularityContextId);
+        return dataset.addTemporalObject(nextObjectId++, instant.getId());
+    }
+
+    /**
+     * Add a new interval between two instants and a temporal object that
+     * occurs at it. All are added to the partition of the inf of the begin,
+     * even if the end lies in a later granule.
+     *
+     * @param beginInf
+     *            the lower end of the begin instant
+     * @param beginSup
+     *            the upper end of the begin instant
+     * @param endInf
+     *            the lower end of the end instant
+     * @param endSup
+     *            the upper end of the end instant
+     * @param granularityId
+     *            the granularityID of the instants
+     * @param granularityContextId
+     *            the granularityContextID of the instants
+     * @return the new temporal object
+     * @throws TemporalDataException
+     *             if the granule of the partition cannot be determined
+     */
+    public TemporalObject addTemporalObject(long beginInf, long beginSup,
+            long endInf, long endSup, int granularityId,
+            int granularityContextId) throws TemporalDataException {
+        TemporalDataset dataset = getPartition(beginInf).dataset;
+        Instant begin = dataset.addInstant(nextElementId++, beginInf,
+                beginSup, granularityId, granularityContextId);
+        Instant end = dataset.addInstant(nextElementId++, endInf, endSup,
+                granularityId, granularityContextId);
+        GenericTemporalElement interval = dataset.addTemporalElement(
+                nextElementId++, beginInf, endSup, granularityId,
+                granularityContextId, TemporalElementStore.PRIMITIVE_INTERVAL);
+        interval.linkWithChild(begin);
+        interval.linkWithChild(end);
+        return dataset.addTemporalObject(nextObjectId++, interval.getId());
+    }
+
+    // ----- queries -----
+
+    /**
+     * Get the number of temporal objects in all partitions.
+     *
+     * @return the number of temporal objects
+     */
+    public int getTemporalObjectCount() {
+        int count = 0;
+        for (Partition partition : partitions.values()) {
+            count += partition.dataset.getTemporalObjectCount();
+        }
+        return count;
+    }
+
+    /**
+     * Get an iterator over {@link TemporalObject}s of all partitions filtered
+     * by the given predicate. Partitions are pruned if their lifespan does
+     * not overlap the bounds of a {@link TemporalComparisonPredicate} that
+     * the predicate requires (see
+     * {@link TemporalComparisonPredicate#getBounds()}), also within
+     * conjunctions and disjunctions. Thus, temporal objects of unanchored
+     * temporal elements are only returned from partitions that are not
+     * pruned.
+     *
+     * @param filter
+     *            predicate to apply to temporal objects
+     * @return an iterator over temporal objects
+     */
+    public Iterator<TemporalObject> temporalObjects(Predicate filter) {
+        List<Iterator<TemporalObject>> iterators = new ArrayList<Iterator<TemporalObject>>();
+        for (Partition partition : partitions.values()) {
+            if (canMatch(filter, partition)) {
+                iterators.add(partition.dataset.temporalObjects(filter)
+                        .iterator());
+            }
+        }
+        return new ChainedIterator(iterators, null);
+    }
+
+    /**
+     * Check whether temporal objects of a partition can match a predicate
+     * according to the bounds of its temporal comparisons.
+     */
+    private static boolean canMatch(Predicate filter, Partition partition) {
+        if (filter instanceof TemporalComparisonPredicate) {
+            long[] bounds = ((TemporalComparisonPredicate) filter).getBounds();
+            return bounds == null || partition.overlaps(bounds[0], bounds[1]);
+        } else if (filter instanceof AndPredicate) {
+            AndPredicate and = (AndPredicate) filter;
+            for (int i = 0; i < and.size(); i++) {
+                if (!canMatch(and.get(i), partition)) {
+                    return false;
+                }
+            }
+            return true;
+        } else if (filter instanceof OrPredicate) {
+            OrPredicate or = (OrPredicate) filter;
+            for (int i = 0; i < or.size(); i++) {
+                if (canMatch(or.get(i), partition)) {
+                    return true;
+                }
+            }
+            return or.size() == 0;
+        }
+        return true;
+    }
+
+    /**
+     * Get an iterator over {@link TemporalObject}s whose temporal element
+     * overlaps the given interval. Only partitions that overlap the interval
+     * are queried using their interval index.
+     *
+     * @param lo
+     *            the lower end of the interval
+     * @param hi
+     *            the upper end of the interval
+     * @return an iterator over temporal objects
+     */
+    public Iterator<TemporalObject> temporalObjects(long lo, long hi) {
+        return temporalObjects(lo, hi, null);
+    }
+
+    /**
+     * Get an iterator over {@link TemporalObject}s whose temporal element
+     * overlaps the given interval and which match the given predicate (e.g.,
+     * a temporal comparison). Only partitions that overlap the interval are
+     * queried using their interval index. The predicate is not analyzed;
+     * thus, the interval should cover all objects it can match.
+     *
+     * @param lo
+     *            the lower end of the interval
+     * @param hi
+     *            the upper end of the interval
+     * @param filter
+     *            predicate to apply to temporal objects or <tt>null</tt>
+     * @return an iterator over temporal objects
+     */
+    public Iterator<TemporalObject> temporalObjects(long lo, long hi,
+            Predicate filter) {
+        List<Iterator<TemporalObject>> iterators = new ArrayList<Iterator<TemporalObject>>();
+        for (Partition partition : getPartitions(lo, hi)) {
+            iterators.add(partition.dataset.intervalIndex().temporalObjects(
+                    lo, hi));
+        }
+        return new ChainedIterator(iterators, filter);
+    }
+
+    /**
+     * Process all partitions that overlap the given interval, e.g., to
+     * aggregate their temporal objects. The task is called once per
+     * partition. If an executor is given, the partitions are processed in
+     * parallel; the task must not modify data outside its partition.
+     *
+     * @param lo
+     *            the lower end of the interval
+     * @param hi
+     *            the upper end of the interval
+     * @param task
+     *            the task to call for each partition
+     * @param executor
+     *            the executor to run the tasks or <tt>null</tt> to process
+     *            the partitions in the calling thread
+     * @return the results of the task ordered by time of the partitions
+     * @throws TemporalDataException
+     *             if a task failed or was interrupted
+     */
+    public <T> List<T> process(long lo, long hi, final PartitionTask<T> task,
+            ExecutorService executor) throws TemporalDataException {
+        List<Partition> selected = getPartitions(lo, hi);
+        List<T> results = new ArrayList<T>(selected.size());
+        if (executor == null) {
+            for (Partition partition : selected) {
+                results.add(task.process(partition));
+            }
+            return results;
+        }
+
+        List<Future<T>> futures = new ArrayList<Future<T>>(selected.size());
+        for (final Partition partition : selected) {
+            futures.add(executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws Exception {
+                    return task.process(partition);
+                }
+            }));
+        }
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemporalDataException("Processing was interrupted.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TemporalDataException) {
+                throw (TemporalDataException) e.getCause();
+            }
+            throw new TemporalDataException(e.getCause());
+        } finally {
+            for (Future<T> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Get the minimal inf of all anchored temporal elements.
+     *
+     * @return the inf or {@link Long#MIN_VALUE} if there are no anchored
+     *         temporal elements
+     */
+    @Override
+    public long getInf() {
+        for (Partition partition : partitions.values()) {
+            if (!partition.isEmpty()) {
+                // partitions are ordered by the inf of their elements
+                return partition.getInf();
+            }
+        }
+        return Long.MIN_VALUE;
+    }
+
+    /**
+     * Get the maximal sup of all anchored temporal elements.
+     *
+     * @return the sup or {@link Long#MAX_VALUE} if there are no anchored
+     *         temporal elements
+     */
+    @Override
+    public long getSup() {
+        boolean empty = true;
+        long sup = Long.MIN_VALUE;
+        for (Partition partition : partitions.values()) {
+            if (!partition.isEmpty()) {
+                empty = false;
+                sup = Math.max(sup, partition.getSup());
+            }
+        }
+        return empty ? Long.MAX_VALUE : sup;
+    }
+
+    @Override
+    public String toString() {
+        return "PartitionedTemporalDataset [" + partitions.size()
+                + " partitions, " + getTemporalObjectCount()
+                + " temporal objects]";
+    }
+
+    /**
+     * A partition of a {@link PartitionedTemporalDataset}. It consists of the
+     * bounds of a granule of the partitioning granularity and a temporal
+     * dataset with temporal elements that begin within this granule. The
+     * lifespan of a partition is the lifespan of its anchored temporal
+     * elements, which may end after the granule.
+     */
+    public static class Partition implements Lifespan {
+        private final long inf;
+        private final long sup;
+        private final TemporalDataset dataset;
+
+        Partition(long inf, long sup, TemporalDataset dataset) {
+            this.inf = inf;
+            this.sup = sup;
+            this.dataset = dataset;
+        }
+
+        /**
+         * Get the inf of the granule of this partition.
+         */
+        public long getGranuleInf() {
+            return inf;
+        }
+
+        /**
+         * Get the sup of the granule of this partition.
+         */
+        public long getGranuleSup() {
+            return sup;
+        }
+
+        /**
+         * Get the temporal dataset of this partition.
+         */
+        public TemporalDataset getDataset() {
+            return dataset;
+        }
+
+        /**
+         * Check whether the partition has no anchored temporal elements.
+         */
+        public boolean isEmpty() {
+            return dataset.getTemporalElements().getInf() == Long.MIN_VALUE;
+        }
+
+        /**
+         * Get the minimal inf of the anchored temporal elements.
+         */
+        @Override
+        public long getInf() {
+            return dataset.getTemporalElements().getInf();
+        }
+
+        /**
+         * Get the maximal sup of the anchored temporal elements.
+         */
+        @Override
+        public long getSup() {
+            return dataset.getTemporalElements().getSup();
+        }
+
+        boolean contains(long chronon) {
+            return inf <= chronon && chronon <= sup;
+        }
+
+        boolean overlaps(long lo, long hi) {
+            return !isEmpty() && getInf() <= hi && getSup() >= lo;
+        }
+
+        @Override
+        public String toString() {
+            return "Partition [" + inf + ", " + sup + "]: " + dataset;
+        }
+    }
+
+    /**
+     * A computation on one partition, e.g., an aggregation.
+     *
+     * @param <T>
+     *            the type of the result
+     */
+    public interface PartitionTask<T> {
+
+        /**
+         * Process a partition.
+         *
+         * @param partition
+         *            the partition
+         * @return the result for the partition
+         * @throws TemporalDataException
+         *             if the processing failed
+         */
+        T process(Partition partition) throws TemporalDataException;
+    }
+
+    /**
+     * Iterates over the temporal objects of several iterators that match a
+     * predicate.
+     */
+    private static class ChainedIterator implements Iterator<TemporalObject> {
+        private final Iterator<Iterator<TemporalObject>> iterators;
+        private final Predicate filter;
+        private Iterator<TemporalObject> current = null;
+        private TemporalObject next = null;
+
+        ChainedIterator(List<Iterator<TemporalObject>> iterators,
+                Predicate filter) {
+            this.iterators = iterators.iterator();
+            this.filter = filter;
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            while (next == null) {
+                while (current == null || !current.hasNext()) {
+                    if (!iterators.hasNext()) {
+                        return;
+                    }
+                    current = iterators.next();
+                }
+                TemporalObject obj = current.next();
+                if (filter == null || filter.getBoolean(obj)) {
+                    next = obj;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public TemporalObject next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            TemporalObject result = next;
+            advance();
+            return result;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
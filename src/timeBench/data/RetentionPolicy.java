@@ -0,0 +1,155 @@
+package timeBench.data;
+
+/**
+ * Limits of a {@link TemporalDataset} that receives a stream of temporal
+ * objects, e.g., live measurements for a monitoring display. If a limit is
+ * exceeded after temporal objects were appended, the oldest temporal objects
+ * are evicted in arrival order together with their temporal elements, unless
+ * these are still referenced.
+ *
+ * <p>
+ * The age of a temporal object is the difference between the sup of its
+ * temporal element and the maximal sup of all appended temporal elements.
+ * Objects with unanchored temporal elements do not expire by age. Eviction
+ * stops at the first object that is not expired, because streams are
+ * expected to arrive in time order.
+ *
+ * <p>
+ * Rows released by evicted objects and elements are reused by the tables for
+ * new data, so that tables and indices do not grow beyond the limits.
+ *
+ * @see TemporalDataset#setRetentionPolicy(RetentionPolicy)
+ */
+public class RetentionPolicy {
+
+    /**
+     * no limit on the age of temporal objects
+     */
+    public static final long UNLIMITED_AGE = Long.MAX_VALUE;
+
+    /**
+     * no limit on the number of temporal objects
+     */
+    public static final int UNLIMITED_ROWS = Integer.MAX_VALUE;
+
+    private final long maxAge;
+    private final int maxRows;
+    private final int batchSize;
+
+    /**
+     * Create a retention policy. If the row limit is exceeded, a batch of
+     * 1/16 of the limit is evicted.
+     *
+     * @param maxAge
+     *            the maximal age of temporal objects in milliseconds or
+     *            {@link #UNLIMITED_AGE}
+     * @param maxRows
+     *            the maximal number of temporal objects or
+     *            {@link #UNLIMITED_ROWS}
+     */
+    public RetentionPolicy(long maxAge, int maxRows) {
+        this(maxAge, maxRows, Math.max(1, maxRows / 16));
+    }
+
+    /**
+     * Create a retention policy.
+     *
+     * @param maxAge
+     *            the maximal age of temporal objects in milliseconds or
+     *            {@link #UNLIMITED_AGE}
+     * @param maxRows
+     *            the maximal number of temporal objects or
+     *            {@link #UNLIMITED_ROWS}
+     * @param batchSize
+     *            the minimal number of temporal objects evicted at once, if
+     *            the row limit is exceeded
+     */
+    public RetentionPolicy(long maxAge, int maxRows, int batchSize) {
+        if (maxAge < 0 || maxRows < 0 || batchSize < 1) {
+            throw new IllegalArgumentException("Invalid retention limits.");
+        }
+        this.maxAge = maxAge;
+        this.maxRows = maxRows;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Create a retention policy that keeps temporal objects up to the given
+     * age.
+     *
+     * @param maxAge
+     *            the maximal age of temporal objects in milliseconds
+     * @return the retention policy
+     */
+    public static RetentionPolicy maxAge(long maxAge) {
+        return new RetentionPolicy(maxAge, UNLIMITED_ROWS);
+    }
+
+    /**
+     * Create a retention policy that keeps up to the given number of temporal
+     * objects.
+     *
+     * @param maxRows
+     *            the maximal number of temporal objects
+     * @return the retention policy
+     */
+    public static RetentionPolicy maxRows(int maxRows) {
+        return new RetentionPolicy(UNLIMITED_AGE, maxRows);
+    }
+
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Get the number of temporal objects that need to be evicted.
+     *
+     * @param count
+     *            the number of temporal objects
+     * @return the number of temporal objects to evict, at least a batch if
+     *         the row limit is exceeded
+     */
+    int getExcessRows(int count) {
+        if (count <= maxRows) {
+            return 0;
+        }
+        return Math.min(count, Math.max(count - maxRows, batchSize));
+    }
+
+    /**
+     * Check whether an object with the given sup has expired.
+     *
+     * @param sup
+     *            the sup of the temporal element of the object
+     * @param newest
+     *            the maximal sup of all appended temporal elements
+     */
+    boolean isExpired(long sup, long newest) {
+        if (maxAge == UNLIMITED_AGE) {
+            return false;
+        }
+        // the difference newest - sup may overflow, so compare with the
+        // oldest sup that has not expired, which saturates at the beginning
+        // of time
+        long oldest = (newest < Long.MIN_VALUE + maxAge) ? Long.MIN_VALUE
+                : newest - maxAge;
+        return sup < oldest;
+    }
+
+    @Override
+    public String toString() {
+        return "RetentionPolicy [maxAge="
+                + (maxAge == UNLIMITED_AGE ? "unlimited" : maxAge)
+                + ", maxRows="
+                + (maxRows == UNLIMITED_ROWS ? "unlimited" : maxRows)
+                + ", batchSize=" + batchSize + "]";
+    }
+}
@@ -0,0 +1,88 @@
+package timeBench.data;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Ring buffer of the ids of appended temporal objects in arrival order. It
+ * also tracks the maximal sup of the appended temporal elements, which is the
+ * reference point for the age of temporal objects.
+ *
+ * <p>
+ * Ids of temporal objects that were removed by other means stay in the queue
+ * and are skipped on eviction.
+ *
+ * @see RetentionPolicy
+ */
+class RetentionQueue {
+
+    private long[] ids = new long[64];
+    private int head = 0;
+    private int size = 0;
+
+    private long newest = Long.MIN_VALUE;
+
+    /**
+     * Append the id of a temporal object.
+     *
+     * @param id
+     *            the id of the temporal object
+     */
+    void add(long id) {
+        if (size == ids.length) {
+            long[] grown = new long[ids.length * 2];
+            int tail = ids.length - head;
+            System.arraycopy(ids, head, grown, 0, tail);
+            System.arraycopy(ids, 0, grown, tail, head);
+            ids = grown;
+            head = 0;
+        }
+        ids[(head + size) % ids.length] = id;
+        size++;
+    }
+
+    /**
+     * Extend the newest sup by an appended anchored temporal element.
+     */
+    void extend(long sup) {
+        if (sup > newest) {
+            newest = sup;
+        }
+    }
+
+    /**
+     * Get the maximal sup of all appended anchored temporal elements.
+     *
+     * @return the sup or {@link Long#MIN_VALUE} if none was appended
+     */
+    long getNewest() {
+        return newest;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the id of the oldest temporal object without removing it.
+     */
+    long peek() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        return ids[head];
+    }
+
+    /**
+     * Remove and return the id of the oldest temporal object.
+     */
+    long poll() {
+        long id = peek();
+        head = (head + 1) % ids.length;
+        size--;
+        return id;
+    }
+}
@@ -0,0 +1,318 @@
+package timeBench.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Front-end for adding temporal elements and temporal objects to a
+ * {@link TemporalDataset} from several threads in parallel. Each thread uses
+ * its own {@link Producer}, which stages new rows in primitive buffers and
+ * assigns ids from ranges reserved in advance. Full buffers are merged into
+ * the dataset in batches under a common lock, so that producers only contend
+ * for the merge.
+ *
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * TemporalDataIngester ingester = new TemporalDataIngester(dataset, &quot;value&quot;);
+ * // in each parser thread
+ * TemporalDataIngester.Producer producer = ingester.newProducer();
+ * long el = producer.addInstant(inf, sup, granularityId, contextId);
+ * producer.addTemporalObject(el, value);
+ * producer.close();
+ * </pre>
+ *
+ * <p>
+ * While producers are open, the dataset must not be modified by other means,
+ * because ids reserved by producers would not be known to the dataset. Ids
+ * reserved but not used by a producer are skipped.
+ *
+ * <p>
+ * A producer merges its staged temporal elements before its staged temporal
+ * objects, but it does not wait for other producers. A temporal object may
+ * reference a temporal element staged by another producer; such an object is
+ * only resolvable after both producers have been flushed or closed, so
+ * queries on the dataset should wait for {@link #close()}.
+ *
+ * <p>
+ * Data values are staged as <tt>double</tt>. Therefore, only data columns of
+ * type <tt>double</tt>, <tt>float</tt>, <tt>int</tt>, <tt>short</tt>, or
+ * <tt>byte</tt> are accepted; <tt>long</tt> columns are rejected because
+ * values above 2<sup>53</sup> would lose precision.
+ */
+public class TemporalDataIngester {
+
+    /**
+     * default number of rows staged by a producer before they are merged
+     */
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    private final TemporalDataset dataset;
+    private final TemporalElementStore store;
+    private final int[] dataColumns;
+    private final int batchSize;
+
+    private final AtomicLong nextElementId;
+    private final AtomicLong nextObjectId;
+
+    /**
+     * lock for merging staged rows into the dataset
+     */
+    private final Object mergeLock = new Object();
+
+    private final List<Producer> producers = new ArrayList<Producer>();
+
+    /**
+     * Create an ingester for a temporal dataset.
+     *
+     * @param dataset
+     *            the temporal dataset to fill
+     * @param dataFields
+     *            the numeric data columns that are set for each temporal
+     *            object
+     * @throws IllegalArgumentException
+     *             if a data column does not exist or its type cannot be
+     *             staged as <tt>double</tt> without loss
+     */
+    public TemporalDataIngester(TemporalDataset dataset, String... dataFields) {
+        this(dataset, DEFAULT_BATCH_SIZE, dataFields);
+    }
+
+    /**
+     * Create an ingester for a temporal dataset.
+     *
+     * @param dataset
+     *            the temporal dataset to fill
+     * @param batchSize
+     *            the number of rows staged by a producer before they are
+     *            merged; also the size of reserved id ranges
+     * @param dataFields
+     *            the numeric data columns that are set for each temporal
+     *            object
+     * @throws IllegalArgumentException
+     *             if a data column does not exist or its type cannot be
+     *             staged as <tt>double</tt> without loss
+     */
+    public TemporalDataIngester(TemporalDataset dataset, int batchSize,
+            String... dataFields) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive.");
+        }
+        this.dataset = dataset;
+        this.store = dataset.getTemporalElements();
+        this.batchSize = batchSize;
+        this.dataColumns = new int[dataFields.length];
+        for (int i = 0; i < dataFields.length; i++) {
+            dataColumns[i] = dataset.getTemporalObjectTable().getColumnNumber(
+                    dataFields[i]);
+            if (dataColumns[i] < 0) {
+                throw new IllegalArgumentException("Unknown data column: "
+                        + dataFields[i]);
+            }
+            Class<?> type = dataset.getTemporalObjectTable().getColumnType(
+                    dataColumns[i]);
+            if (type != double.class && type != float.class
+                    && type != int.class && type != short.class
+                    && type != byte.class) {
+                throw new IllegalArgumentException("Data column "
+                        + dataFields[i] + " of type " + type.getName()
+                        + " cannot be staged as double.");
+            }
+        }
+        this.nextElementId = new AtomicLong(store.getNextTemporalElementId());
+        this.nextObjectId = new AtomicLong(dataset.getNextTemporalObjectId());
+    }
+
+    /**
+     * Create a producer to be used by a single thread.
+     *
+     * @return a new producer
+     */
+    public Producer newProducer() {
+        Producer producer = new Producer();
+        synchronized (producers) {
+            producers.add(producer);
+        }
+        return producer;
+    }
+
+    /**
+     * Merge the staged rows of all producers that have not been closed and
+     * close them. This must only be called after all producer threads have
+     * finished (e.g., after {@link Thread#join()}).
+     */
+    public void close() {
+        List<Producer> open;
+        synchronized (producers) {
+            open = new ArrayList<Producer>(producers);
+        }
+        for (Producer producer : open) {
+            producer.close();
+        }
+    }
+
+    /**
+     * Stages temporal elements and temporal objects added by one thread.
+     * Producers are not thread-safe.
+     */
+    public class Producer {
+
+        private long elementId;
+        private long elementIdLimit;
+        private long objectId;
+        private long objectIdLimit;
+
+        // staged temporal elements
+        private int elementCount = 0;
+        private final long[] elementIds = new long[batchSize];
+        private final long[] infs = new long[batchSize];
+        private final long[] sups = new long[batchSize];
+        private final int[] granularityIds = new int[batchSize];
+        private final int[] granularityContextIds = new int[batchSize];
+        private final int[] kinds = new int[batchSize];
+
+        // staged temporal objects
+        private int objectCount = 0;
+        private final long[] objectIds = new long[batchSize];
+        private final long[] objectElementIds = new long[batchSize];
+        private final double[] values = new double[batchSize
+                * dataColumns.length];
+
+        private boolean closed = false;
+
+        private Producer() {
+        }
+
+        /**
+         * Add a temporal element.
+         *
+         * @return the id of the new temporal element
+         */
+        public long addTemporalElement(long inf, long sup, int granularityId,
+                int granularityContextId, int kind) {
+            checkOpen();
+            if (elementCount == batchSize) {
+                flush();
+            }
+            if (elementId == elementIdLimit) {
+                elementId = nextElementId.getAndAdd(batchSize);
+                elementIdLimit = elementId + batchSize;
+            }
+            int i = elementCount++;
+            elementIds[i] = elementId++;
+            infs[i] = inf;
+            sups[i] = sup;
+            granularityIds[i] = granularityId;
+            granularityContextIds[i] = granularityContextId;
+            kinds[i] = kind;
+            return elementIds[i];
+        }
+
+        /**
+         * Add an instant.
+         *
+         * @return the id of the new temporal element
+         */
+        public long addInstant(long inf, long sup, int granularityId,
+                int granularityContextId) {
+            return addTemporalElement(inf, sup, granularityId,
+                    granularityContextId,
+                    TemporalElementStore.PRIMITIVE_INSTANT);
+        }
+
+        /**
+         * Add a temporal object.
+         *
+         * @param temporalElementId
+         *            the id of the temporal element, which was added to the
+         *            dataset before or is staged by any producer of this
+         *            ingester (see {@link TemporalDataIngester})
+         * @param dataValues
+         *            the values of the data columns given to the ingester
+         * @return the id of the new temporal object
+         */
+        public long addTemporalObject(long temporalElementId,
+                double... dataValues) {
+            checkOpen();
+            if (dataValues.length != dataColumns.length) {
+                throw new IllegalArgumentException("Expected "
+                        + dataColumns.length + " data values.");
+            }
+            if (objectCount == batchSize) {
+                flush();
+            }
+            if (objectId == objectIdLimit) {
+                objectId = nextObjectId.getAndAdd(batchSize);
+                objectIdLimit = objectId + batchSize;
+            }
+            int i = objectCount++;
+            objectIds[i] = objectId++;
+            objectElementIds[i] = temporalElementId;
+            System.arraycopy(dataValues, 0, values, i * dataColumns.length,
+                    dataColumns.length);
+            return objectIds[i];
+        }
+
+        /**
+         * Merge the staged temporal elements and temporal objects into the
+         * dataset. Elements of this producer are merged before its objects;
+         * elements staged by other producers are not merged.
+         */
+        public void flush() {
+            if (elementCount == 0 && objectCount == 0) {
+                return;
+            }
+            int ne = elementCount;
+            int no = objectCount;
+            int nv = no * dataColumns.length;
+            synchronized (mergeLock) {
+                if (ne > 0) {
+                    store.addTemporalElements(trim(elementIds, ne),
+                            trim(infs, ne), trim(sups, ne),
+                            trim(granularityIds, ne),
+                            trim(granularityContextIds, ne), trim(kinds, ne));
+                }
+                if (no > 0) {
+                    dataset.addTemporalObjects(trim(objectIds, no),
+                            trim(objectElementIds, no), dataColumns,
+                            (nv == values.length) ? values : Arrays.copyOf(
+                                    values, nv));
+                }
+            }
+            elementCount = 0;
+            objectCount = 0;
+        }
+
+        /**
+         * Merge the staged rows and release the producer.
+         */
+        public void close() {
+            if (!closed) {
+                flush();
+                closed = true;
+                synchronized (producers) {
+                    producers.remove(this);
+                }
+            }
+        }
+
+        private void checkOpen() {
+            if (closed) {
+                throw new IllegalStateException("Producer is closed.");
+            }
+        }
+
+        private long[] trim(long[] buffer, int length) {
+            return (length == buffer.length) ? buffer : Arrays.copyOf(buffer,
+                    length);
+        }
+
+        private int[] trim(int[] buffer, int length) {
+            return (length == buffer.length) ? buffer : Arrays.copyOf(buffer,
+                    length);
+        }
+    }
+}
@@ -4,22 +4,32 @@ import ieg.prefuse.data.ParentChildGraph;
 import ieg.util.lang.CustomIterable;
 
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Iterator;
-import java.util.Set;
+import java.util.NoSuchElementException;
 
 import prefuse.data.Graph;
 import prefuse.data.Schema;
 import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.column.ExpressionColumn;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
 import prefuse.data.expression.Predicate;
-import prefuse.data.util.Index;
+import prefuse.util.collections.IntArrayIterator;
 import prefuse.util.collections.IntIterator;
 import timeBench.calendar.Granularity;
 import timeBench.calendar.Granule;
-import timeBench.data.expression.AnchoredPredicate;
-import timeBench.data.util.DefaultIntervalComparator;
-import timeBench.data.util.IntervalComparator;
+import timeBench.data.util.AbstractIntColumn;
+import timeBench.data.util.AbstractLongColumn;
+import timeBench.data.util.DoubleArrayColumn;
+import timeBench.data.util.DictionaryColumn;
+import timeBench.data.util.ElementObjectIndex;
+import timeBench.data.util.IdIndex;
 import timeBench.data.util.IntervalIndex;
+import timeBench.data.util.LongArrayColumn;
+import timeBench.data.util.MemoryReport;
 import timeBench.data.util.TemporalIndex;
 
 /**
@@ -44,8 +54,12 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
      */
     private TemporalElementStore temporalElements;
 
-    // TODO roots as a linked list?
-    private Set<TemporalObject> roots = new HashSet<TemporalObject>(); 
+    /**
+     * rows of root objects and a cache of these rows in ascending order
+     * (<tt>null</tt> if the roots changed)
+     */
+    private BitSet roots = new BitSet();
+    private int[] rootRows = null;
     private int depth = 1; // 1-> table, otherwise depth of forest
 
     /**
@@ -62,20 +76,41 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
 	}
 
 	/**
-     * index for {@link TemporalObject} row numbers by {@link TemporalObject#ID}. 
+     * index for {@link TemporalObject} row numbers by {@link TemporalObject#ID}
+     * (also yields the next id). 
      */
-    private Index indexObjects;
+    private IdIndex indexObjects;
 
     /**
-     * index for {@link TemporalObject} row numbers by {@link TemporalElement#ID}. 
+     * reverse index for {@link TemporalObject} row numbers by
+     * {@link TemporalElement} row numbers.
      */
-    private Index indexObjectsByElements;
+    private ElementObjectIndex indexObjectsByElements;
     
     /**
      * interval index for anchored {@link TemporalElement}s.
      * Initialized on demand by {@link #intervalIndex()}.
      */
     private IntervalIndex indexElementIntervals = null;
+
+    /**
+     * map from data columns to their metadata columns.
+     * Initialized on demand by {@link #getMetadataColumns()}.
+     */
+    private MetadataColumns metadataColumns = null;
+
+    /**
+     * number of changes to temporal objects, temporal elements, their edges,
+     * and roots
+     */
+    private long version = 0l;
+
+    /**
+     * limits for streaming data and arrival order of temporal objects
+     * (<tt>null</tt> if there are no limits)
+     */
+    private RetentionPolicy retentionPolicy = null;
+    private RetentionQueue retentionQueue = null;
     
     /**
      * Constructs an empty {@link TemporalDataset}
@@ -93,14 +128,15 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
      */
     public TemporalDataset(TemporalElementStore temporalElements) {
         // nodes of temporal object graph --> TemporalObject
-        super(new TemporalTable(), TemporalObject.class);
+        super(new TemporalTable(), new EdgeTable(), TemporalObject.class);
 
         // add temporal objects columns (primary and foreign key)
         TemporalTable temporalObjects = (TemporalTable) super.getNodeTable();
 
         // WARNING: The methods getDataColumnIndices() assumes that these
         //          two columns have indices 0 -- 2
-        temporalObjects.addColumn(TemporalObject.ID, long.class, -1);
+        // primitive array column can be filled in batches without events
+        temporalObjects.addColumn(TemporalObject.ID, new LongArrayColumn(-1l));
 
         // super.getNodeTable().addColumn(TemporalObject.TEMPORAL_ELEMENT_ID,
         // new TemporalColumn(temporalElements));
@@ -173,9 +209,41 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
         this.temporalElements = temporalElements;
 
         // add indices
-        this.indexObjects = temporalObjects.index(TemporalObject.ID);
-        this.indexObjectsByElements = temporalObjects
-                .index(TemporalObject.TEMPORAL_ELEMENT_ID);
+        this.indexObjects = new IdIndex(temporalObjects, TemporalObject.ID);
+        // reuse reverse index if temporal objects are registered at the store 
+        ElementObjectIndex byElements = temporalElements
+                .getElementObjectIndex(temporalObjects,
+                        TemporalObject.TEMPORAL_ELEMENT_ID);
+        this.indexObjectsByElements = (byElements != null) ? byElements
+                : new ElementObjectIndex(temporalElements, temporalObjects,
+                        TemporalObject.TEMPORAL_ELEMENT_ID);
+
+        // count changes for versioning snapshots
+        TableListener versionCounter = new TableListener() {
+            @Override
+            public void tableChanged(Table t, int start, int end, int col,
+                    int type) {
+                version++;
+            }
+        };
+        temporalObjects.addTableListener(versionCounter);
+        temporalElements.getNodeTable().addTableListener(versionCounter);
+        super.getEdgeTable().addTableListener(versionCounter);
+        temporalElements.getEdgeTable().addTableListener(versionCounter);
+
+        // removed rows are no longer roots, because rows are reused
+        temporalObjects.addTableListener(new TableListener() {
+            @Override
+            public void tableChanged(Table t, int start, int end, int col,
+                    int type) {
+                if (type == EventConstants.DELETE
+                        && roots.nextSetBit(start) >= 0
+                        && roots.nextSetBit(start) <= end) {
+                    roots.clear(start, end + 1);
+                    rootRows = null;
+                }
+            }
+        });
     }
 
     /**
@@ -196,6 +264,31 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
     public void addDataColumn(String name,
             @SuppressWarnings("rawtypes") Class type, Object defaultValue)
             throws TemporalDataException {
+        addDataColumn(name, type, defaultValue, false);
+    }
+
+    /**
+     * Add a data column with the given name and data type to the temporal
+     * objects. String columns with repetitive values (e.g., labels) can be
+     * dictionary-encoded, so that each distinct string is stored once and
+     * rows are compared by int codes (see {@link DictionaryColumn}).
+     * 
+     * @param name
+     *            the data field name for the column
+     * @param type
+     *            the data type, as a Java Class, for the column
+     * @param defaultValue
+     *            the default value for column data values or <tt>null</tt>
+     * @param dictionaryEncoded
+     *            <tt>true</tt> to store the strings of a {@link String}
+     *            column in a dictionary
+     * @throws TemporalDataException
+     *             if a reserved column name was passed or a column of another
+     *             type than {@link String} is to be dictionary-encoded
+     */
+    public void addDataColumn(String name,
+            @SuppressWarnings("rawtypes") Class type, Object defaultValue,
+            boolean dictionaryEncoded) throws TemporalDataException {
         // check that schema does not interfere with primary and foreign key
         // schema.getColumnIndex(s) would build a HashMap --> less efficient
         if (name == null || name.startsWith("_")) {
@@ -203,7 +296,16 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
                     + "\"_\" are reserved.");
         }
 
-        super.getNodeTable().addColumn(name, type, defaultValue);
+        if (!dictionaryEncoded) {
+            super.getNodeTable().addColumn(name, type, defaultValue);
+        } else if (type == String.class
+                && (defaultValue == null || defaultValue instanceof String)) {
+            ((TemporalTable) super.getNodeTable()).addDictionaryColumn(name,
+                    (String) defaultValue);
+        } else {
+            throw new TemporalDataException("Only string columns can be "
+                    + "dictionary-encoded.");
+        }
     }
     
     /**
@@ -276,41 +378,121 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
     // ----- ROOT ACCESSORS -----
 
     public int getRootCount() {
-        return roots.size();
+        return getRootRows().length;
     }
 
     /**
      * Gets the roots if the TemporalObjects form a forest, the root, if they
-     * form a tree, or null for tables
+     * form a tree, or null for tables. The roots are iterated in row order.
+     * Roots can be set or unset while iterating, the iteration continues over
+     * the roots at its start.
      * 
      * @return the roots as an iterable collection
      */
     public Iterable<TemporalObject> roots() {
-        return this.roots;
+        return new Iterable<TemporalObject>() {
+            @Override
+            public Iterator<TemporalObject> iterator() {
+                return new RootIterator();
+            }
+        };
+    }
+
+    /**
+     * Gets the rows of the root objects in ascending order. The array is
+     * cached until the roots change, thus it must not be modified.
+     * 
+     * @return the rows of the root objects
+     */
+    public int[] getRootRows() {
+        if (rootRows == null) {
+            int[] rows = new int[roots.cardinality()];
+            for (int i = 0, row = roots.nextSetBit(0); row >= 0; row = roots
+                    .nextSetBit(row + 1)) {
+                rows[i++] = row;
+            }
+            rootRows = rows;
+        }
+        return rootRows;
     }
 
     public boolean isRoot(TemporalObject obj) {
-        return obj.getTemporalDataset().roots.contains(obj);
+        return obj.getTemporalDataset().roots.get(obj.getRow());
     }
 
     public void setRoot(TemporalObject obj, boolean root) {
-        if (root) {
-            obj.getTemporalDataset().roots.add(obj);
-        } else {
-            obj.getTemporalDataset().roots.remove(obj);
+        TemporalDataset dataset = obj.getTemporalDataset();
+        if (dataset.roots.get(obj.getRow()) != root) {
+            dataset.roots.set(obj.getRow(), root);
+            dataset.rootRows = null;
+            dataset.version++;
+        }
+    }
+
+    /**
+     * Sets the root objects of a forest. Objects that are not in the given
+     * rows are no longer roots.
+     * 
+     * @param rows
+     *            the rows of the root objects
+     */
+    public void setRoots(int[] rows) {
+        Table objects = super.getNodeTable();
+        BitSet bits = new BitSet(objects.getMaximumRow() + 1);
+        for (int row : rows) {
+            if (!objects.isValidRow(row)) {
+                throw new IllegalArgumentException("Invalid row: " + row);
+            }
+            bits.set(row);
         }
+        roots = bits;
+        rootRows = null;
+        version++;
     }
 
     @Deprecated
     public long[] getRoots() {
-        long[] r = new long[getRootCount()];
-        int i=0;
-        for (TemporalObject obj : roots) {
-            r[i++] = obj.getId();
+        int[] rows = getRootRows();
+        Table objects = super.getNodeTable();
+        long[] r = new long[rows.length];
+        for (int i = 0; i < rows.length; i++) {
+            r[i] = objects.getLong(rows[i], TemporalObject.ID);
         }
         return r;
     }
 
+    /**
+     * Iterates over the roots at its start. {@link #remove()} unsets the
+     * last returned root.
+     */
+    private class RootIterator implements Iterator<TemporalObject> {
+        private final int[] rows = getRootRows();
+        private int next = 0;
+
+        @Override
+        public boolean hasNext() {
+            return next < rows.length;
+        }
+
+        @Override
+        public TemporalObject next() {
+            if (next >= rows.length) {
+                throw new NoSuchElementException();
+            }
+            return (TemporalObject) getNode(rows[next++]);
+        }
+
+        @Override
+        public void remove() {
+            if (next == 0) {
+                throw new IllegalStateException();
+            }
+            roots.clear(rows[next - 1]);
+            rootRows = null;
+            version++;
+        }
+    }
+
     public int getDepth() {
         return depth;
     }
@@ -479,6 +661,30 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
         return new CustomIterable(super.getNodeTable().tuples(filter));
     }
 
+    /**
+     * Get a cursor over all {@link TemporalObject}s in the temporal dataset.
+     * In contrast to {@link #temporalObjects()}, the cursor does not create
+     * proxy tuples.
+     * 
+     * @return a cursor positioned before the first temporal object
+     */
+    public TemporalObjectCursor cursor() {
+        return new TemporalObjectCursor(this, null);
+    }
+
+    /**
+     * Get a cursor over {@link TemporalObject}s in the temporal dataset,
+     * filtered by the given predicate.
+     * 
+     * @param filter
+     *            predicate to apply to tuples in this set, only tuples for
+     *            which the predicate evaluates to true are included
+     * @return a cursor positioned before the first temporal object
+     */
+    public TemporalObjectCursor cursor(Predicate filter) {
+        return new TemporalObjectCursor(this, filter);
+    }
+
     /**
      * Get the {@link TemporalObject} instance corresponding to its id, or
      * <tt>null</tt> if this dataset contains no object for the id.
@@ -494,6 +700,19 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
             (TemporalObject) super.getNode(row);
     }
 
+    /**
+     * Get the row number of the temporal object with the given id.
+     * 
+     * @param id
+     *            object id
+     * @return the temporal object table row number, or -1 if this dataset
+     *         contains no object for the id.
+     */
+    public int getTemporalObjectRow(long id) {
+        int row = this.indexObjects.get(id);
+        return (row == Integer.MIN_VALUE) ? -1 : row;
+    }
+
     /**
      * Get an iterator over all {@link TemporalObject}s occurring with the given
      * temporal element.
@@ -512,9 +731,35 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
     @SuppressWarnings("unchecked")
     protected Iterator<TemporalObject> getTemporalObjectsByElementIdIterator(
             long temporalId) {
-        IntIterator rows = this.indexObjectsByElements.rows(temporalId);
-        return super.getNodeTable().tuples(rows);
+        int[] rows = this.indexObjectsByElements.rowsById(temporalId);
+        return super.getNodeTable().tuples(
+                new IntArrayIterator(rows, 0, rows.length));
+    }
+
+    /**
+     * Get the rows of all {@link TemporalObject}s occurring with the given
+     * temporal element.
+     * 
+     * @param temporalId
+     *            temporal element id
+     * @return temporal object table row numbers in ascending order
+     */
+    public int[] getTemporalObjectRowsByElementId(long temporalId) {
+        return this.indexObjectsByElements.rowsById(temporalId);
     }
+
+    /**
+     * Get the rows of all {@link TemporalObject}s occurring with the temporal
+     * element in the given row.
+     * 
+     * @param elementRow
+     *            temporal element table row number
+     * @return temporal object table row numbers in ascending order
+     */
+    public int[] getTemporalObjectRowsByElementRow(int elementRow) {
+        return this.indexObjectsByElements.rows(elementRow);
+    }
+
     /**
      * Gets all (temporal) occurrences of data elements
      * 
@@ -528,6 +773,460 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
         return super.getNodeTable();
     }
 
+    /**
+     * Gets the version of the temporal dataset, which is increased by every
+     * change of temporal objects, temporal elements, their edges, or roots.
+     * 
+     * @return the version
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Takes an immutable snapshot of the temporal objects and temporal
+     * elements, which can be read by other threads while this dataset is
+     * modified. Columns backed by primitive arrays are shared copy-on-write,
+     * so that taking a snapshot is cheap. This method has to be called by the
+     * thread that modifies the dataset.
+     * 
+     * @return a read-only snapshot stamped with the current version
+     */
+    public TemporalDatasetSnapshot snapshot() {
+        return new TemporalDatasetSnapshot(this);
+    }
+
+    /**
+     * Replace the adjacency table by an empty one while the node table has no
+     * rows (see {@link GraphCompactor}).
+     */
+    void clearLinkTable() {
+        m_links = createLinkTable();
+    }
+
+    /**
+     * Renumbers the rows of temporal objects and temporal elements densely,
+     * so that rows released by deletions no longer take up space. Temporal
+     * objects and temporal elements keep their ids and their order, thus
+     * references by id remain valid; indices, caches, and roots are updated.
+     * Previously obtained row numbers and tuples become invalid.
+     * 
+     * @return the new row number of each old temporal object row (-1 for
+     *         removed rows) or <tt>null</tt> if there were no removed
+     *         temporal objects or relationships
+     * @throws UnsupportedOperationException
+     *             if the dataset was constructed with tables of other classes
+     *             than {@link TemporalTable} and {@link EdgeTable}
+     */
+    public int[] compact() {
+        temporalElements.compact();
+
+        // roots are cleared when the rows are removed
+        int[] oldRoots = getRootRows();
+        int[] rowMap = GraphCompactor.compact(this);
+        if (rowMap != null) {
+            int[] newRoots = new int[oldRoots.length];
+            for (int i = 0; i < oldRoots.length; i++) {
+                newRoots[i] = rowMap[oldRoots[i]];
+            }
+            setRoots(newRoots);
+        }
+        return rowMap;
+    }
+
+    /**
+     * Creates a new temporal dataset with copies of the given temporal
+     * objects, the temporal elements they reference (including child
+     * elements), the relationships among them, and their data values. Ids of
+     * temporal objects and temporal elements are kept. Rows are added in
+     * batches and values of primitive array columns are copied array-wise, so
+     * that large subsets are extracted without going through proxy tuples.
+     * 
+     * @param rows
+     *            the rows of the temporal objects to copy (invalid rows are
+     *            ignored)
+     * @return a new temporal dataset with its own temporal element store
+     */
+    public TemporalDataset select(IntIterator rows) {
+        Table objects = super.getNodeTable();
+        int[] objectRows = new int[16];
+        int n = 0;
+        while (rows.hasNext()) {
+            int row = rows.nextInt();
+            if (!objects.isValidRow(row)) {
+                continue;
+            }
+            if (n == objectRows.length) {
+                objectRows = Arrays.copyOf(objectRows, n * 2);
+            }
+            objectRows[n++] = row;
+        }
+        return select(sortedRows(objectRows, n));
+    }
+
+    /**
+     * Creates a new temporal dataset with copies of the temporal objects
+     * matching a predicate (see {@link #select(IntIterator)}).
+     * 
+     * @param filter
+     *            the predicate on temporal objects
+     * @return a new temporal dataset with its own temporal element store
+     */
+    public TemporalDataset select(Predicate filter) {
+        return select(super.getNodeTable().rows(filter));
+    }
+
+    /**
+     * Creates a new temporal dataset with copies of the temporal objects
+     * whose anchored temporal elements overlap an interval (see
+     * {@link #select(IntIterator)}). The interval index is created if
+     * necessary.
+     * 
+     * @param inf
+     *            the lower end of the interval
+     * @param sup
+     *            the upper end of the interval
+     * @return a new temporal dataset with its own temporal element store
+     */
+    public TemporalDataset select(long inf, long sup) {
+        // the interval index yields temporal element rows
+        IntIterator elementRows = intervalIndex().rows(inf, sup);
+        int[] objectRows = new int[16];
+        int n = 0;
+        while (elementRows.hasNext()) {
+            for (int row : indexObjectsByElements.rows(elementRows.nextInt())) {
+                if (n == objectRows.length) {
+                    objectRows = Arrays.copyOf(objectRows, n * 2);
+                }
+                objectRows[n++] = row;
+            }
+        }
+        return select(sortedRows(objectRows, n));
+    }
+
+    /**
+     * Sort rows and drop duplicates. Ascending rows yield long runs for
+     * array copies.
+     */
+    private static int[] sortedRows(int[] rows, int n) {
+        Arrays.sort(rows, 0, n);
+        int m = 0;
+        for (int i = 0; i < n; i++) {
+            if (m == 0 || rows[i] != rows[m - 1]) {
+                rows[m++] = rows[i];
+            }
+        }
+        return Arrays.copyOf(rows, m);
+    }
+
+    private TemporalDataset select(int[] rows) {
+        Table objects = super.getNodeTable();
+        Column elementIds = objects
+                .getColumn(TemporalObject.TEMPORAL_ELEMENT_ID);
+        int n = rows.length;
+
+        // collect referenced temporal elements and their descendants
+        BitSet parents = GraphCompactor.parentRows(temporalElements);
+        BitSet marked = new BitSet(
+                temporalElements.getNodeTable().getMaximumRow() + 1);
+        int[] stack = new int[16];
+        for (int i = 0; i < n; i++) {
+            int elementRow = temporalElements.getTemporalElementRow(elementIds
+                    .getLong(rows[i]));
+            if (elementRow < 0 || marked.get(elementRow)) {
+                continue;
+            }
+            marked.set(elementRow);
+            int top = 0;
+            stack[top++] = elementRow;
+            while (top > 0) {
+                int parent = stack[--top];
+                if (!parents.get(parent)) {
+                    continue;
+                }
+                IntIterator edges = temporalElements.inEdgeRows(parent);
+                while (edges.hasNext()) {
+                    int child = temporalElements.getSourceNode(edges.nextInt());
+                    if (!marked.get(child)) {
+                        marked.set(child);
+                        if (top == stack.length) {
+                            stack = Arrays.copyOf(stack, top * 2);
+                        }
+                        stack[top++] = child;
+                    }
+                }
+            }
+        }
+        int[] elementRows = new int[marked.cardinality()];
+        for (int i = 0, row = marked.nextSetBit(0); row >= 0; row = marked
+                .nextSetBit(row + 1)) {
+            elementRows[i++] = row;
+        }
+
+        TemporalElementStore store = new TemporalElementStore();
+        store.addCopiesOf(temporalElements, elementRows);
+        TemporalDataset result = new TemporalDataset(store);
+        result.additionalNonDataColums = additionalNonDataColums.clone();
+        result.depth = depth;
+
+        // data columns and additional non-data columns, i.e., all columns
+        // after id, temporal element id, and temporal element (derived
+        // columns are not copied)
+        TemporalTable copies = (TemporalTable) result.getNodeTable();
+        int[] cols = new int[objects.getColumnCount() - 3];
+        for (int j = 0; j < cols.length; j++) {
+            cols[j] = j + 3;
+        }
+        int[] copyCols = new int[cols.length];
+        for (int j = 0; j < cols.length; j++) {
+            Column col = objects.getColumn(cols[j]);
+            if (col instanceof ExpressionColumn) {
+                copyCols[j] = -1;
+            } else {
+                String name = objects.getColumnName(cols[j]);
+                if (col instanceof DictionaryColumn) {
+                    copies.addDictionaryColumn(name,
+                            (String) col.getDefaultValue());
+                } else {
+                    copies.addColumn(name, objects.getColumnType(cols[j]),
+                            col.getDefaultValue());
+                }
+                copyCols[j] = copies.getColumnNumber(name);
+            }
+        }
+
+        // values of array columns are set before the insertion is announced
+        boolean[] silent = new boolean[cols.length];
+        int first = 0;
+        copies.beginBatch();
+        try {
+            // the new table has no free rows, so rows are consecutive
+            if (n > 0) {
+                first = copies.addBatchRows(n)[0];
+                ((AbstractLongColumn) copies.getColumn(TemporalObject.ID))
+                        .initValues(objects.getColumn(TemporalObject.ID),
+                                rows, first);
+                ((AbstractLongColumn) copies
+                        .getColumn(TemporalObject.TEMPORAL_ELEMENT_ID))
+                        .initValues(elementIds, rows, first);
+                for (int j = 0; j < cols.length; j++) {
+                    if (copyCols[j] >= 0) {
+                        silent[j] = initValues(copies.getColumn(copyCols[j]),
+                                objects.getColumn(cols[j]), rows, first);
+                    }
+                }
+            }
+        } finally {
+            copies.endBatch();
+        }
+        for (int j = 0; j < cols.length; j++) {
+            if (copyCols[j] >= 0 && !silent[j]) {
+                for (int i = 0; i < n; i++) {
+                    copies.set(first + i, copyCols[j],
+                            objects.get(rows[i], cols[j]));
+                }
+            }
+        }
+
+        // relationships and roots among the selected objects
+        int[] rowMap = new int[objects.getMaximumRow() + 1];
+        Arrays.fill(rowMap, -1);
+        for (int i = 0; i < n; i++) {
+            rowMap[rows[i]] = first + i;
+        }
+        parents = GraphCompactor.parentRows(this);
+        for (int i = 0; i < n; i++) {
+            if (!parents.get(rows[i])) {
+                continue;
+            }
+            IntIterator edges = super.inEdgeRows(rows[i]);
+            while (edges.hasNext()) {
+                int child = rowMap[super.getSourceNode(edges.nextInt())];
+                if (child >= 0) {
+                    result.addEdge(child, first + i);
+                }
+            }
+        }
+        BitSet resultRoots = new BitSet(n);
+        for (int root : getRootRows()) {
+            if (rowMap[root] >= 0) {
+                resultRoots.set(rowMap[root]);
+            }
+        }
+        result.roots = resultRoots;
+        return result;
+    }
+
+    /**
+     * Copy values of rows added in the current batch without events.
+     * 
+     * @return <tt>false</tt> if the column does not support this
+     */
+    private static boolean initValues(Column col, Column source, int[] rows,
+            int first) {
+        if (col instanceof AbstractLongColumn) {
+            ((AbstractLongColumn) col).initValues(source, rows, first);
+        } else if (col instanceof AbstractIntColumn) {
+            ((AbstractIntColumn) col).initValues(source, rows, first);
+        } else if (col instanceof DoubleArrayColumn) {
+            ((DoubleArrayColumn) col).initValues(source, rows, first);
+        } else if (col instanceof DictionaryColumn) {
+            ((DictionaryColumn) col).initValues(source, rows, first);
+        } else {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Estimates the memory usage of the temporal object table, the object
+     * relationships, the temporal elements, and all indices and caches. Data
+     * columns and their metadata columns (i.e., kind, minimum, and maximum)
+     * are reported as separate structures.
+     * 
+     * @return a report broken down by structure and column
+     */
+    public MemoryReport getMemoryReport() {
+        MemoryReport report = new MemoryReport();
+        Table objects = getNodeTable();
+        for (int i = 0; i < objects.getColumnCount(); i++) {
+            String field = objects.getColumnName(i);
+            report.addColumn(MetadataColumns.isMetadataColumn(objects, field)
+                    ? "metadata columns" : "temporal objects", field,
+                    objects.getColumn(i));
+        }
+        report.addTable("object relationships", getEdgeTable());
+        report.addTable("object adjacency", m_links);
+        indexObjects.reportMemory(report, "object id index");
+        if (indexObjectsByElements != temporalElements.getElementObjectIndex(
+                objects, TemporalObject.TEMPORAL_ELEMENT_ID)) {
+            indexObjectsByElements.reportMemory(report,
+                    "element object index");
+        }
+        temporalElements.reportMemory(report);
+        return report;
+    }
+
+    /**
+     * Gets the map from data columns to their metadata columns (i.e., kind,
+     * minimum, and maximum), which is shared by all temporal objects.
+     * 
+     * @return the metadata column map
+     */
+    MetadataColumns getMetadataColumns() {
+        if (metadataColumns == null) {
+            metadataColumns = new MetadataColumns(super.getNodeTable());
+        }
+        return metadataColumns;
+    }
+
+    /**
+     * Set limits on the age and number of temporal objects. Whenever temporal
+     * objects are appended and a limit is exceeded, the oldest temporal
+     * objects (in arrival order) are evicted together with temporal elements
+     * that are no longer referenced. Temporal objects that exist when the
+     * policy is set are considered to have arrived in row order.
+     * 
+     * <p>
+     * Evicted rows are reused for new data and all indices and caches are
+     * updated incrementally. Proxy tuples returned by a batch add may already
+     * be evicted if the batch exceeds the limits.
+     * 
+     * @param policy
+     *            the retention policy or <tt>null</tt> to keep all data
+     */
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        this.retentionPolicy = policy;
+        if (policy == null) {
+            this.retentionQueue = null;
+        } else if (this.retentionQueue == null) {
+            this.retentionQueue = new RetentionQueue();
+            Table objects = super.getNodeTable();
+            IntIterator rows = objects.rows();
+            while (rows.hasNext()) {
+                int row = rows.nextInt();
+                retain(objects.getLong(row, TemporalObject.ID),
+                        objects.getLong(row, TemporalObject.TEMPORAL_ELEMENT_ID));
+            }
+            evict();
+        } else {
+            evict();
+        }
+    }
+
+    /**
+     * Get the limits on the age and number of temporal objects.
+     * 
+     * @return the retention policy or <tt>null</tt> if all data is kept
+     */
+    public RetentionPolicy getRetentionPolicy() {
+        return retentionPolicy;
+    }
+
+    /**
+     * Record the arrival of a temporal object for the retention policy.
+     */
+    private void retain(long objectId, long elementId) {
+        retentionQueue.add(objectId);
+        int elementRow = temporalElements.getTemporalElementRow(elementId);
+        if (elementRow >= 0 && temporalElements.isAnchored(elementRow)) {
+            retentionQueue.extend(temporalElements.getSup(elementRow));
+        }
+    }
+
+    /**
+     * Evict the oldest temporal objects and their temporal elements as long
+     * as the retention policy is violated.
+     */
+    private void evict() {
+        Table objects = super.getNodeTable();
+        int excess = retentionPolicy.getExcessRows(objects.getRowCount());
+        int[] rows = new int[Math.max(excess, 16)];
+        int n = 0;
+        while (!retentionQueue.isEmpty()) {
+            int row = indexObjects.get(retentionQueue.peek());
+            if (row != Integer.MIN_VALUE) {
+                if (excess > 0) {
+                    excess--;
+                } else if (!isExpired(row)) {
+                    break;
+                }
+                if (n == rows.length) {
+                    rows = Arrays.copyOf(rows, n * 2);
+                }
+                rows[n++] = row;
+            }
+            retentionQueue.poll();
+        }
+        if (n == 0) {
+            return;
+        }
+
+        // remove objects first, so that their elements are unreferenced
+        int[] elementRows = new int[n];
+        for (int i = 0; i < n; i++) {
+            elementRows[i] = temporalElements.getTemporalElementRow(objects
+                    .getLong(rows[i], TemporalObject.TEMPORAL_ELEMENT_ID));
+            super.removeNode(rows[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            if (elementRows[i] >= 0
+                    && indexObjectsByElements.rows(elementRows[i]).length == 0) {
+                temporalElements.removeUnreferenced(elementRows[i]);
+            }
+        }
+    }
+
+    private boolean isExpired(int row) {
+        int elementRow = temporalElements.getTemporalElementRow(super
+                .getNodeTable().getLong(row, TemporalObject.TEMPORAL_ELEMENT_ID));
+        return elementRow >= 0
+                && temporalElements.isAnchored(elementRow)
+                && retentionPolicy.isExpired(
+                        temporalElements.getSup(elementRow),
+                        retentionQueue.getNewest());
+    }
+
     /**
      * Adds a temporal object to the temporal dataset.
      * 
@@ -548,6 +1247,10 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
         TemporalObject object = (TemporalObject) super.addNode();
         object.set(TemporalObject.ID, temporalObjectId);
         object.set(TemporalObject.TEMPORAL_ELEMENT_ID, temporalElementId);
+        if (retentionQueue != null) {
+            retain(temporalObjectId, temporalElementId);
+            evict();
+        }
         return object;
     }
 
@@ -559,9 +1262,7 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
      * @return the proxy tuple of the new temporal object.
      */
     public TemporalObject addTemporalObject(long temporalElementId) {
-        long id = (indexObjects.size() > 0) ? super.getNodeTable().getLong(
-                this.indexObjects.maximum(), TemporalObject.ID) + 1
-                : DEFAULT_FIRST_ID;
+        long id = indexObjects.getNextId(DEFAULT_FIRST_ID);
 
         return addTemporalObject(id, temporalElementId);
     }
@@ -586,9 +1287,7 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
      * @return an array of proxy tuples for the new temporal objects.
      */
     public TemporalObject[] addTemporalObjects(TemporalElement[] elements) {
-        long firstId = (indexObjects.size() > 0) ? super.getNodeTable()
-                .getLong(this.indexObjects.maximum(), TemporalObject.ID) + 1
-                : DEFAULT_FIRST_ID;
+        long firstId = indexObjects.getNextId(DEFAULT_FIRST_ID);
 
         int[] rows = super.getNodeTable().addRows(elements.length);
         TemporalObject[] objs = new TemporalObject[elements.length];
@@ -599,9 +1298,183 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
             objs[i].set(TemporalObject.TEMPORAL_ELEMENT_ID, elements[i].getId());
         }
 
+        if (retentionQueue != null) {
+            for (int i = 0; i < elements.length; i++) {
+                retain(firstId + i, elements[i].getId());
+            }
+            evict();
+        }
+
         return objs;
     }
     
+    /**
+     * Adds a batch of temporal objects to the temporal dataset. For each
+     * temporal element id a new temporal object will be created. The objects
+     * are assigned consecutive ids starting with the returned id. Table
+     * listeners are notified once after all objects have been added.
+     * 
+     * @param temporalElementIds
+     *            the ids of the temporal elements
+     * @return the id of the first added temporal object
+     */
+    public long addTemporalObjects(long[] temporalElementIds) {
+        long firstId = indexObjects.getNextId(DEFAULT_FIRST_ID);
+        addTemporalObjectRows(null, firstId, temporalElementIds, null, null);
+        return firstId;
+    }
+
+    /**
+     * Adds a batch of temporal objects with the given ids to the temporal
+     * dataset. Table listeners are notified once after all objects have been
+     * added.
+     * 
+     * @param temporalObjectIds
+     *            the ids of the temporal objects
+     * @param temporalElementIds
+     *            the ids of the temporal elements
+     */
+    public void addTemporalObjects(long[] temporalObjectIds,
+            long[] temporalElementIds) {
+        if (temporalObjectIds.length != temporalElementIds.length) {
+            throw new IllegalArgumentException("Arrays must be of same length.");
+        }
+        addTemporalObjectRows(temporalObjectIds, 0l, temporalElementIds, null,
+                null);
+    }
+
+    /**
+     * Adds a batch of temporal objects with the given ids and values of
+     * numeric data columns. Table listeners are notified once after all
+     * objects have been added. This is used by {@link TemporalDataIngester}.
+     * 
+     * @param ids
+     *            the ids of the temporal objects
+     * @param elementIds
+     *            the ids of the temporal elements
+     * @param dataColumns
+     *            the indices of the data columns to set
+     * @param values
+     *            the data values in row-major order (i.e., value of data
+     *            column <tt>j</tt> of object <tt>i</tt> at
+     *            <tt>i * dataColumns.length + j</tt>)
+     */
+    void addTemporalObjects(long[] ids, long[] elementIds, int[] dataColumns,
+            double[] values) {
+        if (ids.length != elementIds.length
+                || values.length != ids.length * dataColumns.length) {
+            throw new IllegalArgumentException("Arrays must be of same length.");
+        }
+        addTemporalObjectRows(ids, 0l, elementIds, dataColumns, values);
+    }
+
+    /**
+     * Adds a batch of temporal objects. If the node table supports batches,
+     * insert events are fired once at the end; otherwise row by row.
+     * 
+     * @param ids
+     *            the ids of the temporal objects or <tt>null</tt> to use
+     *            consecutive ids
+     * @param firstId
+     *            the first of the consecutive ids (ignored if ids are given)
+     * @param elementIds
+     *            the ids of the temporal elements
+     * @param dataColumns
+     *            the indices of numeric data columns or <tt>null</tt>
+     * @param values
+     *            the data values in row-major order or <tt>null</tt>
+     */
+    private void addTemporalObjectRows(long[] ids, long firstId,
+            long[] elementIds, int[] dataColumns, double[] values) {
+        Table table = super.getNodeTable();
+        Column idColumn = table.getColumn(TemporalObject.ID);
+        Column elementIdColumn = table
+                .getColumn(TemporalObject.TEMPORAL_ELEMENT_ID);
+        int nCols = (dataColumns == null) ? 0 : dataColumns.length;
+
+        if (table instanceof TemporalTable
+                && idColumn instanceof AbstractLongColumn
+                && elementIdColumn instanceof AbstractLongColumn) {
+            TemporalTable objects = (TemporalTable) table;
+            AbstractLongColumn objectIds = (AbstractLongColumn) idColumn;
+            AbstractLongColumn objectElementIds =
+                    (AbstractLongColumn) elementIdColumn;
+            Column[] cols = new Column[nCols];
+            boolean silent = true;
+            for (int j = 0; j < nCols; j++) {
+                cols[j] = table.getColumn(dataColumns[j]);
+                silent &= cols[j] instanceof DoubleArrayColumn
+                        || cols[j] instanceof AbstractLongColumn
+                        || cols[j] instanceof AbstractIntColumn;
+            }
+            int[] rows = (silent) ? null : new int[elementIds.length];
+            objects.beginBatch();
+            try {
+                for (int i = 0; i < elementIds.length; i++) {
+                    int row = objects.addRow();
+                    objectIds.initLong((ids == null) ? firstId + i : ids[i],
+                            row);
+                    objectElementIds.initLong(elementIds[i], row);
+                    if (silent) {
+                        for (int j = 0; j < nCols; j++) {
+                            initValue(cols[j], values[i * nCols + j], row);
+                        }
+                    } else {
+                        rows[i] = row;
+                    }
+                }
+            } finally {
+                objects.endBatch();
+            }
+            if (!silent) {
+                for (int i = 0; i < rows.length; i++) {
+                    for (int j = 0; j < nCols; j++) {
+                        table.set(rows[i], dataColumns[j],
+                                Double.valueOf(values[i * nCols + j]));
+                    }
+                }
+            }
+            if (retentionQueue != null) {
+                for (int i = 0; i < elementIds.length; i++) {
+                    retain((ids == null) ? firstId + i : ids[i], elementIds[i]);
+                }
+                evict();
+            }
+        } else {
+            for (int i = 0; i < elementIds.length; i++) {
+                TemporalObject object = addTemporalObject(
+                        (ids == null) ? firstId + i : ids[i], elementIds[i]);
+                for (int j = 0; j < nCols; j++) {
+                    object.set(dataColumns[j],
+                            Double.valueOf(values[i * nCols + j]));
+                }
+            }
+        }
+    }
+
+    /**
+     * Set a value in a row added in the current batch without events.
+     */
+    private static void initValue(Column col, double value, int row) {
+        if (col instanceof DoubleArrayColumn) {
+            ((DoubleArrayColumn) col).initDouble(value, row);
+        } else if (col instanceof AbstractLongColumn) {
+            ((AbstractLongColumn) col).initLong((long) value, row);
+        } else {
+            ((AbstractIntColumn) col).initInt((int) value, row);
+        }
+    }
+
+    /**
+     * Gets the id that the next temporal object added without an explicit id
+     * will receive.
+     * 
+     * @return the next temporal object id
+     */
+    long getNextTemporalObjectId() {
+        return indexObjects.getNextId(DEFAULT_FIRST_ID);
+    }
+
     /**
      * Create (if necessary) and return the {@link IntervalIndex} for
      * {@link TemporalElement}s. It helps in querying the elements based on
@@ -616,13 +1489,9 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
         if (indexElementIntervals != null) {
             return indexElementIntervals; // already indexed
         }
-        IntervalComparator comparator = new DefaultIntervalComparator();
-        indexElementIntervals = new TemporalIndex(this, new AnchoredPredicate(), comparator);
-        
-
-        // TODO predicate to take advantage of interval index
-        
-
+        // view of the index shared by all users of the temporal element store
+        indexElementIntervals = new TemporalIndex(
+                (TemporalIndex) temporalElements.intervalIndex(), this);
         return indexElementIntervals;
     }
 
@@ -817,36 +1686,28 @@ public class TemporalDataset extends ParentChildGraph implements Lifespan, Clone
                 + " object relationships, "+ temporalElements.toString() + "]";
     }
 
+    /**
+     * Get the minimal inf of all anchored temporal elements in the
+     * {@link TemporalElementStore}.
+     * 
+     * @return the inf or {@link Long#MIN_VALUE} if there are no anchored
+     *         temporal elements
+     */
     @Override
     public long getInf() {
-        // TODO use IntervalIndex instead (?)
-        IntIterator elIterator = temporalElements.getNodeTable()
-                .index(TemporalElement.INF).allRows(Index.TYPE_ASCENDING);
-        while (elIterator.hasNext()) {
-            TemporalElement el = temporalElements
-                    .getTemporalPrimitiveByRow(elIterator.nextInt());
-            if (el.isAnchored()) {
-                return el.getLong(TemporalElement.INF);
-            }
-        }
-        // no anchored elements in dataset
-        return Long.MIN_VALUE;
+        return temporalElements.getInf();
     }
 
+    /**
+     * Get the maximal sup of all anchored temporal elements in the
+     * {@link TemporalElementStore}.
+     * 
+     * @return the sup or {@link Long#MAX_VALUE} if there are no anchored
+     *         temporal elements
+     */
     @Override
     public long getSup() {
-        // TODO use IntervalIndex instead (?)
-        IntIterator elIterator = temporalElements.getNodeTable()
-                .index(TemporalElement.SUP).allRows(Index.TYPE_DESCENDING);
-        while (elIterator.hasNext()) {
-            TemporalElement el = temporalElements
-                    .getTemporalPrimitiveByRow(elIterator.nextInt());
-            if (el.isAnchored()) {
-                return el.getLong(TemporalElement.SUP);
-            }
-        }
-        // no anchored elements in dataset
-        return Long.MAX_VALUE;
+        return temporalElements.getSup();
     }
 
 	public TemporalObject addCloneOf(TemporalObject source) {					
@@ -0,0 +1,702 @@
+package timeBench.data;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.NoSuchElementException;
+
+import prefuse.data.Graph;
+import prefuse.data.Table;
+import prefuse.util.collections.IntIterator;
+import prefuse.util.collections.LongIntTreeMap;
+import timeBench.data.util.DictionaryColumn;
+
+/**
+ * Immutable, read-only view of the temporal objects and temporal elements of
+ * a {@link TemporalDataset} at the time of {@link TemporalDataset#snapshot()}.
+ * Any number of threads can query a snapshot while the dataset is modified.
+ *
+ * <p>
+ * Columns backed by primitive arrays (e.g., the temporal element columns,
+ * numeric and dictionary-encoded string data columns added by
+ * {@link TemporalDataset#addDataColumn}, and the edge columns) are shared with
+ * the dataset copy-on-write: rows appended later do not affect the snapshot
+ * and the first change of an existing row copies the segment of this row
+ * once. Other columns are copied when the snapshot is taken.
+ *
+ * <p>
+ * Row numbers are the same as in the dataset at the time of the snapshot. The
+ * snapshot includes the graph structure, i.e., the roots and children of
+ * temporal objects and the children of temporal elements, but neither tuples
+ * nor indices. Child lists are built on first access.
+ *
+ * <p>
+ * Actions and layouts that process a {@link TemporalDataset} can run on a
+ * private copy of the snapshot (see {@link #toTemporalDataset()}), e.g., on a
+ * background thread.
+ */
+public class TemporalDatasetSnapshot implements Lifespan {
+
+    private final long version;
+    private final long inf;
+    private final long sup;
+
+    // temporal elements
+    private final int elementRowCount;
+    private final BitSet validElementRows;
+    private final ColumnSnapshot elementIds;
+    private final ColumnSnapshot infs;
+    private final ColumnSnapshot sups;
+    private final ColumnSnapshot granularityIds;
+    private final ColumnSnapshot granularityContextIds;
+    private final ColumnSnapshot kinds;
+
+    // temporal objects
+    private final int objectRowCount;
+    private final BitSet validObjectRows;
+    private final ColumnSnapshot objectIds;
+    private final ColumnSnapshot objectElementIds;
+    private final String[] columnNames;
+    private final Class<?>[] columnTypes;
+    private final Object[] columnDefaults;
+    private final boolean[] dictionaryEncoded;
+    private final ColumnSnapshot[] columns;
+    private final int[] dataColumnIndices;
+    private final String[] additionalNonDataColumns;
+    private final int depth;
+
+    // graph structure
+    private final int[] rootRows;
+    private final Edges objectEdges;
+    private final Edges elementEdges;
+
+    /**
+     * row lookup by id (lazy initialization)
+     */
+    private LongIntTreeMap elementRowsById = null;
+    private LongIntTreeMap objectRowsById = null;
+
+    /**
+     * Take a snapshot of a temporal dataset. This has to be called by the
+     * thread that modifies the dataset.
+     */
+    TemporalDatasetSnapshot(TemporalDataset dataset) {
+        this.version = dataset.getVersion();
+        this.inf = dataset.getInf();
+        this.sup = dataset.getSup();
+
+        Table elements = dataset.getTemporalElements().getNodeTable();
+        this.elementRowCount = elements.getMaximumRow() + 1;
+        this.validElementRows = validRows(elements);
+        this.elementIds = snapshot(elements, TemporalElement.ID, elementRowCount);
+        this.infs = snapshot(elements, TemporalElement.INF, elementRowCount);
+        this.sups = snapshot(elements, TemporalElement.SUP, elementRowCount);
+        this.granularityIds = snapshot(elements,
+                TemporalElement.GRANULARITY_ID, elementRowCount);
+        this.granularityContextIds = snapshot(elements,
+                TemporalElement.GRANULARITY_CONTEXT_ID, elementRowCount);
+        this.kinds = snapshot(elements, TemporalElement.KIND, elementRowCount);
+
+        Table objects = dataset.getTemporalObjectTable();
+        this.objectRowCount = objects.getMaximumRow() + 1;
+        this.validObjectRows = validRows(objects);
+        this.objectIds = snapshot(objects, TemporalObject.ID, objectRowCount);
+        this.objectElementIds = snapshot(objects,
+                TemporalObject.TEMPORAL_ELEMENT_ID, objectRowCount);
+        this.columnNames = new String[objects.getColumnCount()];
+        this.columnTypes = new Class<?>[columnNames.length];
+        this.columnDefaults = new Object[columnNames.length];
+        this.dictionaryEncoded = new boolean[columnNames.length];
+        this.columns = new ColumnSnapshot[columnNames.length];
+        for (int i = 0; i < columns.length; i++) {
+            columnNames[i] = objects.getColumnName(i);
+            columnTypes[i] = objects.getColumnType(i);
+            columnDefaults[i] = objects.getColumn(i).getDefaultValue();
+            dictionaryEncoded[i] = objects.getColumn(i) instanceof DictionaryColumn;
+            // temporal element proxies are not part of the snapshot
+            if (!(objects.getColumn(i) instanceof TemporalTable.TemporalColumn)) {
+                columns[i] = ColumnSnapshot.of(objects.getColumn(i),
+                        objectRowCount);
+            }
+        }
+        this.dataColumnIndices = dataset.getDataColumnIndices();
+        this.additionalNonDataColumns = dataset.getAdditionalNonDataColums()
+                .clone();
+        this.depth = dataset.getDepth();
+
+        // the cached array is replaced when the roots change
+        this.rootRows = dataset.getRootRows();
+        this.objectEdges = new Edges(dataset, objectRowCount);
+        this.elementEdges = new Edges(dataset.getTemporalElements(),
+                elementRowCount);
+    }
+
+    private static ColumnSnapshot snapshot(Table table, String field, int size) {
+        return ColumnSnapshot.of(table.getColumn(field), size);
+    }
+
+    /**
+     * Get the valid rows of a table or <tt>null</tt> if no rows were removed.
+     */
+    private static BitSet validRows(Table table) {
+        if (table.getRowCount() == table.getMaximumRow() + 1) {
+            return null;
+        }
+        BitSet valid = new BitSet(table.getMaximumRow() + 1);
+        IntIterator rows = table.rows();
+        while (rows.hasNext()) {
+            valid.set(rows.nextInt());
+        }
+        return valid;
+    }
+
+    /**
+     * Get the version of the dataset at the time of the snapshot.
+     *
+     * @return the version
+     * @see TemporalDataset#getVersion()
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Get the minimal inf of all anchored temporal elements.
+     *
+     * @return the inf or {@link Long#MIN_VALUE} if there are no anchored
+     *         temporal elements
+     */
+    @Override
+    public long getInf() {
+        return inf;
+    }
+
+    /**
+     * Get the maximal sup of all anchored temporal elements.
+     *
+     * @return the sup or {@link Long#MAX_VALUE} if there are no anchored
+     *         temporal elements
+     */
+    @Override
+    public long getSup() {
+        return sup;
+    }
+
+    // ----- TEMPORAL ELEMENTS -----
+
+    public int getTemporalElementCount() {
+        return (validElementRows == null) ? elementRowCount
+                : validElementRows.cardinality();
+    }
+
+    public boolean isValidElementRow(int row) {
+        return isValidRow(validElementRows, elementRowCount, row);
+    }
+
+    /**
+     * Get an iterator over the rows of temporal elements.
+     *
+     * @return an iterator over temporal element table row numbers
+     */
+    public IntIterator elementRows() {
+        return new RowIterator(validElementRows, elementRowCount);
+    }
+
+    /**
+     * Get the row of the temporal element with the given id.
+     *
+     * @param id
+     *            the temporal element id
+     * @return the temporal element table row number or -1 if there is no
+     *         temporal element with this id
+     */
+    public int getTemporalElementRow(long id) {
+        LongIntTreeMap index;
+        synchronized (this) {
+            if (elementRowsById == null) {
+                elementRowsById = buildIndex(elementIds, validElementRows,
+                        elementRowCount);
+            }
+            index = elementRowsById;
+        }
+        return lookup(index, id);
+    }
+
+    public long getElementId(int row) {
+        return elementIds.getLong(row);
+    }
+
+    public long getInf(int row) {
+        return infs.getLong(row);
+    }
+
+    public long getSup(int row) {
+        return sups.getLong(row);
+    }
+
+    public int getGranularityId(int row) {
+        return granularityIds.getInt(row);
+    }
+
+    public int getGranularityContextId(int row) {
+        return granularityContextIds.getInt(row);
+    }
+
+    public int getKind(int row) {
+        return kinds.getInt(row);
+    }
+
+    /**
+     * Get the rows of the child elements of a temporal element (e.g., the
+     * instants of an interval).
+     *
+     * @param row
+     *            the temporal element table row number
+     * @return an iterator over temporal element table row numbers
+     */
+    public IntIterator elementChildRows(int row) {
+        return elementEdges.children(row);
+    }
+
+    public int getElementChildCount(int row) {
+        return elementEdges.childCount(row);
+    }
+
+    // ----- TEMPORAL OBJECTS -----
+
+    public int getTemporalObjectCount() {
+        return (validObjectRows == null) ? objectRowCount : validObjectRows
+                .cardinality();
+    }
+
+    public boolean isValidObjectRow(int row) {
+        return isValidRow(validObjectRows, objectRowCount, row);
+    }
+
+    /**
+     * Get an iterator over the rows of temporal objects.
+     *
+     * @return an iterator over temporal object table row numbers
+     */
+    public IntIterator objectRows() {
+        return new RowIterator(validObjectRows, objectRowCount);
+    }
+
+    /**
+     * Get the row of the temporal object with the given id.
+     *
+     * @param id
+     *            the temporal object id
+     * @return the temporal object table row number or -1 if there is no
+     *         temporal object with this id
+     */
+    public int getTemporalObjectRow(long id) {
+        LongIntTreeMap index;
+        synchronized (this) {
+            if (objectRowsById == null) {
+                objectRowsById = buildIndex(objectIds, validObjectRows,
+                        objectRowCount);
+            }
+            index = objectRowsById;
+        }
+        return lookup(index, id);
+    }
+
+    public long getObjectId(int row) {
+        return objectIds.getLong(row);
+    }
+
+    /**
+     * Get the rows of the root objects in ascending order.
+     *
+     * @return an iterator over temporal object table row numbers
+     * @see TemporalDataset#getRootRows()
+     */
+    public IntIterator rootRows() {
+        return new ArrayIterator(rootRows, 0, rootRows.length);
+    }
+
+    public int getRootCount() {
+        return rootRows.length;
+    }
+
+    /**
+     * Get the rows of the child objects of a temporal object.
+     *
+     * @param row
+     *            the temporal object table row number
+     * @return an iterator over temporal object table row numbers
+     */
+    public IntIterator childRows(int row) {
+        return objectEdges.children(row);
+    }
+
+    public int getChildCount(int row) {
+        return objectEdges.childCount(row);
+    }
+
+    /**
+     * Get the id of the temporal element of a temporal object.
+     *
+     * @param row
+     *            the temporal object table row number
+     * @return the temporal element id
+     */
+    public long getTemporalElementId(int row) {
+        return objectElementIds.getLong(row);
+    }
+
+    /**
+     * Get the row of the temporal element of a temporal object.
+     *
+     * @param row
+     *            the temporal object table row number
+     * @return the temporal element table row number or -1 if the temporal
+     *         element does not exist
+     */
+    public int getElementRowOfObject(int row) {
+        return getTemporalElementRow(objectElementIds.getLong(row));
+    }
+
+    public int getColumnCount() {
+        return columnNames.length;
+    }
+
+    public String getColumnName(int col) {
+        return columnNames[col];
+    }
+
+    /**
+     * Get the index of a temporal object column.
+     *
+     * @param field
+     *            the column name
+     * @return the column index or -1 if there is no such column
+     */
+    public int getColumnNumber(String field) {
+        for (int i = 0; i < columnNames.length; i++) {
+            if (columnNames[i].equals(field)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get column indices for application-specific data.
+     *
+     * @return array of column indices.
+     * @see TemporalDataset#getDataColumnIndices()
+     */
+    public int[] getDataColumnIndices() {
+        return dataColumnIndices.clone();
+    }
+
+    public Object get(int row, int col) {
+        return column(col).get(row);
+    }
+
+    public long getLong(int row, int col) {
+        return column(col).getLong(row);
+    }
+
+    public int getInt(int row, int col) {
+        return column(col).getInt(row);
+    }
+
+    public double getDouble(int row, int col) {
+        return column(col).getDouble(row);
+    }
+
+    /**
+     * Create a temporal dataset with the temporal objects, temporal elements,
+     * and data of this snapshot, so that existing actions (e.g.,
+     * {@link timeBench.action.analytical.GranularityAggregationAction}) can
+     * process the snapshot. The new dataset is independent of the dataset of
+     * the snapshot and can be used by the calling thread only. Temporal
+     * objects and temporal elements keep their ids and their order, but rows
+     * released by deletions are skipped, so row numbers can differ. Derived
+     * columns are not part of the snapshot and thus not created.
+     *
+     * @return a new temporal dataset
+     * @throws TemporalDataException
+     *             if a data column cannot be created
+     */
+    public TemporalDataset toTemporalDataset() throws TemporalDataException {
+        // temporal elements and their children
+        int[] elements = rows(elementRows(), getTemporalElementCount());
+        int n = elements.length;
+        long[] ids = new long[n];
+        long[] elementInfs = new long[n];
+        long[] elementSups = new long[n];
+        int[] elementGranularityIds = new int[n];
+        int[] elementGranularityContextIds = new int[n];
+        int[] elementKinds = new int[n];
+        for (int i = 0; i < n; i++) {
+            int row = elements[i];
+            ids[i] = getElementId(row);
+            elementInfs[i] = getInf(row);
+            elementSups[i] = getSup(row);
+            elementGranularityIds[i] = getGranularityId(row);
+            elementGranularityContextIds[i] = getGranularityContextId(row);
+            elementKinds[i] = getKind(row);
+        }
+        TemporalElementStore store = new TemporalElementStore();
+        store.addTemporalElements(ids, elementInfs, elementSups,
+                elementGranularityIds, elementGranularityContextIds,
+                elementKinds);
+        int[] elementRowMap = new int[elementRowCount];
+        for (int i = 0; i < n; i++) {
+            elementRowMap[elements[i]] = store.getTemporalElementRow(ids[i]);
+        }
+        for (int i = 0; i < n; i++) {
+            IntIterator children = elementChildRows(elements[i]);
+            while (children.hasNext()) {
+                store.addEdge(elementRowMap[children.nextInt()],
+                        elementRowMap[elements[i]]);
+            }
+        }
+
+        TemporalDataset result = new TemporalDataset(store);
+        result.setAdditionalNonDataColums(additionalNonDataColumns.clone());
+        result.setDepth(depth);
+        TemporalTable table = (TemporalTable) result.getNodeTable();
+        int[] copyCols = new int[columns.length];
+        Arrays.fill(copyCols, -1);
+        for (int col = 0; col < columns.length; col++) {
+            if (columns[col] == null
+                    || table.getColumnNumber(columnNames[col]) >= 0) {
+                // derived or key column
+                continue;
+            }
+            if (dictionaryEncoded[col]) {
+                table.addDictionaryColumn(columnNames[col],
+                        (String) columnDefaults[col]);
+            } else {
+                table.addColumn(columnNames[col], columnTypes[col],
+                        columnDefaults[col]);
+            }
+            copyCols[col] = table.getColumnNumber(columnNames[col]);
+        }
+
+        // temporal objects, their data, and their children
+        int[] objects = rows(objectRows(), getTemporalObjectCount());
+        int m = objects.length;
+        long[] objectIdValues = new long[m];
+        long[] elementIdValues = new long[m];
+        for (int i = 0; i < m; i++) {
+            objectIdValues[i] = getObjectId(objects[i]);
+            elementIdValues[i] = getTemporalElementId(objects[i]);
+        }
+        result.addTemporalObjects(objectIdValues, elementIdValues);
+        int[] objectRowMap = new int[objectRowCount];
+        for (int i = 0; i < m; i++) {
+            int row = result.getTemporalObjectRow(objectIdValues[i]);
+            objectRowMap[objects[i]] = row;
+            for (int col = 0; col < columns.length; col++) {
+                if (copyCols[col] >= 0) {
+                    table.set(row, copyCols[col], columns[col].get(objects[i]));
+                }
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            IntIterator children = childRows(objects[i]);
+            while (children.hasNext()) {
+                result.addEdge(objectRowMap[children.nextInt()],
+                        objectRowMap[objects[i]]);
+            }
+        }
+        int[] roots = new int[rootRows.length];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = objectRowMap[rootRows[i]];
+        }
+        result.setRoots(roots);
+        return result;
+    }
+
+    private static int[] rows(IntIterator iterator, int count) {
+        int[] rows = new int[count];
+        for (int i = 0; i < count; i++) {
+            rows[i] = iterator.nextInt();
+        }
+        return rows;
+    }
+
+    private ColumnSnapshot column(int col) {
+        ColumnSnapshot values = columns[col];
+        if (values == null) {
+            throw new UnsupportedOperationException("Column "
+                    + columnNames[col] + " is not part of the snapshot.");
+        }
+        return values;
+    }
+
+    // ----- HELPERS -----
+
+    private static boolean isValidRow(BitSet valid, int rowCount, int row) {
+        return row >= 0 && row < rowCount && (valid == null || valid.get(row));
+    }
+
+    private static LongIntTreeMap buildIndex(ColumnSnapshot ids, BitSet valid,
+            int rowCount) {
+        LongIntTreeMap index = new LongIntTreeMap(true);
+        IntIterator rows = new RowIterator(valid, rowCount);
+        while (rows.hasNext()) {
+            int row = rows.nextInt();
+            index.put(ids.getLong(row), row);
+        }
+        return index;
+    }
+
+    private static int lookup(LongIntTreeMap index, long id) {
+        int row = index.get(id);
+        return (row == Integer.MIN_VALUE) ? -1 : row;
+    }
+
+    /**
+     * Edges of a parent-child graph at the time of the snapshot. Children are
+     * listed in the order of their edge rows.
+     */
+    private static class Edges {
+        private final int edgeRowCount;
+        private final BitSet validEdgeRows;
+        private final ColumnSnapshot sources;
+        private final ColumnSnapshot targets;
+        private final int nodeRowCount;
+
+        /**
+         * children of each node in compressed row storage (lazy)
+         */
+        private int[] offsets = null;
+        private int[] children = null;
+
+        Edges(Graph graph, int nodeRowCount) {
+            Table edges = graph.getEdgeTable();
+            this.edgeRowCount = edges.getMaximumRow() + 1;
+            this.validEdgeRows = validRows(edges);
+            this.sources = snapshot(edges, graph.getEdgeSourceField(),
+                    edgeRowCount);
+            this.targets = snapshot(edges, graph.getEdgeTargetField(),
+                    edgeRowCount);
+            this.nodeRowCount = nodeRowCount;
+        }
+
+        IntIterator children(int row) {
+            build();
+            checkNode(row);
+            return new ArrayIterator(children, offsets[row], offsets[row + 1]);
+        }
+
+        int childCount(int row) {
+            build();
+            checkNode(row);
+            return offsets[row + 1] - offsets[row];
+        }
+
+        private void checkNode(int row) {
+            if (row < 0 || row >= nodeRowCount) {
+                throw new IllegalArgumentException("Row index out of bounds: "
+                        + row);
+            }
+        }
+
+        private synchronized void build() {
+            if (offsets != null) {
+                return;
+            }
+            int[] off = new int[nodeRowCount + 1];
+            IntIterator rows = new RowIterator(validEdgeRows, edgeRowCount);
+            while (rows.hasNext()) {
+                int edge = rows.nextInt();
+                if (sources.getInt(edge) >= 0 && targets.getInt(edge) >= 0) {
+                    off[targets.getInt(edge) + 1]++;
+                }
+            }
+            for (int i = 0; i < nodeRowCount; i++) {
+                off[i + 1] += off[i];
+            }
+            int[] next = Arrays.copyOf(off, nodeRowCount);
+            int[] ch = new int[off[nodeRowCount]];
+            rows = new RowIterator(validEdgeRows, edgeRowCount);
+            while (rows.hasNext()) {
+                int edge = rows.nextInt();
+                if (sources.getInt(edge) >= 0 && targets.getInt(edge) >= 0) {
+                    ch[next[targets.getInt(edge)]++] = sources.getInt(edge);
+                }
+            }
+            children = ch;
+            offsets = off;
+        }
+    }
+
+    /**
+     * Iterates over a range of a shared array.
+     */
+    private static class ArrayIterator extends IntIterator {
+        private final int[] rows;
+        private final int end;
+        private int next;
+
+        ArrayIterator(int[] rows, int start, int end) {
+            this.rows = rows;
+            this.next = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next < end;
+        }
+
+        @Override
+        public int nextInt() {
+            if (next >= end) {
+                throw new NoSuchElementException();
+            }
+            return rows[next++];
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Iterates over the valid rows of a snapshot.
+     */
+    private static class RowIterator extends IntIterator {
+        private final BitSet valid;
+        private final int rowCount;
+        private int next;
+
+        RowIterator(BitSet valid, int rowCount) {
+            this.valid = valid;
+            this.rowCount = rowCount;
+            this.next = advance(0);
+        }
+
+        private int advance(int from) {
+            return (valid == null) ? from : valid.nextSetBit(from);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0 && next < rowCount;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int row = next;
+            next = advance(row + 1);
+            return row;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -22,7 +22,17 @@ import timeBench.calendar.Granule;
  */
 public abstract class TemporalElement extends ParentChildNode implements Comparable<TemporalElement> {
 
-	protected static TemporalElementStore temporalDataHeap = new TemporalElementStore();
+	/**
+	 * scratch stores for temporary temporal elements, one per thread
+	 */
+	protected static final ThreadLocal<TemporalElementStore> temporalDataHeap = new ThreadLocal<TemporalElementStore>() {
+		@Override
+		protected TemporalElementStore initialValue() {
+			TemporalElementStore heap = new TemporalElementStore();
+			heap.heap = true;
+			return heap;
+		}
+	};
 	
     // predefined column names for temporal elements (similar to VisualItem)
     /**
@@ -88,6 +98,11 @@ public abstract class TemporalElement extends ParentChildNode implements Compara
      * from there as there is no full support for weak references
      * in Java.
      * 
+     * <p>
+     * Each thread has its own heap, so that temporary elements can be created
+     * concurrently without locking. The element must not be used by other
+     * threads and it is only valid until {@link #clearHeap()} is called.
+     * 
      * @param inf
      *            the lower end of the temporal element
      * @param sup
@@ -102,17 +117,55 @@ public abstract class TemporalElement extends ParentChildNode implements Compara
      */
     public static TemporalElement createOnHeap(long inf, long sup, int granularityId,
     		int granularityContextId, int kind) {
-    	return temporalDataHeap.addTemporalElement(inf, sup, granularityId, granularityContextId, kind);
+    	return temporalDataHeap.get().addTemporalElement(inf, sup, granularityId, granularityContextId, kind);
     }
     
     /**
      * Destroys an instance of a (this) TemporalElement on the heap.
-     * If it is not on the heap, nothing is done to prevent this, so prefuse will
-     * throw an IllegalArgumentException. External references to
+     * The element is removed from the heap it was created on, which is not
+     * necessarily the heap of the calling thread. External references to
      * this TemporalElement should be cleared by the calling code.  
+     * 
+     * @throws IllegalStateException
+     *             if the temporal element is not on a heap
      */
     public void destroyFromHeap() {
-    	temporalDataHeap.removeTemporalElement(this);
+    	TemporalElementStore store = (TemporalElementStore) getGraph();
+    	if (store == null || !store.heap) {
+    		throw new IllegalStateException("Temporal element " + m_row
+    				+ " is not on the temporal data heap.");
+    	}
+    	store.removeTemporalElement(this);
+    }
+
+    /**
+     * Gets the temporal data heap of the current thread.
+     * 
+     * @return the store of temporary temporal elements
+     */
+    public static TemporalElementStore getHeap() {
+    	return temporalDataHeap.get();
+    }
+
+    /**
+     * Destroys all TemporalElements on the heap of the current thread at once.
+     * The store and its allocated rows are kept and reused by subsequent calls
+     * of {@link #createOnHeap(long, long, int, int, int)}, which is cheaper
+     * than destroying the elements one by one. External references to these
+     * TemporalElements should be cleared by the calling code.
+     */
+    public static void clearHeap() {
+    	temporalDataHeap.get().clear();
+    }
+
+    /**
+     * Releases the heap of the current thread, e.g., before a pooled worker
+     * thread is returned. The next call of
+     * {@link #createOnHeap(long, long, int, int, int)} on this thread starts
+     * with a new heap.
+     */
+    public static void releaseHeap() {
+    	temporalDataHeap.remove();
     }
 
     /**
@@ -286,6 +339,11 @@ public abstract class TemporalElement extends ParentChildNode implements Compara
      * @throws TemporalDataException 
      */
     public Instant getFirstInstant() throws TemporalDataException {
+    	int first = getTemporalElementStore().getFirstInstantRow(m_row);
+    	if (first != AnchorCache.UNRESOLVED) {
+    		return (first < 0) ? null : (Instant) getTemporalElementStore()
+    				.getTemporalPrimitiveByRow(first);
+    	}
     	TemporalElement thisElement = this.asPrimitive();
     	if (thisElement instanceof Instant) {
     		return (Instant)thisElement;
@@ -308,6 +366,11 @@ public abstract class TemporalElement extends ParentChildNode implements Compara
      * @throws TemporalDataException 
      */
     public Instant getLastInstant() throws TemporalDataException {
+    	int last = getTemporalElementStore().getLastInstantRow(m_row);
+    	if (last != AnchorCache.UNRESOLVED) {
+    		return (last < 0) ? null : (Instant) getTemporalElementStore()
+    				.getTemporalPrimitiveByRow(last);
+    	}
     	TemporalElement thisElement = this.asPrimitive();
     	if (thisElement instanceof Instant) {
     		return (Instant)thisElement;
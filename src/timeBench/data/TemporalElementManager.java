@@ -90,7 +90,8 @@ public class TemporalElementManager extends TupleManager {
      * 
      * <p>
      * A temporal element is anchored iff its kind is instant or interval or its
-     * kind is set and at least one child is anchored.
+     * kind is set and at least one child is anchored. For a
+     * {@link TemporalElementStore} the cached value is returned.
      * 
      * @param g
      *            temporal elements graph.
@@ -99,6 +100,9 @@ public class TemporalElementManager extends TupleManager {
      * @return true if the temporal element is anchored.
      */
     protected static boolean isAnchored(Graph g, int row) {
+        if (g instanceof TemporalElementStore) {
+            return ((TemporalElementStore) g).isAnchored(row);
+        }
         // use low level functions, otherwise a tuple would be created (circular
         // dependency)
         int kind = g.getNodeTable().getInt(row, TemporalElement.KIND);
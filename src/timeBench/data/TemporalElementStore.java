@@ -4,25 +4,33 @@ import ieg.prefuse.data.ParentChildGraph;
 import ieg.util.lang.CustomIterable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 
 import prefuse.data.Graph;
-import prefuse.data.Schema;
 import prefuse.data.Table;
 import prefuse.data.Tuple;
+import prefuse.data.column.Column;
 import prefuse.data.expression.Predicate;
 import prefuse.data.tuple.TableEdge;
 import prefuse.data.tuple.TupleManager;
-import prefuse.data.util.Index;
 import prefuse.util.collections.CompositeIterator;
+import prefuse.util.collections.IntArrayIterator;
 import prefuse.util.collections.IntIterator;
 import timeBench.calendar.Granularity;
 import timeBench.calendar.Granule;
+import timeBench.data.expression.AnchoredPredicate;
+import timeBench.data.util.DefaultIntervalComparator;
+import timeBench.data.util.ElementObjectIndex;
 import timeBench.data.util.GranuleCache;
+import timeBench.data.util.IdIndex;
 import timeBench.data.util.IntervalIndex;
+import timeBench.data.util.MemoryReport;
+import timeBench.data.util.TemporalIndex;
 
 /**
  * This class maintains data structures that encompass a temporal dataset. It
@@ -52,36 +60,84 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
     private TemporalElementManager temporalGenerics;
 
     /**
-     * index for {@link TemporalElement} row numbers by {@link TemporalElement#ID}. 
+     * index for {@link TemporalElement} row numbers by {@link TemporalElement#ID}
+     * (also yields the next id). 
      */
-    private Index indexElements;
+    private IdIndex indexElements;
 
     /**
-     * interval index for anchored {@link TemporalElement}s.
-     * Initialized on demand by {@link #intervalIndex()}.
+     * interval index for anchored {@link TemporalElement}s, which is shared by
+     * all registered tables. Initialized on demand by {@link #intervalIndex()}.
      */
     private IntervalIndex indexElementIntervals = null;
     
-    private List<TemporalData> temporalData = new LinkedList<TemporalData>();
+    /**
+     * reverse indices of tables referencing temporal elements (e.g., temporal
+     * objects)
+     */
+    private List<ElementObjectIndex> temporalData = new LinkedList<ElementObjectIndex>();
     
     /**
      * Cache for first granules of temporal elements (Lazy initialization).
      */
     private GranuleCache granuleCache; 
+
+    /**
+     * Anchored flags and first/last instants of temporal elements.
+     */
+    private AnchorCache anchorCache;
+
+    /**
+     * Hash table of leaf temporal elements, if identical elements are reused
+     * (<tt>null</tt> otherwise).
+     */
+    private ElementInterner interner = null;
+
+    /**
+     * Lifespan of anchored temporal elements (Lazy initialization).
+     */
+    private LifespanBounds lifespanBounds;
+
+    /**
+     * <tt>true</tt> if this store holds temporary temporal elements (see
+     * {@link TemporalElement#createOnHeap(long, long, int, int, int)}).
+     */
+    boolean heap = false;
+
+    // columns of the temporal element table (cached to avoid lookup by name)
+    private Column colId;
+    private Column colInf;
+    private Column colSup;
+    private Column colGranularityId;
+    private Column colGranularityContextId;
+    private Column colKind;
     
     /**
      * Constructs an empty {@link TemporalElementStore}
      */
     public TemporalElementStore() {
-        // temporal objects are by default in an directed graph
-        super(new Table(), false);
+        // temporal element columns are defined by TemporalElementTable
+        this(new TemporalElementTable());
+    }
 
-        // define temporal element columns for nodes of the temporal e. graph
-        this.getNodeTable().addColumns(this.getTemporalElementSchema());
+    /**
+     * Constructs an empty {@link TemporalElementStore} that keeps its temporal
+     * elements in the given table. The element columns are backed by
+     * primitive arrays, which makes scans over many elements cheaper and
+     * allows to add elements in batches.
+     * 
+     * @param temporalElements
+     *            an empty table of temporal elements
+     */
+    public TemporalElementStore(TemporalElementTable temporalElements) {
+        // temporal elements are by default in an directed graph
+        super(temporalElements, temporalElements.createEdgeTable(), false);
 
         // add indices
-        this.indexElements = this.getNodeTable().index(TemporalElement.ID);
+        this.indexElements = new IdIndex(this.getNodeTable(), TemporalElement.ID);
 
+        initColumns();
+        this.anchorCache = new AnchorCache(this);
         initTupleManagers();
     }
 
@@ -99,11 +155,29 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
         // TODO check temporal element schema 
 
         // add indices
-        this.indexElements = this.getNodeTable().index(TemporalElement.ID);
+        this.indexElements = new IdIndex(this.getNodeTable(), TemporalElement.ID);
 
+        initColumns();
+        this.anchorCache = new AnchorCache(this);
         initTupleManagers();
     }
 
+    /**
+     * Look up the columns of the temporal element table once, so that row
+     * accessors do not need to resolve them by name.
+     */
+    private void initColumns() {
+        Table nodeTable = this.getNodeTable();
+        this.colId = nodeTable.getColumn(TemporalElement.ID);
+        this.colInf = nodeTable.getColumn(TemporalElement.INF);
+        this.colSup = nodeTable.getColumn(TemporalElement.SUP);
+        this.colGranularityId = nodeTable
+                .getColumn(TemporalElement.GRANULARITY_ID);
+        this.colGranularityContextId = nodeTable
+                .getColumn(TemporalElement.GRANULARITY_CONTEXT_ID);
+        this.colKind = nodeTable.getColumn(TemporalElement.KIND);
+    }
+
     /**
      * Set tuple managers for temporal elements, temporal primitives, and
      * temporal objects and use them in the underlying data structures.
@@ -129,6 +203,28 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
         super.initTupleManagers(temporalGenerics, tempElementEdgeManager);
     }
 
+    /**
+     * Create the adjacency table of the temporal element graph. The temporal
+     * element table decides how it is held (e.g., sparse for
+     * {@link MappedTemporalElementTable}).
+     */
+    @Override
+    protected Table createLinkTable() {
+        Table nodes = getNodeTable();
+        if (nodes instanceof TemporalElementTable) {
+            return ((TemporalElementTable) nodes).createLinkTable(LINKS_SCHEMA);
+        }
+        return super.createLinkTable();
+    }
+
+    /**
+     * Replace the adjacency table by an empty one while the node table has no
+     * rows (see {@link GraphCompactor}).
+     */
+    void clearLinkTable() {
+        m_links = createLinkTable();
+    }
+
     @Deprecated
     public TemporalElementStore clone() {
         throw new UnsupportedOperationException("clone no longer needed");
@@ -181,6 +277,19 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
         return (row == Integer.MIN_VALUE) ? null : getTemporalElementByRow(row);
     }
 
+    /**
+     * Get the row number of the temporal element with the given id.
+     * 
+     * @param id
+     *            element id
+     * @return the temporal element table row number, or -1 if this dataset
+     *         contains no element for the id.
+     */
+    public int getTemporalElementRow(long id) {
+        int row = this.indexElements.get(id);
+        return (row == Integer.MIN_VALUE) ? -1 : row;
+    }
+
     /**
      * Get the temporal primitive corresponding to its row number.
      * 
@@ -264,22 +373,165 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
         return new CustomIterable(temporalPrimitives.iterator(iit));
     }
 
+    // ----- TEMPORAL ELEMENT ROW ACCESSORS -----
+
+    /**
+     * Get the id of the temporal element in the given row without creating a
+     * proxy tuple.
+     * 
+     * @param row
+     *            temporal element table row number
+     * @return the element id
+     */
+    public long getId(int row) {
+        return colId.getLong(row);
+    }
+
+    /**
+     * Get the lower end of the temporal element in the given row without
+     * creating a proxy tuple.
+     * 
+     * @param row
+     *            temporal element table row number
+     * @return the lower end (inf) in milliseconds
+     */
+    public long getInf(int row) {
+        return colInf.getLong(row);
+    }
+
+    /**
+     * Get the upper end of the temporal element in the given row without
+     * creating a proxy tuple.
+     * 
+     * @param row
+     *            temporal element table row number
+     * @return the upper end (sup) in milliseconds
+     */
+    public long getSup(int row) {
+        return colSup.getLong(row);
+    }
+
+    /**
+     * Get the granularity id of the temporal element in the given row without
+     * creating a proxy tuple.
+     * 
+     * @param row
+     *            temporal element table row number
+     * @return the granularity id
+     */
+    public int getGranularityId(int row) {
+        return colGranularityId.getInt(row);
+    }
+
+    /**
+     * Get the granularity context id of the temporal element in the given row
+     * without creating a proxy tuple.
+     * 
+     * @param row
+     *            temporal element table row number
+     * @return the granularity context id
+     */
+    public int getGranularityContextId(int row) {
+        return colGranularityContextId.getInt(row);
+    }
+
+    /**
+     * Get the kind of the temporal element in the given row without creating
+     * a proxy tuple.
+     * 
+     * @param row
+     *            temporal element table row number
+     * @return the kind, e.g., {@link #PRIMITIVE_INSTANT}
+     */
+    public int getKind(int row) {
+        return colKind.getInt(row);
+    }
+
+    /**
+     * Check whether the temporal element in the given row is anchored without
+     * creating a proxy tuple. The result is cached until the kind or the
+     * children of the element change.
+     * 
+     * @param row
+     *            temporal element table row number
+     * @return true if the temporal element is anchored
+     */
+    public boolean isAnchored(int row) {
+        return anchorCache.isAnchored(row);
+    }
+
+    /**
+     * Set whether identical temporal elements are reused on insert. If
+     * enabled, adding an instant or span (without an explicit id) that equals
+     * an existing one in inf, sup, granularity id, granularity context id,
+     * and kind returns the existing temporal element instead of creating a new
+     * one. This keeps the number of temporal elements small for data in long
+     * format, where many temporal objects share the same timestamp.
+     * 
+     * <p>
+     * Interned temporal elements are shared by all temporal objects that
+     * added them, so modifying such an element affects all of them. Elements
+     * added with an explicit id or in batches are not interned.
+     * 
+     * @param interning
+     *            true to reuse identical temporal elements
+     */
+    public void setInterning(boolean interning) {
+        if (interning && this.interner == null) {
+            this.interner = new ElementInterner(this);
+            this.interner.addAll();
+        } else if (!interning) {
+            this.interner = null;
+        }
+    }
+
+    /**
+     * Check whether identical temporal elements are reused on insert.
+     * 
+     * @return true if interning is enabled
+     * @see #setInterning(boolean)
+     */
+    public boolean isInterning() {
+        return this.interner != null;
+    }
+
+    /**
+     * Get the row of the first instant of a temporal element (cached).
+     * 
+     * @param row
+     *            temporal element table row number
+     * @return the row, -1 if there is no instant, or
+     *         {@link AnchorCache#UNRESOLVED} if the instant has to be derived
+     */
+    int getFirstInstantRow(int row) {
+        return anchorCache.getFirstInstantRow(row);
+    }
+
+    /**
+     * Get the row of the last instant of a temporal element (cached).
+     * 
+     * @param row
+     *            temporal element table row number
+     * @return the row, -1 if there is no instant, or
+     *         {@link AnchorCache#UNRESOLVED} if the instant has to be derived
+     */
+    int getLastInstantRow(int row) {
+        return anchorCache.getLastInstantRow(row);
+    }
+
     // ----- TEMPORAL OBJECT ACCESSORS -----
 
     // TODO need these to be public? -> not if TemporalTable is used
     protected void register(Table table, String field) {
-        TemporalData entry = new TemporalData();
-        entry.table = table;
-        entry.index = table.index(field);
-        this.temporalData.add(entry);
+        this.temporalData.add(new ElementObjectIndex(this, table, field));
     }
 
     protected boolean unregister(Table table, String field) {
-        Index index = table.getIndex(field);
-        Iterator<TemporalData> i = temporalData.iterator();
+        Iterator<ElementObjectIndex> i = temporalData.iterator();
         while (i.hasNext()) {
-            TemporalData entry = i.next();
-            if (entry.table == table && entry.index == index) {
+            ElementObjectIndex entry = i.next();
+            if (entry.getTable() == table && entry.getField().equals(field)) {
+                entry.dispose();
                 i.remove();
                 return true;
             }
@@ -287,10 +539,20 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
         return false;
     }
 
-	private static class TemporalData {
-	    Table table;
-	    Index index;
-	}
+    /**
+     * Get the reverse index of a registered table.
+     * 
+     * @return the reverse index or <tt>null</tt> if the table is not
+     *         registered for the given field
+     */
+    ElementObjectIndex getElementObjectIndex(Table table, String field) {
+        for (ElementObjectIndex entry : temporalData) {
+            if (entry.getTable() == table && entry.getField().equals(field)) {
+                return entry;
+            }
+        }
+        return null;
+    }
 
     /**
      * Get an iterator over all {@link TemporalObject}s occurring with the given
@@ -304,26 +566,36 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
     @SuppressWarnings({ "rawtypes", "unchecked" })
     public Iterable<Tuple> getTemporalObjectsByElementId(
             long temporalId) {
-        
-        ArrayList<Iterator> iis = new ArrayList<Iterator>();
-        for (TemporalData data : temporalData) {
-            // id + index -> rows iterator
-            IntIterator rows = data.index.rows(temporalId);
-            // rows + table -> tuple iterator
-            Iterator ii = data.table.tuples(rows);
-            if (ii.hasNext()) {
-                // only consider if at least one tuple is present
-                iis.add(ii);
+        int elementRow = getTemporalElementRow(temporalId);
+
+        Iterator result = null;
+        ArrayList<Iterator> iis = null;
+        if (elementRow >= 0) {
+            for (ElementObjectIndex data : temporalData) {
+                // element row + reverse index -> rows
+                int[] rows = data.rows(elementRow);
+                if (rows.length > 0) {
+                    // only consider if at least one tuple is present
+                    // rows + table -> tuple iterator
+                    Iterator ii = data.getTable().tuples(
+                            new IntArrayIterator(rows, 0, rows.length));
+                    if (result == null) {
+                        result = ii;
+                    } else {
+                        if (iis == null) {
+                            iis = new ArrayList<Iterator>();
+                            iis.add(result);
+                        }
+                        iis.add(ii);
+                    }
+                }
             }
         }
-        
-        Iterator result;
-        if (iis.size() < 1) {
+
+        if (result == null) {
             // handle element store without datasets or without objs. for el.
             result = Collections.emptyList().iterator();
-        } else if (iis.size() == 1) {
-            result = iis.get(0);
-        } else {
+        } else if (iis != null) {
             Iterator[] iiArray = new Iterator[iis.size()];
             iiArray = iis.toArray(iiArray);
             result = new CompositeIterator(iiArray);
@@ -340,21 +612,20 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
      * To attempt to retrieve an index without triggering creation of a new
      * index, use the {@link #getIntervalIndex()} method.
      * 
+     * <p>
+     * The index is maintained from the tables of the store, so that datasets
+     * and {@link TemporalTable}s sharing this store also share the index. It
+     * yields element rows; temporal objects can be retrieved via the interval
+     * index of a {@link TemporalDataset}.
+     * 
      * @return the interval index
      */
     public IntervalIndex intervalIndex() {
         if (indexElementIntervals != null) {
             return indexElementIntervals; // already indexed
         }
-        
-        // XXX no idea if this should be here or in TemporalDataset
-//        IntervalComparator comparator = new DefaultIntervalComparator();
-//        indexElementIntervals = new TemporalIndex(this, new AnchoredPredicate(), comparator);
-        
-
-        // TODO predicate to take advantage of interval index
-        
-
+        indexElementIntervals = new TemporalIndex(this,
+                new AnchoredPredicate(), new DefaultIntervalComparator());
         return indexElementIntervals;
     }
 
@@ -387,13 +658,34 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
      */
     private int addTemporalElementAsRow(long inf, long sup, int granularityId,
             int granularityContextId, int kind) {
-        long id = (indexElements.size() > 0) ? this.getNodeTable()
-                .getLong(this.indexElements.maximum(), TemporalElement.ID) + 1
-                : DEFAULT_FIRST_ID;
+        long id = indexElements.getNextId(DEFAULT_FIRST_ID);
         return addTemporalElementAsRow(id, inf, sup, granularityId,
                 granularityContextId, kind);
     }
 
+    /**
+     * Gets an existing temporal element with the given values if interning is
+     * enabled or adds a new one.
+     * 
+     * @return the index of the element in the table of temporal elements
+     * @see #setInterning(boolean)
+     */
+    private int addInternedTemporalElementAsRow(long inf, long sup,
+            int granularityId, int granularityContextId, int kind) {
+        if (interner == null || !ElementInterner.isInterned(kind)) {
+            return addTemporalElementAsRow(inf, sup, granularityId,
+                    granularityContextId, kind);
+        }
+        int row = interner.find(inf, sup, granularityId, granularityContextId,
+                kind);
+        if (row == -1) {
+            row = addTemporalElementAsRow(inf, sup, granularityId,
+                    granularityContextId, kind);
+            interner.add(row);
+        }
+        return row;
+    }
+
     /**
      * Adds a new temporal element to the dataset but does not return a proxy
      * tuple.
@@ -415,14 +707,13 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
      */
     private int addTemporalElementAsRow(long id, long inf, long sup,
             int granularityId, int granularityContextId, int kind) {
-        Table nodeTable = this.getNodeTable();
-        int row = nodeTable.addRow();
-        nodeTable.set(row, TemporalElement.ID, id);
-        nodeTable.set(row, TemporalElement.INF, inf);
-        nodeTable.set(row, TemporalElement.SUP, sup);
-        nodeTable.set(row, TemporalElement.GRANULARITY_ID, granularityId);
-        nodeTable.set(row, TemporalElement.GRANULARITY_CONTEXT_ID, granularityContextId);
-        nodeTable.set(row, TemporalElement.KIND, kind);
+        int row = this.getNodeTable().addRow();
+        colId.setLong(id, row);
+        colInf.setLong(inf, row);
+        colSup.setLong(sup, row);
+        colGranularityId.setInt(granularityId, row);
+        colGranularityContextId.setInt(granularityContextId, row);
+        colKind.setInt(kind, row);
 
         // only proxy tuple is GenericTemporalElement -> no need to invalidate
 
@@ -446,7 +737,7 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
      */
     public GenericTemporalElement addTemporalElement(long inf, long sup,
             int granularityId, int granularityContextId, int kind) {
-        int row = addTemporalElementAsRow(inf, sup, granularityId,
+        int row = addInternedTemporalElementAsRow(inf, sup, granularityId,
                 granularityContextId, kind);
         return (GenericTemporalElement) this.temporalGenerics.getTuple(row);
 
@@ -490,9 +781,7 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
     public GenericTemporalElement[] addTemporalElements(int nTuples, int kind) {
         Table nodeTable = this.getNodeTable();
 
-        long firstId = (indexElements.size() > 0) ? nodeTable.getLong(
-                this.indexElements.maximum(), TemporalElement.ID) + 1
-                : DEFAULT_FIRST_ID;
+        long firstId = indexElements.getNextId(DEFAULT_FIRST_ID);
 
         int[] rows = nodeTable.addRows(nTuples);
         GenericTemporalElement[] elems = new GenericTemporalElement[nTuples];
@@ -507,6 +796,115 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
         return elems;
     }
     
+    /**
+     * Adds a batch of temporal elements to the dataset. The values of the
+     * elements are given as parallel arrays. The elements are assigned
+     * consecutive ids starting with the returned id. Table listeners are
+     * notified once after all elements have been added.
+     * 
+     * @param inf
+     *            the lower ends of the temporal elements
+     * @param sup
+     *            the upper ends of the temporal elements
+     * @param granularityIds
+     *            the granularityIDs of the temporal elements
+     * @param granularityContextIds
+     *            the granularityContextIDs of the temporal elements or
+     *            <tt>null</tt> if there are no granularity contexts
+     * @param kinds
+     *            the kinds of the temporal elements
+     * @return the id of the first added temporal element
+     */
+    public long addTemporalElements(long[] inf, long[] sup,
+            int[] granularityIds, int[] granularityContextIds, int[] kinds) {
+        long firstId = indexElements.getNextId(DEFAULT_FIRST_ID);
+        addTemporalElementRows(null, firstId, inf, sup, granularityIds,
+                granularityContextIds, kinds);
+        return firstId;
+    }
+
+    /**
+     * Adds a batch of temporal elements with the given ids to the dataset.
+     * The values of the elements are given as parallel arrays. Table
+     * listeners are notified once after all elements have been added.
+     * 
+     * @param ids
+     *            the ids of the temporal elements
+     * @param inf
+     *            the lower ends of the temporal elements
+     * @param sup
+     *            the upper ends of the temporal elements
+     * @param granularityIds
+     *            the granularityIDs of the temporal elements
+     * @param granularityContextIds
+     *            the granularityContextIDs of the temporal elements or
+     *            <tt>null</tt> if there are no granularity contexts
+     * @param kinds
+     *            the kinds of the temporal elements
+     */
+    public void addTemporalElements(long[] ids, long[] inf, long[] sup,
+            int[] granularityIds, int[] granularityContextIds, int[] kinds) {
+        if (ids.length != inf.length) {
+            throw new IllegalArgumentException("Arrays must be of same length.");
+        }
+        addTemporalElementRows(ids, 0l, inf, sup, granularityIds,
+                granularityContextIds, kinds);
+    }
+
+    /**
+     * Gets the id that the next temporal element added without an explicit
+     * id will receive.
+     * 
+     * @return the next temporal element id
+     */
+    long getNextTemporalElementId() {
+        return indexElements.getNextId(DEFAULT_FIRST_ID);
+    }
+
+    /**
+     * Adds a batch of temporal elements. If the node table supports batches,
+     * insert events are fired once at the end; otherwise row by row.
+     * 
+     * @param ids
+     *            the ids of the temporal elements or <tt>null</tt> to use
+     *            consecutive ids
+     * @param firstId
+     *            the first of the consecutive ids (ignored if ids are given)
+     */
+    private void addTemporalElementRows(long[] ids, long firstId, long[] inf,
+            long[] sup, int[] granularityIds, int[] granularityContextIds,
+            int[] kinds) {
+        int n = inf.length;
+        if (sup.length != n || granularityIds.length != n || kinds.length != n
+                || (granularityContextIds != null && granularityContextIds.length != n)) {
+            throw new IllegalArgumentException("Arrays must be of same length.");
+        }
+
+        Table nodeTable = this.getNodeTable();
+        if (nodeTable instanceof TemporalElementTable) {
+            TemporalElementTable elements = (TemporalElementTable) nodeTable;
+            elements.beginBatch();
+            try {
+                for (int i = 0; i < n; i++) {
+                    int row = elements.addRow();
+                    elements.initRow(row, (ids == null) ? firstId + i : ids[i],
+                            inf[i], sup[i], granularityIds[i],
+                            (granularityContextIds == null) ? -1
+                                    : granularityContextIds[i], kinds[i]);
+                }
+            } finally {
+                elements.endBatch();
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                addTemporalElementAsRow((ids == null) ? firstId + i : ids[i],
+                        inf[i], sup[i], granularityIds[i],
+                        (granularityContextIds == null) ? -1
+                                : granularityContextIds[i], kinds[i]);
+            }
+        }
+    }
+    
     /**
      * Add a new instant to the dataset. This method returns a proxy tuple of
      * this instant, which is of class {@link Instant}.
@@ -523,7 +921,7 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
      */
     public Instant addInstant(long inf, long sup, int granularityId,
             int granularityContextId) {
-        int row = this.addTemporalElementAsRow(inf, sup, granularityId,
+        int row = this.addInternedTemporalElementAsRow(inf, sup, granularityId,
                 granularityContextId, TemporalElementStore.PRIMITIVE_INSTANT);
         Instant result = (Instant) this.temporalPrimitives.getTuple(row);
         return result;
@@ -594,8 +992,8 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
     }
     
     public Span addSpan(long length, int granularityId) {
-        int row = this.addTemporalElementAsRow(length, length, granularityId,
-                -1, TemporalElementStore.PRIMITIVE_SPAN);
+        int row = this.addInternedTemporalElementAsRow(length, length,
+                granularityId, -1, TemporalElementStore.PRIMITIVE_SPAN);
         Span result = (Span) this.temporalPrimitives.getTuple(row);
         return result;
     }
@@ -710,6 +1108,33 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
     public boolean removeTemporalElement(TemporalElement te) {
     	return this.removeNode(te);
     }
+
+    /**
+     * Remove a temporal element and then its children, as long as they have
+     * no parent element and are not referenced by a registered table (e.g.,
+     * temporal objects). This is used to evict old data from a stream.
+     * 
+     * @param row
+     *            temporal element table row number
+     */
+    void removeUnreferenced(int row) {
+        if (!getNodeTable().isValidRow(row) || getOutDegree(row) > 0) {
+            return;
+        }
+        for (ElementObjectIndex index : temporalData) {
+            if (index.rows(row).length > 0) {
+                return;
+            }
+        }
+        int[] children = new int[getInDegree(row)];
+        for (int i = 0; i < children.length; i++) {
+            children[i] = getChildRow(row, i);
+        }
+        removeNode(row);
+        for (int child : children) {
+            removeUnreferenced(child);
+        }
+    }
     
     /**
      * Gets the first granule of an anchored temporal element. For an
@@ -729,27 +1154,6 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
         return granuleCache.getGranules(row);
     }
     
-    /**
-     * Get an instance of the default {@link Schema} used for
-     * {@link TemporalElement} instances. Contains the data members internally
-     * used to model a temporal element, i.e. inf, sup, granularity, granularity
-     * context, and kind.
-     * 
-     * @return the TemporalElement data Schema
-     */
-    private Schema getTemporalElementSchema() {
-        Schema s = new Schema();
-
-        s.addColumn(TemporalElement.ID, long.class, -1);
-        s.addColumn(TemporalElement.INF, long.class, Long.MIN_VALUE);
-        s.addColumn(TemporalElement.SUP, long.class, Long.MAX_VALUE);
-        s.addColumn(TemporalElement.GRANULARITY_ID, int.class, -1);
-        s.addColumn(TemporalElement.GRANULARITY_CONTEXT_ID, int.class, -1);
-        s.addColumn(TemporalElement.KIND, int.class, -1);
-
-        return s;
-    }
-
     // predefined kinds of temporal elements
     // TODO move to TemporalElement to be more visible
     public static final int PRIMITIVE_SPAN = 0;
@@ -757,6 +1161,60 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
     public static final int PRIMITIVE_INSTANT = 2;
     public static final int PRIMITIVE_INTERVAL = 3;
 
+    /**
+     * Renumbers the rows of temporal elements and their relationships
+     * densely, so that rows released by deletions no longer take up space.
+     * Temporal elements keep their ids and their order; indices and caches
+     * are updated. Previously obtained row numbers and temporal element
+     * objects become invalid.
+     * 
+     * @return the new row number of each old row (-1 for removed rows) or
+     *         <tt>null</tt> if there were no removed rows
+     * @throws UnsupportedOperationException
+     *             if the store was constructed with tables of other classes
+     *             than {@link TemporalElementTable} and {@link EdgeTable}
+     */
+    public int[] compact() {
+        return GraphCompactor.compact(this);
+    }
+
+    /**
+     * Estimates the memory usage of the temporal element table, the element
+     * relationships, and the indices and caches of this store.
+     * 
+     * @return a report broken down by structure and column
+     */
+    public MemoryReport getMemoryReport() {
+        MemoryReport report = new MemoryReport();
+        reportMemory(report);
+        return report;
+    }
+
+    void reportMemory(MemoryReport report) {
+        report.addTable("temporal elements", getNodeTable());
+        report.addTable("element relationships", getEdgeTable());
+        if (m_links instanceof LinkTable) {
+            ((LinkTable) m_links).reportMemory(report, "element adjacency");
+        } else {
+            report.addTable("element adjacency", m_links);
+        }
+        indexElements.reportMemory(report, "element id index");
+        for (ElementObjectIndex index : temporalData) {
+            index.reportMemory(report, "element object index");
+        }
+        if (granuleCache != null) {
+            granuleCache.reportMemory(report, "granule cache");
+        }
+        if (indexElementIntervals instanceof TemporalIndex) {
+            ((TemporalIndex) indexElementIntervals).reportMemory(report,
+                    "element interval index");
+        }
+        if (interner != null) {
+            report.add("element interner", "rows", interner.size(),
+                    MemoryReport.ARRAY_HEADER + 4l * interner.capacity());
+        }
+    }
+
     /**
      * creates a human-readable string from a {@link TemporalElementStore}.
      * <p>
@@ -772,18 +1230,115 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
                 + " element relationships]";
     }
 
+    /**
+     * Get the minimal inf of all anchored temporal elements. The lifespan is
+     * maintained incrementally once it has been queried.
+     * 
+     * @return the inf or {@link Long#MIN_VALUE} if there are no anchored
+     *         temporal elements
+     */
     @Override
     public long getInf() {
-        // TODO ignore unanchored temporal elements (use IntervalIndex?)
-        Table elem = this.getNodeTable(); 
-        return elem.getLong(elem.getMetadata(TemporalElement.INF).getMinimumRow(), TemporalElement.INF);
+        return lifespanBounds().getInf();
     }
 
+    /**
+     * Get the maximal sup of all anchored temporal elements. The lifespan is
+     * maintained incrementally once it has been queried.
+     * 
+     * @return the sup or {@link Long#MAX_VALUE} if there are no anchored
+     *         temporal elements
+     */
     @Override
     public long getSup() {
-        // TODO ignore unanchored temporal elements (use IntervalIndex?)
-        Table elem = this.getNodeTable(); 
-        return elem.getLong(elem.getMetadata(TemporalElement.SUP).getMaximumRow(), TemporalElement.SUP);
+        return lifespanBounds().getSup();
+    }
+
+    private LifespanBounds lifespanBounds() {
+        if (this.lifespanBounds == null) {
+            this.lifespanBounds = new LifespanBounds(this);
+        }
+        return this.lifespanBounds;
+    }
+
+    /**
+     * Adds copies of temporal elements of another store including the
+     * parent-child relationships among them. The copies keep their ids. If
+     * both stores use a {@link TemporalElementTable}, the rows are added in a
+     * batch and the column values are copied array-wise.
+     * 
+     * @param source
+     *            the store to copy from
+     * @param rows
+     *            the rows of the source store, which must include all
+     *            children of these temporal elements
+     * @return the new row of each source row (-1 for rows not copied)
+     */
+    int[] addCopiesOf(TemporalElementStore source, int[] rows) {
+        Table sourceTable = source.getNodeTable();
+        Table nodeTable = this.getNodeTable();
+        int n = rows.length;
+        int[] newRows;
+
+        if (nodeTable instanceof TemporalElementTable
+                && sourceTable instanceof TemporalElementTable) {
+            TemporalElementTable elements = (TemporalElementTable) nodeTable;
+            elements.beginBatch();
+            try {
+                newRows = elements.addBatchRows(n);
+                boolean consecutive = true;
+                for (int i = 0; i < n; i++) {
+                    consecutive &= newRows[i] == newRows[0] + i;
+                }
+                if (consecutive && n > 0) {
+                    elements.initRows(newRows[0],
+                            (TemporalElementTable) sourceTable, rows);
+                } else {
+                    // free rows were reused
+                    for (int i = 0; i < n; i++) {
+                        elements.initRow(newRows[i], source.getId(rows[i]),
+                                source.getInf(rows[i]), source.getSup(rows[i]),
+                                source.getGranularityId(rows[i]),
+                                source.getGranularityContextId(rows[i]),
+                                source.getKind(rows[i]));
+                    }
+                }
+            } finally {
+                elements.endBatch();
+            }
+        } else {
+            newRows = new int[n];
+            for (int i = 0; i < n; i++) {
+                newRows[i] = addTemporalElementAsRow(source.getId(rows[i]),
+                        source.getInf(rows[i]), source.getSup(rows[i]),
+                        source.getGranularityId(rows[i]),
+                        source.getGranularityContextId(rows[i]),
+                        source.getKind(rows[i]));
+            }
+        }
+
+        int[] rowMap = new int[sourceTable.getMaximumRow() + 1];
+        Arrays.fill(rowMap, -1);
+        for (int i = 0; i < n; i++) {
+            rowMap[rows[i]] = newRows[i];
+        }
+        // link children in their original order
+        BitSet parents = GraphCompactor.parentRows(source);
+        for (int i = 0; i < n; i++) {
+            if (!parents.get(rows[i])) {
+                continue;
+            }
+            IntIterator edges = source.inEdgeRows(rows[i]);
+            while (edges.hasNext()) {
+                int child = rowMap[source.getSourceNode(edges.nextInt())];
+                if (child < 0) {
+                    throw new IllegalArgumentException(
+                            "Children of copied temporal elements are missing.");
+                }
+                addEdge(child, newRows[i]);
+            }
+        }
+        return rowMap;
     }
 
 	/**
@@ -791,9 +1346,11 @@ public class TemporalElementStore extends ParentChildGraph implements Lifespan,
 	 * @return
 	 */
 	public TemporalElement addCloneOf(GenericTemporalElement temporalElement) {
-		TemporalElement result = addTemporalElement(temporalElement.getInf(), temporalElement.getSup(),
+		// a clone is never interned
+		int row = addTemporalElementAsRow(temporalElement.getInf(), temporalElement.getSup(),
 				temporalElement.getGranularityId(),temporalElement.getGranularityContextId(),
 				temporalElement.getKind());
+		TemporalElement result = (TemporalElement) this.temporalGenerics.getTuple(row);
 		
 		for(GenericTemporalElement iTemporalElement : temporalElement.childElements())
 			result.linkWithChild(addCloneOf(iTemporalElement));
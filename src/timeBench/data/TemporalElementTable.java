@@ -0,0 +1,255 @@
+package timeBench.data;
+
+import prefuse.data.Schema;
+import prefuse.data.Table;
+import prefuse.data.event.EventConstants;
+import timeBench.data.util.AbstractIntColumn;
+import timeBench.data.util.AbstractLongColumn;
+import timeBench.data.util.IntArrayColumn;
+import timeBench.data.util.LongArrayColumn;
+
+/**
+ * Node table for a {@link TemporalElementStore} that stores the temporal
+ * element columns (i.e., id, inf, sup, granularity, granularity context, and
+ * kind) in growable primitive arrays or other column instances that allow
+ * rows to be filled without events (e.g., memory-mapped files). The columns are created by the
+ * constructor and their references are kept, so that row values can be read
+ * without looking up columns by name.
+ *
+ * <p>
+ * Additional columns can be added like for any other {@link Table}.
+ *
+ * @see TemporalElementStore#TemporalElementStore(TemporalElementTable)
+ */
+public class TemporalElementTable extends Table {
+
+    private AbstractLongColumn ids;
+    private AbstractLongColumn infs;
+    private AbstractLongColumn sups;
+    private AbstractIntColumn granularityIds;
+    private AbstractIntColumn granularityContextIds;
+    private AbstractIntColumn kinds;
+
+    private final DeferredTableEvents batch = new DeferredTableEvents() {
+        @Override
+        protected void fire(int row0, int row1, int col, int type) {
+            TemporalElementTable.super.fireTableEvent(row0, row1, col, type);
+        }
+    };
+
+    /**
+     * Constructs an empty table of temporal elements backed by
+     * {@link LongArrayColumn}s and {@link IntArrayColumn}s.
+     */
+    public TemporalElementTable() {
+        this(new LongArrayColumn(-1l), new LongArrayColumn(Long.MIN_VALUE),
+                new LongArrayColumn(Long.MAX_VALUE), new IntArrayColumn(-1),
+                new IntArrayColumn(-1), new IntArrayColumn(-1));
+    }
+
+    /**
+     * Constructs an empty table of temporal elements using the given column
+     * instances (e.g., to preset their capacity). The columns must be empty.
+     *
+     * @param ids
+     *            column for {@link TemporalElement#ID}
+     * @param infs
+     *            column for {@link TemporalElement#INF}
+     * @param sups
+     *            column for {@link TemporalElement#SUP}
+     * @param granularityIds
+     *            column for {@link TemporalElement#GRANULARITY_ID}
+     * @param granularityContextIds
+     *            column for {@link TemporalElement#GRANULARITY_CONTEXT_ID}
+     * @param kinds
+     *            column for {@link TemporalElement#KIND}
+     */
+    protected TemporalElementTable(AbstractLongColumn ids,
+            AbstractLongColumn infs, AbstractLongColumn sups,
+            AbstractIntColumn granularityIds,
+            AbstractIntColumn granularityContextIds, AbstractIntColumn kinds) {
+        this.ids = ids;
+        this.infs = infs;
+        this.sups = sups;
+        this.granularityIds = granularityIds;
+        this.granularityContextIds = granularityContextIds;
+        this.kinds = kinds;
+
+        addColumn(TemporalElement.ID, ids);
+        addColumn(TemporalElement.INF, infs);
+        addColumn(TemporalElement.SUP, sups);
+        addColumn(TemporalElement.GRANULARITY_ID, granularityIds);
+        addColumn(TemporalElement.GRANULARITY_CONTEXT_ID, granularityContextIds);
+        addColumn(TemporalElement.KIND, kinds);
+    }
+
+    // ----- GRAPH STRUCTURE -----
+
+    /**
+     * Get the edge table to be used with this node table by a
+     * {@link TemporalElementStore}.
+     *
+     * @return a new, empty edge table
+     */
+    EdgeTable createEdgeTable() {
+        return new EdgeTable();
+    }
+
+    /**
+     * Create the adjacency table of the temporal element graph (see
+     * {@link prefuse.data.Graph#createLinkTable()}).
+     *
+     * @param schema
+     *            the columns of the link table
+     * @return a link table with one row per row of this table
+     */
+    Table createLinkTable(Schema schema) {
+        return schema.instantiate(getMaximumRow() + 1);
+    }
+
+    // ----- BATCH INSERTION -----
+
+    /**
+     * Start a batch of row insertions. Until the matching {@link #endBatch()},
+     * insert events are collected instead of being passed to listeners.
+     * Within a batch, new rows must only be filled by
+     * {@link #initRow(int, long, long, long, int, int, int)}.
+     */
+    void beginBatch() {
+        batch.begin();
+    }
+
+    /**
+     * End a batch of row insertions and fire one insert event per contiguous
+     * range of new rows.
+     */
+    void endBatch() {
+        batch.end();
+    }
+
+    /**
+     * Add rows in a batch. Columns are resized once for all rows instead of
+     * once per row, and within a batch the insert events are collected.
+     * 
+     * @param nrows
+     *            the number of rows to add
+     * @return the new rows (ascending unless free rows are reused)
+     */
+    int[] addBatchRows(int nrows) {
+        int[] rows = new int[nrows];
+        for (int i = 0; i < nrows; i++) {
+            rows[i] = m_rows.addRow();
+        }
+        updateRowCount();
+        // announce each range of consecutive rows by a single event
+        int first = 0;
+        for (int i = 1; i <= nrows; i++) {
+            if (i == nrows || rows[i] != rows[i - 1] + 1) {
+                fireTableEvent(rows[first], rows[i - 1],
+                        EventConstants.ALL_COLUMNS, EventConstants.INSERT);
+                first = i;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Set all temporal element columns of a row that was added in the current
+     * batch without firing column events.
+     */
+    void initRow(int row, long id, long inf, long sup, int granularityId,
+            int granularityContextId, int kind) {
+        ids.initLong(id, row);
+        infs.initLong(inf, row);
+        sups.initLong(sup, row);
+        granularityIds.initInt(granularityId, row);
+        granularityContextIds.initInt(granularityContextId, row);
+        kinds.initInt(kind, row);
+    }
+
+    /**
+     * Set all temporal element columns of consecutive rows that were added in
+     * the current batch to the values of the given rows of another table,
+     * without firing column events.
+     * 
+     * @param row
+     *            the first row to set
+     * @param source
+     *            the table to copy from
+     * @param sourceRows
+     *            the rows of the source table
+     */
+    void initRows(int row, TemporalElementTable source, int[] sourceRows) {
+        ids.initValues(source.ids, sourceRows, row);
+        infs.initValues(source.infs, sourceRows, row);
+        sups.initValues(source.sups, sourceRows, row);
+        granularityIds.initValues(source.granularityIds, sourceRows, row);
+        granularityContextIds.initValues(source.granularityContextIds,
+                sourceRows, row);
+        kinds.initValues(source.kinds, sourceRows, row);
+    }
+
+    @Override
+    protected void fireTableEvent(int row0, int row1, int col, int type) {
+        // batch is not yet initialized while the super constructor runs
+        if (batch == null || !batch.defer(row0, row1, col, type)) {
+            super.fireTableEvent(row0, row1, col, type);
+        }
+    }
+
+    // ----- COMPACTION -----
+
+    /**
+     * Get the row operations for renumbering the rows of this table in place
+     * (see {@link GraphCompactor}).
+     */
+    GraphCompactor.Rows compactionRows() {
+        return new GraphCompactor.Rows() {
+            @Override
+            void fire(int row0, int row1, int type) {
+                TemporalElementTable.super.fireTableEvent(row0, row1,
+                        EventConstants.ALL_COLUMNS, type);
+            }
+
+            @Override
+            void clear() {
+                m_rows.clear();
+            }
+
+            @Override
+            void reset(int nrows) {
+                for (int i = 0; i < nrows; i++) {
+                    m_rows.addRow();
+                }
+                updateRowCount();
+                m_tuples.invalidateAll();
+            }
+        };
+    }
+
+    // ----- TYPED ROW ACCESSORS -----
+
+    public long getId(int row) {
+        return ids.getLong(row);
+    }
+
+    public long getInf(int row) {
+        return infs.getLong(row);
+    }
+
+    public long getSup(int row) {
+        return sups.getLong(row);
+    }
+
+    public int getGranularityId(int row) {
+        return granularityIds.getInt(row);
+    }
+
+    public int getGranularityContextId(int row) {
+        return granularityContextIds.getInt(row);
+    }
+
+    public int getKind(int row) {
+        return kinds.getInt(row);
+    }
+}
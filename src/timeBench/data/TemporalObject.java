@@ -1,6 +1,5 @@
 package timeBench.data;
 
-import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 
 import ieg.prefuse.data.ParentChildNode;
@@ -154,9 +153,9 @@ public class TemporalObject extends ParentChildNode {
     }
 
     /**
-     * Note, that you cannot unset a root object while iterating over roots.
-     * This would lead to a {@link ConcurrentModificationException}. Use
-     * {@link Iterator#remove()} instead.
+     * Sets or unsets this object as a root. Roots can be changed while
+     * iterating over {@link TemporalDataset#roots()}, which continues over
+     * the roots at its start.
      * 
      * @param root
      */
@@ -165,31 +164,34 @@ public class TemporalObject extends ParentChildNode {
     }
 
 	public Object getMin(int idx) {
-		return getMin(this.getColumnName(idx));
+		int minCol = getTemporalDataset().getMetadataColumns().getMinColumn(idx);
+		return (minCol >= 0) ? get(minCol) : null;
 	}
 
 	public void setMin(int idx, Object value) {
-		setMin(this.getColumnName(idx),value);
+		set(getTemporalDataset().getMetadataColumns().ensureMinColumn(idx), value);
 	}
 
 	public Object getMax(int idx) {
-		return getMax(this.getColumnName(idx));
+		int maxCol = getTemporalDataset().getMetadataColumns().getMaxColumn(idx);
+		return (maxCol >= 0) ? get(maxCol) : null;
 	}
 
 	public void setMax(int idx, Object value) {
-		setMax(this.getColumnName(idx),value);
+		set(getTemporalDataset().getMetadataColumns().ensureMaxColumn(idx), value);
 	}
 
 	public int getKind(int idx) {
-		return getKind(this.getColumnName(idx));
+		int kindCol = getTemporalDataset().getMetadataColumns().getKindColumn(idx);
+		return (kindCol >= 0) ? getInt(kindCol) : INVALID;
 	}
 
 	public void setKind(int idx, int value) {
-		setKind(this.getColumnName(idx),value);
+		setInt(getTemporalDataset().getMetadataColumns().ensureKindColumn(idx), value);
 	}
 	
 	public Object getMin(String field) {
-		String minField = field+".minValue";
+		String minField = field+MetadataColumns.MIN_SUFFIX;
 		if (getColumnIndex(minField) >= 0)
 			return this.get(minField);
 		else
@@ -197,13 +199,13 @@ public class TemporalObject extends ParentChildNode {
 	}
 	
 	public void setMin(String field, Object value) {
-		String minField = field+".minValue";
+		String minField = field+MetadataColumns.MIN_SUFFIX;
 		ensureFieldExistence(minField,m_table.getSchema().getColumnType(field));
 		set(minField,value);
 	}
 
 	public Object getMax(String field) {
-		String maxField = field+".maxValue";
+		String maxField = field+MetadataColumns.MAX_SUFFIX;
 		if (getColumnIndex(maxField) >= 0)
 			return get(maxField);
 		else
@@ -211,7 +213,7 @@ public class TemporalObject extends ParentChildNode {
 	}
 
 	public void setMax(String field, Object value) {
-		String maxField = field+".maxValue";
+		String maxField = field+MetadataColumns.MAX_SUFFIX;
 		ensureFieldExistence(maxField,m_table.getSchema().getColumnType(field));
 		set(maxField,value);
 	}
@@ -227,7 +229,7 @@ public class TemporalObject extends ParentChildNode {
 	public static final int TEMPLATE_ = 0x10;
 		
 	public int getKind(String field) {
-		String kindField = field+".kind";
+		String kindField = field+MetadataColumns.KIND_SUFFIX;
 		if (getColumnIndex(kindField) >= 0)
 			return getInt(kindField);
 		else
@@ -235,7 +237,7 @@ public class TemporalObject extends ParentChildNode {
 	}
 	
 	public void setKind(String field, int value) {
-		String kindField = field+".kind";
+		String kindField = field+MetadataColumns.KIND_SUFFIX;
 		ensureFieldExistence(kindField,m_table.getSchema().getColumnType(field));
 		setInt(kindField,value);
 	}
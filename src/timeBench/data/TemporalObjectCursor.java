@@ -0,0 +1,279 @@
+package timeBench.data;
+
+import java.util.NoSuchElementException;
+
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.expression.Predicate;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * Cursor that moves over the temporal objects of a {@link TemporalDataset}
+ * and reads their values directly from the underlying tables. In contrast to
+ * {@link TemporalDataset#temporalObjects()}, no proxy tuple is looked up or
+ * created per step, neither for the temporal object nor for its temporal
+ * element. The cursor itself can be reused by {@link #reset()}.
+ *
+ * <p>
+ * Example:
+ *
+ * <pre>
+ * TemporalObjectCursor cursor = dataset.cursor();
+ * while (cursor.next()) {
+ *     sum += cursor.getDouble(col) * (cursor.getSup() - cursor.getInf());
+ * }
+ * </pre>
+ *
+ * <p>
+ * The temporal dataset must not be modified while the cursor is in use.
+ */
+public class TemporalObjectCursor {
+
+    private final TemporalDataset dataset;
+    private final TemporalElementStore store;
+    private final Table objects;
+    private final Predicate filter;
+
+    private final Column idColumn;
+    private final Column elementIdColumn;
+
+    private IntIterator rows;
+    private int row = -1;
+
+    /**
+     * temporal element row of the current object, resolved on demand
+     */
+    private int elementRow = -1;
+    private boolean elementResolved = false;
+
+    /**
+     * Create a cursor over the temporal objects of a dataset.
+     *
+     * @param dataset
+     *            the temporal dataset
+     * @param filter
+     *            predicate for temporal objects to include or <tt>null</tt>
+     *            to include all temporal objects
+     */
+    public TemporalObjectCursor(TemporalDataset dataset, Predicate filter) {
+        this.dataset = dataset;
+        this.store = dataset.getTemporalElements();
+        this.objects = dataset.getTemporalObjectTable();
+        this.filter = filter;
+        this.idColumn = objects.getColumn(TemporalObject.ID);
+        this.elementIdColumn = objects
+                .getColumn(TemporalObject.TEMPORAL_ELEMENT_ID);
+        reset();
+    }
+
+    /**
+     * Move the cursor before the first temporal object, so that it can be
+     * used for another pass.
+     */
+    public void reset() {
+        this.rows = (filter == null) ? objects.rows() : objects.rows(filter);
+        this.row = -1;
+        this.elementResolved = false;
+    }
+
+    /**
+     * Check whether there are more temporal objects.
+     *
+     * @return <tt>true</tt> if {@link #next()} will move to another object
+     */
+    public boolean hasNext() {
+        return rows.hasNext();
+    }
+
+    /**
+     * Move the cursor to the next temporal object.
+     *
+     * @return <tt>true</tt> if the cursor is on a temporal object,
+     *         <tt>false</tt> if there are no more temporal objects
+     */
+    public boolean next() {
+        elementResolved = false;
+        if (rows.hasNext()) {
+            row = rows.nextInt();
+            return true;
+        } else {
+            row = -1;
+            return false;
+        }
+    }
+
+    // ----- TEMPORAL OBJECT ACCESSORS -----
+
+    /**
+     * Get the row of the current temporal object.
+     *
+     * @return the temporal object table row number
+     */
+    public int getRow() {
+        checkRow();
+        return row;
+    }
+
+    /**
+     * Get the id of the current temporal object.
+     *
+     * @return the temporal object id
+     */
+    public long getId() {
+        checkRow();
+        return idColumn.getLong(row);
+    }
+
+    /**
+     * Get the id of the temporal element of the current temporal object.
+     *
+     * @return the temporal element id
+     */
+    public long getElementId() {
+        checkRow();
+        return elementIdColumn.getLong(row);
+    }
+
+    /**
+     * Get a data value of the current temporal object as a double.
+     *
+     * @param col
+     *            the column index in the temporal object table
+     * @return the value of the column in the current row
+     */
+    public double getDouble(int col) {
+        checkRow();
+        return objects.getDouble(row, col);
+    }
+
+    /**
+     * Get a data value of the current temporal object as a long.
+     *
+     * @param col
+     *            the column index in the temporal object table
+     * @return the value of the column in the current row
+     */
+    public long getLong(int col) {
+        checkRow();
+        return objects.getLong(row, col);
+    }
+
+    /**
+     * Get a data value of the current temporal object as an int.
+     *
+     * @param col
+     *            the column index in the temporal object table
+     * @return the value of the column in the current row
+     */
+    public int getInt(int col) {
+        checkRow();
+        return objects.getInt(row, col);
+    }
+
+    /**
+     * Get a data value of the current temporal object. Primitive values are
+     * boxed.
+     *
+     * @param col
+     *            the column index in the temporal object table
+     * @return the value of the column in the current row
+     */
+    public Object get(int col) {
+        checkRow();
+        return objects.get(row, col);
+    }
+
+    /**
+     * Get a proxy tuple for the current temporal object. This is not
+     * allocation-free and is intended for rare cases only.
+     *
+     * @return the proxy tuple of the current temporal object
+     */
+    public TemporalObject getTemporalObject() {
+        checkRow();
+        return (TemporalObject) dataset.getNode(row);
+    }
+
+    // ----- TEMPORAL ELEMENT ACCESSORS -----
+
+    /**
+     * Get the row of the temporal element of the current temporal object.
+     *
+     * @return the temporal element table row number or -1 if the element
+     *         does not exist
+     */
+    public int getElementRow() {
+        checkRow();
+        if (!elementResolved) {
+            elementRow = store.getTemporalElementRow(elementIdColumn
+                    .getLong(row));
+            elementResolved = true;
+        }
+        return elementRow;
+    }
+
+    /**
+     * Get the lower end of the temporal element of the current temporal
+     * object.
+     *
+     * @return the lower end (inf) in milliseconds
+     */
+    public long getInf() {
+        return store.getInf(checkElementRow());
+    }
+
+    /**
+     * Get the upper end of the temporal element of the current temporal
+     * object.
+     *
+     * @return the upper end (sup) in milliseconds
+     */
+    public long getSup() {
+        return store.getSup(checkElementRow());
+    }
+
+    /**
+     * Get the granularity id of the temporal element of the current temporal
+     * object.
+     *
+     * @return the granularity id
+     */
+    public int getGranularityId() {
+        return store.getGranularityId(checkElementRow());
+    }
+
+    /**
+     * Get the granularity context id of the temporal element of the current
+     * temporal object.
+     *
+     * @return the granularity context id
+     */
+    public int getGranularityContextId() {
+        return store.getGranularityContextId(checkElementRow());
+    }
+
+    /**
+     * Get the kind of the temporal element of the current temporal object.
+     *
+     * @return the kind (e.g., {@link TemporalElementStore#PRIMITIVE_INSTANT})
+     */
+    public int getKind() {
+        return store.getKind(checkElementRow());
+    }
+
+    private void checkRow() {
+        if (row < 0) {
+            throw new NoSuchElementException(
+                    "Cursor is not on a temporal object.");
+        }
+    }
+
+    private int checkElementRow() {
+        int elRow = getElementRow();
+        if (elRow < 0) {
+            throw new NoSuchElementException(
+                    "Temporal element of the temporal object does not exist.");
+        }
+        return elRow;
+    }
+}
@@ -7,9 +7,14 @@ import prefuse.data.Table;
 import prefuse.data.Tuple;
 import prefuse.data.column.Column;
 import prefuse.data.column.ExpressionColumn;
+import prefuse.data.event.EventConstants;
 import prefuse.data.expression.ColumnExpression;
 import prefuse.data.expression.ExpressionVisitor;
 import timeBench.data.expression.TemporalExpression;
+import timeBench.data.util.DictionaryColumn;
+import timeBench.data.util.DoubleArrayColumn;
+import timeBench.data.util.IntArrayColumn;
+import timeBench.data.util.LongArrayColumn;
 
 /**
  * Minimal prefuse data structure for time-oriented data. This is internally
@@ -22,14 +27,87 @@ public class TemporalTable extends Table {
     
     public static final String ID_POSTFIX = "_id";
 
+    private final DeferredTableEvents batch = new DeferredTableEvents() {
+        @Override
+        protected void fire(int row0, int row1, int col, int type) {
+            TemporalTable.super.fireTableEvent(row0, row1, col, type);
+        }
+    };
+
     public void addTemporalColumn(String name, TemporalElementStore store) {
         String idColumn = TemporalTable.idColumnNameFor(name);
-        this.addColumn(idColumn, long.class, -1l);
+        // primitive array column can be filled in batches without events
+        this.addColumn(idColumn, new LongArrayColumn(-1l));
         this.addColumn(name, new TemporalColumn(this, idColumn, store));
         store.register(this, idColumn);
         // index idColumn -> done by store.register(...)
     }
 
+    /**
+     * Add a column with the given name to the table.
+     * 
+     * @param name
+     *            the data field name for the column
+     * @param col
+     *            the actual Column instance
+     */
+    @Override
+    public void addColumn(String name, Column col) {
+        super.addColumn(name, col);
+    }
+
+    /**
+     * Add a column with the given name and data type to the table. Columns of
+     * type <tt>long</tt>, <tt>int</tt>, and <tt>double</tt> are backed by
+     * primitive arrays, which can be shared with snapshots of the table.
+     * 
+     * @param name
+     *            the data field name for the column
+     * @param type
+     *            the data type, as a Java Class, for the column
+     * @param defaultValue
+     *            the default value for column data values
+     */
+    @Override
+    public void addColumn(String name,
+            @SuppressWarnings("rawtypes") Class type, Object defaultValue) {
+        if (defaultValue == null || defaultValue instanceof Number) {
+            int nrows = super.getMaximumRow() + 1;
+            int capacity = Math.max(nrows, 16);
+            Number def = (defaultValue == null) ? Integer.valueOf(0)
+                    : (Number) defaultValue;
+            if (type == long.class) {
+                addColumn(name, new LongArrayColumn(nrows, capacity,
+                        def.longValue()));
+                return;
+            } else if (type == int.class) {
+                addColumn(name, new IntArrayColumn(nrows, capacity,
+                        def.intValue()));
+                return;
+            } else if (type == double.class) {
+                addColumn(name, new DoubleArrayColumn(nrows, capacity,
+                        def.doubleValue()));
+                return;
+            }
+        }
+        super.addColumn(name, type, defaultValue);
+    }
+
+    /**
+     * Add a dictionary-encoded string column (see {@link DictionaryColumn})
+     * with the given name to the table.
+     * 
+     * @param name
+     *            the data field name for the column
+     * @param defaultValue
+     *            the default value for column data values
+     */
+    void addDictionaryColumn(String name, String defaultValue) {
+        int nrows = super.getMaximumRow() + 1;
+        addColumn(name, new DictionaryColumn(nrows, Math.max(nrows, 16),
+                defaultValue));
+    }
+
     @Override
     protected Column removeColumn(int idx) {
         Column col = this.getColumn(idx);
@@ -41,6 +119,86 @@ public class TemporalTable extends Table {
         return super.removeColumn(idx);
     }
     
+    /**
+     * Start a batch of row insertions. Until the matching {@link #endBatch()},
+     * insert events are collected instead of being passed to listeners.
+     * Within a batch, new rows must only be filled without column events
+     * (e.g., {@link LongArrayColumn#initLong(long, int)}).
+     */
+    void beginBatch() {
+        batch.begin();
+    }
+
+    /**
+     * End a batch of row insertions and fire one insert event per contiguous
+     * range of new rows.
+     */
+    void endBatch() {
+        batch.end();
+    }
+
+    /**
+     * Add rows in a batch. Columns are resized once for all rows instead of
+     * once per row, and within a batch the insert events are collected.
+     * 
+     * @param nrows
+     *            the number of rows to add
+     * @return the new rows (ascending unless free rows are reused)
+     */
+    int[] addBatchRows(int nrows) {
+        int[] rows = new int[nrows];
+        for (int i = 0; i < nrows; i++) {
+            rows[i] = m_rows.addRow();
+        }
+        updateRowCount();
+        // announce each range of consecutive rows by a single event
+        int first = 0;
+        for (int i = 1; i <= nrows; i++) {
+            if (i == nrows || rows[i] != rows[i - 1] + 1) {
+                fireTableEvent(rows[first], rows[i - 1],
+                        EventConstants.ALL_COLUMNS, EventConstants.INSERT);
+                first = i;
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    protected void fireTableEvent(int row0, int row1, int col, int type) {
+        // batch is not yet initialized while the super constructor runs
+        if (batch == null || !batch.defer(row0, row1, col, type)) {
+            super.fireTableEvent(row0, row1, col, type);
+        }
+    }
+
+    /**
+     * Get the row operations for renumbering the rows of this table in place
+     * (see {@link GraphCompactor}).
+     */
+    GraphCompactor.Rows compactionRows() {
+        return new GraphCompactor.Rows() {
+            @Override
+            void fire(int row0, int row1, int type) {
+                TemporalTable.super.fireTableEvent(row0, row1,
+                        EventConstants.ALL_COLUMNS, type);
+            }
+
+            @Override
+            void clear() {
+                m_rows.clear();
+            }
+
+            @Override
+            void reset(int nrows) {
+                for (int i = 0; i < nrows; i++) {
+                    m_rows.addRow();
+                }
+                updateRowCount();
+                m_tuples.invalidateAll();
+            }
+        };
+    }
+
     /**
      * Yields the name of the column storing the {@link TemporalElement#ID} for
      * a given TemporalColumn.
@@ -0,0 +1,69 @@
+package timeBench.data.expression;
+
+import prefuse.data.Table;
+import prefuse.data.Tuple;
+import prefuse.data.column.Column;
+import prefuse.data.expression.ColumnExpression;
+import prefuse.data.expression.ComparisonPredicate;
+import prefuse.data.expression.Expression;
+import prefuse.data.expression.NumericLiteral;
+import prefuse.data.expression.ObjectLiteral;
+import timeBench.data.util.DictionaryColumn;
+
+/**
+ * Predicate that indicates if a data field equals a given value. On a
+ * {@link DictionaryColumn} the value is looked up in the dictionary of the
+ * tuple's column and rows are compared by their int codes; on other columns
+ * the comparison of {@link ComparisonPredicate} applies, where a numeric
+ * value is a {@link NumericLiteral} (i.e., numbers of different types are
+ * compared by value). It extends
+ * {@link ComparisonPredicate} to use index optimizations in
+ * {@link prefuse.data.util.FilterIteratorFactory}.
+ */
+public class ColumnEqualsPredicate extends ComparisonPredicate {
+
+    private final String field;
+    private final Object value;
+
+    /**
+     * create a new ColumnEqualsPredicate
+     *
+     * @param field
+     *            the data field to compare
+     * @param value
+     *            the value to match by this predicate
+     */
+    public ColumnEqualsPredicate(String field, Object value) {
+        super(ComparisonPredicate.EQ, new ColumnExpression(field),
+                (value instanceof Number) ? new NumericLiteral(value)
+                        : new ObjectLiteral(value));
+        this.field = field;
+        this.value = value;
+    }
+
+    @Override
+    public boolean getBoolean(Tuple t) {
+        Table table = t.getTable();
+        Column col = (table == null) ? null : table.getColumn(field);
+        if (col instanceof DictionaryColumn
+                && (value == null || value instanceof String)) {
+            // a hash lookup per tuple, because tuples may come from different
+            // tables and dictionaries grow
+            DictionaryColumn dictionary = (DictionaryColumn) col;
+            int code = dictionary.getCode((String) value);
+            return code != DictionaryColumn.UNKNOWN_CODE
+                    && code == dictionary.getCode(t.getRow());
+        }
+        return super.getBoolean(t);
+    }
+
+    @Override
+    public void setLeftExpression(Expression e) {
+        throw new UnsupportedOperationException("readonly");
+    }
+
+    @Override
+    public void setRightExpression(Expression e) {
+        throw new UnsupportedOperationException("readonly");
+    }
+}
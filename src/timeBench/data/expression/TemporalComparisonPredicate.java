@@ -3,6 +3,7 @@ package timeBench.data.expression;
 import prefuse.data.Schema;
 import prefuse.data.Tuple;
 import prefuse.data.expression.BinaryExpression;
+import prefuse.data.expression.Expression;
 import prefuse.data.expression.Predicate;
 import timeBench.calendar.Granularity;
 import timeBench.calendar.Granule;
@@ -48,6 +49,93 @@ public class TemporalComparisonPredicate extends BinaryExpression implements Pre
 		return boolean.class;
 	}
 	
+	/**
+	 * Get an interval that the temporal element of every matching tuple
+	 * overlaps, so that temporal objects outside of it can be pruned (e.g., by
+	 * {@link timeBench.data.PartitionedTemporalDataset}). Bounds are derived
+	 * if the temporal element of the tuple (optionally shifted) is compared to
+	 * a fixed array of anchored temporal elements, for the comparisons of
+	 * anchored temporal elements.
+	 * 
+	 * @return the lower and the upper end of the interval or <tt>null</tt> if
+	 *         no bounds can be derived
+	 */
+	public long[] getBounds() {
+		long shift = 0;
+		Expression template = m_left;
+		if (template instanceof TemporalShiftExpression) {
+			shift = ((TemporalShiftExpression) template).getShiftChronons();
+			template = ((TemporalShiftExpression) template).getTemporalElementExpression();
+		}
+		if (!(template instanceof TemporalElementExpression)
+				|| !(m_right instanceof TemporalElementArrayExpression))
+			return null;
+		TemporalElement[] history = (TemporalElement[]) m_right.get(null);
+		if (history.length == 0)
+			return null;
+		for (TemporalElement iTe : history) {
+			if (!iTe.isAnchored())
+				return null;
+		}
+
+		long lo;
+		long hi;
+		try {
+			long start = history[0].getFirstInstant().getInf();
+			long end = history[history.length-1].getLastInstant().getSup();
+			switch(m_op) {
+			case BEFORE:
+				if (end == Long.MAX_VALUE)
+					return null;
+				lo = end + 1;
+				hi = Long.MAX_VALUE;
+				break;
+			case AFTER:
+				if (start == Long.MIN_VALUE)
+					return null;
+				lo = Long.MIN_VALUE;
+				hi = start - 1;
+				break;
+			case STARTS:
+				lo = start;
+				hi = start;
+				break;
+			case FINISHES:
+				lo = end;
+				hi = end;
+				break;
+			case MEETS:
+				if (end == Long.MAX_VALUE)
+					return null;
+				lo = end + 1;
+				hi = end + 1;
+				break;
+			case DURING:
+				// the template covers the history
+				lo = start;
+				hi = end;
+				break;
+			default:
+				return null;
+			}
+		} catch (TemporalDataException e) {
+			return null;
+		}
+
+		// bounds apply to the shifted temporal element
+		return new long[] { unshift(lo, shift), unshift(hi, shift) };
+	}
+
+	private static long unshift(long bound, long shift) {
+		if (bound == Long.MIN_VALUE || bound == Long.MAX_VALUE)
+			return bound;
+		long result = bound - shift;
+		// saturate on overflow
+		if (((bound ^ shift) & (bound ^ result)) < 0)
+			return (shift > 0) ? Long.MIN_VALUE : Long.MAX_VALUE;
+		return result;
+	}
+
     @SuppressWarnings("unchecked")
 	public boolean getBoolean(Tuple t) {    	    
     	
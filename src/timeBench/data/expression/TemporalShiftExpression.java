@@ -23,7 +23,14 @@ public class TemporalShiftExpression extends TemporalExpression {
 	private TemporalElementExpression temporalElementExpression = null;
 	private TemporalElementArrayExpression temporalElementArrayExpression = null;
 	
-	private ArrayList<TemporalElement> createdHere = new ArrayList<TemporalElement>();
+	// temporary elements are created on the heap of the evaluating thread,
+	// so each thread keeps track of its own elements
+	private final ThreadLocal<ArrayList<TemporalElement>> createdHere = new ThreadLocal<ArrayList<TemporalElement>>() {
+		@Override
+		protected ArrayList<TemporalElement> initialValue() {
+			return new ArrayList<TemporalElement>();
+		}
+	};
 	
 	// did not add more possibilites because of "Lego brick" idea
 	// do get chronon count from granules or temporal elements, perhaps add total chronon output there
@@ -38,6 +45,22 @@ public class TemporalShiftExpression extends TemporalExpression {
 		this.temporalElementArrayExpression = temporalElementArrayExpression;
 	}
 	
+	/**
+	 * Get the expression of the shifted temporal element.
+	 * 
+	 * @return the expression or <tt>null</tt> if an array is shifted
+	 */
+	TemporalElementExpression getTemporalElementExpression() {
+		return temporalElementExpression;
+	}
+
+	/**
+	 * Get the number of chronons by which temporal elements are shifted.
+	 */
+	long getShiftChronons() {
+		return shiftChronons;
+	}
+
 	/* (non-Javadoc)
 	 * @see prefuse.data.expression.Expression#getType(prefuse.data.Schema)
 	 */
@@ -69,7 +92,7 @@ public class TemporalShiftExpression extends TemporalExpression {
 	private TemporalElement shift(GenericTemporalElement temporalElement,long shiftChronons) {			
 		TemporalElement result = TemporalElement.createOnHeap(temporalElement.getInf()+shiftChronons, temporalElement.getSup()+shiftChronons,
 				temporalElement.getGranularityId(), temporalElement.getGranularityContextId(), temporalElement.getKind());
-		createdHere.add(result);
+		createdHere.get().add(result);
 		
 		for (GenericTemporalElement iChild : temporalElement.childElements())
 			result.linkWithChild(shift(iChild,shiftChronons));
@@ -78,9 +101,12 @@ public class TemporalShiftExpression extends TemporalExpression {
 	}
 	
 	public void destroyTemporaryTemporalElements() {
-		for(TemporalElement iE : createdHere) {
-			iE.destroyFromHeap();
+		ArrayList<TemporalElement> created = createdHere.get();
+		for(TemporalElement iE : created) {
+			// skip elements already destroyed by TemporalElement.clearHeap()
+			if (iE.isValid())
+				iE.destroyFromHeap();
 		}
-		createdHere = new ArrayList<TemporalElement>();
+		created.clear();
 	}
 }
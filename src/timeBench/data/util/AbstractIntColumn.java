@@ -0,0 +1,118 @@
+package timeBench.data.util;
+
+import prefuse.data.DataTypeException;
+import prefuse.data.column.AbstractColumn;
+import prefuse.data.column.Column;
+
+/**
+ * Base class of columns that store int values and allow rows added in a
+ * batch to be filled without column events. Subclasses decide where the
+ * values are held.
+ *
+ * @see IntArrayColumn
+ * @see MappedIntColumn
+ */
+public abstract class AbstractIntColumn extends AbstractColumn {
+
+    /**
+     * Create a new column.
+     *
+     * @param defaultValue
+     *            the default value for new rows
+     */
+    protected AbstractIntColumn(int defaultValue) {
+        super(int.class, Integer.valueOf(defaultValue));
+    }
+
+    /**
+     * Get the default value for new rows.
+     */
+    protected int getDefaultInt() {
+        return ((Integer) m_defaultValue).intValue();
+    }
+
+    /**
+     * Set the value of a row without notifying listeners of this column. This
+     * is intended for rows that are added in a batch and whose insertion has
+     * not been announced to table listeners yet, so that indices pick up the
+     * final value from the insert event.
+     *
+     * @param val
+     *            the value to set
+     * @param row
+     *            the row to set
+     */
+    public abstract void initInt(int val, int row);
+
+    /**
+     * Set the values of consecutive rows to the values of the given rows of
+     * another column without notifying listeners of this column (see
+     * {@link #initInt(int, int)}).
+     *
+     * @param source
+     *            the column to copy from
+     * @param sourceRows
+     *            the rows of the source column
+     * @param row
+     *            the first row to set
+     */
+    public void initValues(Column source, int[] sourceRows, int row) {
+        int n = sourceRows.length;
+        if (row < 0 || row + n > getRowCount()) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + (row + n - 1));
+        }
+        for (int i = 0; i < n; i++) {
+            initInt(source.getInt(sourceRows[i]), row + i);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    @Override
+    public Object get(int row) {
+        return Integer.valueOf(getInt(row));
+    }
+
+    @Override
+    public void set(Object val, int row) throws DataTypeException {
+        if (m_readOnly) {
+            throw new DataTypeException(this.getClass());
+        } else if (val != null) {
+            if (val instanceof Number) {
+                setInt(((Number) val).intValue(), row);
+            } else if (val instanceof String) {
+                setString((String) val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+
+    @Override
+    public abstract int getInt(int row) throws DataTypeException;
+
+    @Override
+    public abstract void setInt(int val, int row) throws DataTypeException;
+
+    @Override
+    public long getLong(int row) throws DataTypeException {
+        return getInt(row);
+    }
+
+    @Override
+    public float getFloat(int row) throws DataTypeException {
+        return (float) getInt(row);
+    }
+
+    @Override
+    public double getDouble(int row) throws DataTypeException {
+        return (double) getInt(row);
+    }
+}
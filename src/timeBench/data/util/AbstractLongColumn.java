@@ -0,0 +1,118 @@
+package timeBench.data.util;
+
+import prefuse.data.DataTypeException;
+import prefuse.data.column.AbstractColumn;
+import prefuse.data.column.Column;
+
+/**
+ * Base class of columns that store long values and allow rows added in a
+ * batch to be filled without column events. Subclasses decide where the
+ * values are held.
+ *
+ * @see LongArrayColumn
+ * @see MappedLongColumn
+ */
+public abstract class AbstractLongColumn extends AbstractColumn {
+
+    /**
+     * Create a new column.
+     *
+     * @param defaultValue
+     *            the default value for new rows
+     */
+    protected AbstractLongColumn(long defaultValue) {
+        super(long.class, Long.valueOf(defaultValue));
+    }
+
+    /**
+     * Get the default value for new rows.
+     */
+    protected long getDefaultLong() {
+        return ((Long) m_defaultValue).longValue();
+    }
+
+    /**
+     * Set the value of a row without notifying listeners of this column. This
+     * is intended for rows that are added in a batch and whose insertion has
+     * not been announced to table listeners yet, so that indices pick up the
+     * final value from the insert event.
+     *
+     * @param val
+     *            the value to set
+     * @param row
+     *            the row to set
+     */
+    public abstract void initLong(long val, int row);
+
+    /**
+     * Set the values of consecutive rows to the values of the given rows of
+     * another column without notifying listeners of this column (see
+     * {@link #initLong(long, int)}).
+     *
+     * @param source
+     *            the column to copy from
+     * @param sourceRows
+     *            the rows of the source column
+     * @param row
+     *            the first row to set
+     */
+    public void initValues(Column source, int[] sourceRows, int row) {
+        int n = sourceRows.length;
+        if (row < 0 || row + n > getRowCount()) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + (row + n - 1));
+        }
+        for (int i = 0; i < n; i++) {
+            initLong(source.getLong(sourceRows[i]), row + i);
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    @Override
+    public Object get(int row) {
+        return Long.valueOf(getLong(row));
+    }
+
+    @Override
+    public void set(Object val, int row) throws DataTypeException {
+        if (m_readOnly) {
+            throw new DataTypeException(this.getClass());
+        } else if (val != null) {
+            if (val instanceof Number) {
+                setLong(((Number) val).longValue(), row);
+            } else if (val instanceof String) {
+                setString((String) val, row);
+            } else {
+                throw new DataTypeException(val.getClass());
+            }
+        } else {
+            throw new DataTypeException("Column does not accept null values");
+        }
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+
+    @Override
+    public abstract long getLong(int row) throws DataTypeException;
+
+    @Override
+    public abstract void setLong(long val, int row) throws DataTypeException;
+
+    @Override
+    public int getInt(int row) throws DataTypeException {
+        return (int) getLong(row);
+    }
+
+    @Override
+    public float getFloat(int row) throws DataTypeException {
+        return (float) getLong(row);
+    }
+
+    @Override
+    public double getDouble(int row) throws DataTypeException {
+        return (double) getLong(row);
+    }
+}
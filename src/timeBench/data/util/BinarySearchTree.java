@@ -216,11 +216,23 @@ abstract class BinarySearchTree
      * tree, or the sentinel <code>nil</code> if the tree is empty.
      */
     protected int treeMinimum(Node x)
+    {
+	return treeMinimumNode(x).row;
+    }
+
+    /**
+     * Returns the node with the minimum key in the subtree rooted at
+     * a node.
+     *
+     * @param x Root of the subtree.
+     * @return The node with the minimum key in the subtree.
+     */
+    protected Node treeMinimumNode(Node x)
     {
 	while (x.left != nil)
 	    x = x.left;
 
-	return x.row;
+	return x;
     }
 
     /**
@@ -243,11 +255,23 @@ abstract class BinarySearchTree
      * tree, or the sentinel <code>nil</code> if the tree is empty.
      */
     protected int treeMaximum(Node x)
+    {
+	return treeMaximumNode(x).row;
+    }
+
+    /**
+     * Returns the node with the maximum key in the subtree rooted at
+     * a node.
+     *
+     * @param x Root of the subtree.
+     * @return The node with the maximum key in the subtree.
+     */
+    protected Node treeMaximumNode(Node x)
     {
 	while (x.right != nil)
 	    x = x.right;
 
-	return x.row;
+	return x;
     }
 
 
@@ -264,7 +288,7 @@ abstract class BinarySearchTree
 	Node x = (Node) node;
 	
 	if (x.right != nil)
-	    return treeMinimum(x.right);
+	    return treeMinimumNode(x.right);
 
 	Node y = x.parent;
 	while (y != nil && x == y.right) {
@@ -288,7 +312,7 @@ abstract class BinarySearchTree
 	Node x = (Node) node;
 
 	if (x.left != nil)
-	    return treeMaximum(x.left);
+	    return treeMaximumNode(x.left);
 
 	Node y = x.parent;
 	while (y != nil && x == y.left) {
@@ -0,0 +1,270 @@
+package timeBench.data.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import prefuse.data.DataTypeException;
+import prefuse.data.column.AbstractColumn;
+import prefuse.data.column.Column;
+
+/**
+ * Column instance for storing strings as int codes into a shared dictionary.
+ * Each distinct string is stored once, which saves memory for repetitive
+ * values such as labels or categories.
+ *
+ * <p>
+ * Codes are assigned in the order strings are first set and are never
+ * reassigned, even if no row uses a string anymore. Thus, rows can be grouped
+ * or compared by {@link #getCode(int)} instead of {@link String#equals}.
+ * <tt>null</tt> is stored as {@link #NULL_CODE}.
+ *
+ * @see timeBench.data.expression.ColumnEqualsPredicate
+ */
+public class DictionaryColumn extends AbstractColumn {
+
+    /**
+     * code of <tt>null</tt> values
+     */
+    public static final int NULL_CODE = -1;
+
+    /**
+     * code returned for strings that are not in the dictionary
+     */
+    public static final int UNKNOWN_CODE = -2;
+
+    private final IntArrayColumn codes;
+    private final int defaultCode;
+
+    /**
+     * strings by code; entries are only appended, so that snapshots can
+     * share the array
+     */
+    private String[] dictionary = new String[16];
+    private int dictionarySize = 0;
+    private final HashMap<String, Integer> lookup = new HashMap<String, Integer>();
+
+    /**
+     * Create a new, empty DictionaryColumn.
+     *
+     * @param defaultValue
+     *            the default value for new rows
+     */
+    public DictionaryColumn(String defaultValue) {
+        this(0, 16, defaultValue);
+    }
+
+    /**
+     * Create a new DictionaryColumn.
+     *
+     * @param nrows
+     *            the initial size of the column
+     * @param capacity
+     *            the initial capacity of the column
+     * @param defaultValue
+     *            the default value for new rows
+     */
+    public DictionaryColumn(int nrows, int capacity, String defaultValue) {
+        super(String.class, defaultValue);
+        if (capacity < nrows) {
+            throw new IllegalArgumentException(
+                    "Capacity value can not be less than the row count.");
+        }
+        defaultCode = encode(defaultValue);
+        codes = new IntArrayColumn(nrows, capacity, defaultCode);
+    }
+
+    // ------------------------------------------------------------------------
+    // Column Metadata
+
+    @Override
+    public int getRowCount() {
+        return codes.getRowCount();
+    }
+
+    @Override
+    public void setMaximumRow(int nrows) {
+        codes.setMaximumRow(nrows);
+    }
+
+    /**
+     * Get the number of rows the column can hold without growing.
+     */
+    int capacity() {
+        return codes.capacity();
+    }
+
+    /**
+     * Get the code segments for a read-only snapshot of the current rows (see
+     * {@link IntArrayColumn#shareValues()}). The strings of the codes are
+     * found in {@link #shareDictionary()}.
+     *
+     * @return the code segments, whose first {@link #getRowCount()} rows
+     *         remain unchanged
+     */
+    public int[][] shareCodes() {
+        return codes.shareValues();
+    }
+
+    /**
+     * Get the dictionary for a read-only snapshot. Strings are only appended
+     * to the dictionary, so that the first {@link #getDictionarySize()}
+     * entries remain unchanged.
+     *
+     * @return the strings by code
+     */
+    public String[] shareDictionary() {
+        return dictionary;
+    }
+
+    // ------------------------------------------------------------------------
+    // Dictionary
+
+    /**
+     * Get the number of distinct strings in the dictionary.
+     *
+     * @return the number of codes
+     */
+    public int getDictionarySize() {
+        return dictionarySize;
+    }
+
+    /**
+     * Get the string of a code.
+     *
+     * @param code
+     *            the code
+     * @return the string or <tt>null</tt> for {@link #NULL_CODE}
+     */
+    public String getValue(int code) {
+        if (code < NULL_CODE || code >= dictionarySize) {
+            throw new IllegalArgumentException("Unknown code: " + code);
+        }
+        return (code == NULL_CODE) ? null : dictionary[code];
+    }
+
+    /**
+     * Look up the code of a string without adding it to the dictionary.
+     *
+     * @param value
+     *            the string
+     * @return the code, {@link #NULL_CODE} for <tt>null</tt>, or
+     *         {@link #UNKNOWN_CODE} if the string is not in the dictionary
+     */
+    public int getCode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = lookup.get(value);
+        return (code == null) ? UNKNOWN_CODE : code.intValue();
+    }
+
+    private int encode(String value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = lookup.get(value);
+        if (code == null) {
+            if (dictionarySize == dictionary.length) {
+                // snapshots keep the previous array
+                dictionary = Arrays.copyOf(dictionary, 2 * dictionarySize);
+            }
+            code = Integer.valueOf(dictionarySize);
+            dictionary[dictionarySize++] = value;
+            lookup.put(value, code);
+        }
+        return code.intValue();
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Access Methods
+
+    /**
+     * Get the code of the string in a row.
+     *
+     * @param row
+     *            the row
+     * @return the code or {@link #NULL_CODE}
+     */
+    public int getCode(int row) {
+        return codes.getInt(row);
+    }
+
+    @Override
+    public Object get(int row) {
+        return getValue(getCode(row));
+    }
+
+    @Override
+    public void set(Object val, int row) throws DataTypeException {
+        if (m_readOnly) {
+            throw new DataTypeException(this.getClass());
+        } else if (val != null && !(val instanceof String)) {
+            throw new DataTypeException(val.getClass());
+        }
+        // get the previous value
+        int prev = codes.getInt(row);
+        int code = encode((String) val);
+
+        // exit early if no change
+        if (prev == code)
+            return;
+
+        // set the new value
+        codes.initInt(code, row);
+
+        // fire a change event
+        fireColumnEvent(row, getValue(prev));
+    }
+
+    /**
+     * Set the values of consecutive rows to the values of the given rows of
+     * another column without notifying listeners of this column. This is
+     * intended for rows that are added in a batch and whose insertion has not
+     * been announced to table listeners yet. Codes of another dictionary
+     * column are translated once per distinct string.
+     * 
+     * @param source
+     *            the column to copy from
+     * @param sourceRows
+     *            the rows of the source column
+     * @param row
+     *            the first row to set
+     */
+    public void initValues(Column source, int[] sourceRows, int row) {
+        int n = sourceRows.length;
+        if (row < 0 || row + n > getRowCount()) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + (row + n - 1));
+        }
+        if (source instanceof DictionaryColumn) {
+            DictionaryColumn dc = (DictionaryColumn) source;
+            int[] map = new int[dc.getDictionarySize()];
+            Arrays.fill(map, UNKNOWN_CODE);
+            for (int i = 0; i < n; i++) {
+                int code = dc.getCode(sourceRows[i]);
+                if (code != NULL_CODE) {
+                    if (map[code] == UNKNOWN_CODE) {
+                        map[code] = encode(dc.getValue(code));
+                    }
+                    code = map[code];
+                }
+                codes.initInt(code, row + i);
+            }
+        } else {
+            for (int i = 0; i < n; i++) {
+                codes.initInt(encode(source.getString(sourceRows[i])),
+                        row + i);
+            }
+        }
+    }
+
+    @Override
+    public String getString(int row) throws DataTypeException {
+        return (String) get(row);
+    }
+
+    @Override
+    public void setString(String val, int row) throws DataTypeException {
+        set(val, row);
+    }
+}
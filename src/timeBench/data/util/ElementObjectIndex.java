@@ -0,0 +1,389 @@
+package timeBench.data.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
+import prefuse.util.collections.IntIntTreeMap;
+import prefuse.util.collections.IntIterator;
+import timeBench.data.TemporalElement;
+import timeBench.data.TemporalElementStore;
+
+/**
+ * Reverse index from temporal elements to the rows of a table (e.g., temporal
+ * objects) that reference them by an id column. The index is stored in
+ * compressed sparse row (CSR) format: the rows referencing the element in row
+ * <tt>e</tt> are <tt>objectRows[offsets[e]]</tt> to
+ * <tt>objectRows[offsets[e + 1] - 1]</tt>.
+ *
+ * <p>
+ * Rows inserted after the CSR arrays were built are kept in a small sorted
+ * delta, rows removed since are masked out. When these changes become large,
+ * or when temporal elements are removed or change their id, the arrays are
+ * rebuilt on the next lookup in linear time.
+ */
+public class ElementObjectIndex {
+
+    /**
+     * minimal number of changes since the last build that cause a rebuild
+     */
+    private static final int MIN_REBUILD_CHANGES = 1024;
+
+    private static final int NONE = -1;
+    private static final int UNRESOLVED = -2;
+
+    private static final int[] EMPTY = new int[0];
+
+    private final TemporalElementStore store;
+    private final Table table;
+    private final String field;
+    private final Column idColumn;
+    private final long unset;
+
+    private final Listener objectListener = new Listener();
+    private final ElementListener elementListener = new ElementListener();
+
+    // CSR arrays
+    private int[] offsets = new int[] { 0 };
+    private int[] objectRows = EMPTY;
+    private int elementRowCount = 0;
+
+    /**
+     * element row under which an object row is indexed, {@link #NONE} or
+     * {@link #UNRESOLVED}
+     */
+    private int[] objectElement = EMPTY;
+
+    /**
+     * object rows that are valid in the CSR arrays
+     */
+    private BitSet inCsr = new BitSet();
+
+    /**
+     * object rows indexed since the last build (element row -> object row)
+     */
+    private IntIntTreeMap added = new IntIntTreeMap(true);
+    private int changes = 0;
+
+    /**
+     * number of object rows, whose element id did not resolve to an element
+     */
+    private int unresolved = 0;
+
+    private boolean stale = true;
+
+    /**
+     * Create a reverse index for a table referencing temporal elements.
+     *
+     * @param store
+     *            the temporal element store
+     * @param table
+     *            the referencing table
+     * @param field
+     *            the column of the referencing table that contains
+     *            {@link TemporalElement#ID}s
+     */
+    public ElementObjectIndex(TemporalElementStore store, Table table,
+            String field) {
+        this.store = store;
+        this.table = table;
+        this.field = field;
+        this.idColumn = table.getColumn(field);
+        this.unset = ((Number) idColumn.getDefaultValue()).longValue();
+
+        table.addTableListener(objectListener);
+        store.getNodeTable().addTableListener(elementListener);
+    }
+
+    /**
+     * Detach the index from the tables. The index must not be used
+     * afterwards.
+     */
+    public void dispose() {
+        table.removeTableListener(objectListener);
+        store.getNodeTable().removeTableListener(elementListener);
+    }
+
+    public Table getTable() {
+        return table;
+    }
+
+    public String getField() {
+        return field;
+    }
+
+    /**
+     * Add the estimated memory usage of the index to a report.
+     *
+     * @param report
+     *            the report
+     * @param structure
+     *            the name of the index in the report
+     */
+    public void reportMemory(MemoryReport report, String structure) {
+        long bytes = MemoryReport.ARRAY_HEADER * 3 + 4l
+                * (offsets.length + objectRows.length + objectElement.length)
+                + inCsr.size() / 8 + (long) added.size()
+                * MemoryReport.MAP_ENTRY;
+        report.add(structure, field, objectRows.length + added.size(), bytes);
+    }
+
+    /**
+     * Get the rows referencing the temporal element in the given row.
+     *
+     * @param elementRow
+     *            temporal element table row number
+     * @return the rows of the referencing table in ascending order; an empty
+     *         array if there are none
+     */
+    public int[] rows(int elementRow) {
+        if (stale) {
+            rebuild();
+        }
+
+        int from = 0;
+        int to = 0;
+        if (elementRow >= 0 && elementRow < elementRowCount) {
+            from = offsets[elementRow];
+            to = offsets[elementRow + 1];
+        }
+
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (inCsr.get(objectRows[i])) {
+                count++;
+            }
+        }
+
+        int[] result;
+        if (added.size() == 0) {
+            if (count == 0) {
+                return EMPTY;
+            }
+            result = new int[count];
+            int j = 0;
+            for (int i = from; i < to; i++) {
+                if (inCsr.get(objectRows[i])) {
+                    result[j++] = objectRows[i];
+                }
+            }
+            return result;
+        }
+
+        // merge CSR segment and delta
+        result = new int[count + 4];
+        int j = 0;
+        for (int i = from; i < to; i++) {
+            if (inCsr.get(objectRows[i])) {
+                result[j++] = objectRows[i];
+            }
+        }
+        IntIterator delta = added.valueRangeIterator(elementRow, true,
+                elementRow, true);
+        while (delta.hasNext()) {
+            if (j == result.length) {
+                result = Arrays.copyOf(result, result.length * 2);
+            }
+            result[j++] = delta.nextInt();
+        }
+        if (j == 0) {
+            return EMPTY;
+        }
+        if (j > count) {
+            Arrays.sort(result, 0, j);
+        }
+        return (j == result.length) ? result : Arrays.copyOf(result, j);
+    }
+
+    /**
+     * Get the rows referencing the temporal element with the given id.
+     *
+     * @param elementId
+     *            temporal element id
+     * @return the rows of the referencing table in ascending order; an empty
+     *         array if there are none
+     */
+    public int[] rowsById(long elementId) {
+        int elementRow = store.getTemporalElementRow(elementId);
+        return (elementRow < 0) ? EMPTY : rows(elementRow);
+    }
+
+    // ----- MAINTENANCE -----
+
+    /**
+     * Build the CSR arrays from scratch by counting sort.
+     */
+    private void rebuild() {
+        int maxObjectRow = table.getMaximumRow();
+        elementRowCount = store.getNodeTable().getMaximumRow() + 1;
+        objectElement = new int[Math.max(maxObjectRow + 1, 16)];
+        Arrays.fill(objectElement, NONE);
+        offsets = new int[elementRowCount + 1];
+        unresolved = 0;
+
+        // count references per element row
+        int total = 0;
+        IntIterator rows = table.rows();
+        while (rows.hasNext()) {
+            int row = rows.nextInt();
+            int elementRow = resolve(row);
+            objectElement[row] = elementRow;
+            if (elementRow >= 0) {
+                offsets[elementRow + 1]++;
+                total++;
+            } else if (elementRow == UNRESOLVED) {
+                unresolved++;
+            }
+        }
+        for (int e = 0; e < elementRowCount; e++) {
+            offsets[e + 1] += offsets[e];
+        }
+
+        // place object rows (ascending within each element)
+        objectRows = new int[total];
+        int[] next = Arrays.copyOf(offsets, elementRowCount);
+        inCsr = new BitSet(maxObjectRow + 1);
+        for (int row = 0; row <= maxObjectRow; row++) {
+            int elementRow = objectElement[row];
+            if (elementRow >= 0) {
+                objectRows[next[elementRow]++] = row;
+                inCsr.set(row);
+            }
+        }
+
+        added = new IntIntTreeMap(true);
+        changes = 0;
+        stale = false;
+    }
+
+    /**
+     * Resolve the element row referenced by a row of the table.
+     */
+    private int resolve(int row) {
+        long id = idColumn.getLong(row);
+        if (id == unset) {
+            return NONE;
+        }
+        int elementRow = store.getTemporalElementRow(id);
+        return (elementRow < 0) ? UNRESOLVED : elementRow;
+    }
+
+    private void addObject(int row) {
+        if (row >= objectElement.length) {
+            int length = objectElement.length;
+            objectElement = Arrays.copyOf(objectElement,
+                    Math.max(row + 1, (3 * length) / 2 + 1));
+            Arrays.fill(objectElement, length, objectElement.length, NONE);
+        }
+        int elementRow = resolve(row);
+        objectElement[row] = elementRow;
+        if (elementRow >= 0) {
+            added.put(elementRow, row);
+            countChange();
+        } else if (elementRow == UNRESOLVED) {
+            unresolved++;
+        }
+    }
+
+    private void removeObject(int row) {
+        if (row >= objectElement.length) {
+            return;
+        }
+        int elementRow = objectElement[row];
+        if (inCsr.get(row)) {
+            inCsr.clear(row);
+            countChange();
+        } else if (elementRow >= 0) {
+            added.remove(elementRow, row);
+        } else if (elementRow == UNRESOLVED) {
+            unresolved--;
+        }
+        objectElement[row] = NONE;
+    }
+
+    private void countChange() {
+        if (++changes > Math.max(MIN_REBUILD_CHANGES, objectRows.length / 4)) {
+            stale = true;
+        }
+    }
+
+    /**
+     * Check whether any row is indexed under the given element row.
+     */
+    private boolean isReferenced(int elementRow) {
+        if (elementRow < elementRowCount) {
+            for (int i = offsets[elementRow]; i < offsets[elementRow + 1]; i++) {
+                if (inCsr.get(objectRows[i])) {
+                    return true;
+                }
+            }
+        }
+        return added.containsKey(elementRow);
+    }
+
+    /**
+     * Tracks inserted and deleted rows as well as changed element ids in the
+     * referencing table.
+     */
+    private class Listener implements TableListener {
+        @Override
+        public void tableChanged(Table t, int start, int end, int col, int type) {
+            if (stale) {
+                return;
+            }
+            if (col == EventConstants.ALL_COLUMNS) {
+                if (type == EventConstants.INSERT) {
+                    for (int r = start; r <= end; r++) {
+                        addObject(r);
+                    }
+                } else if (type == EventConstants.DELETE) {
+                    for (int r = start; r <= end; r++) {
+                        removeObject(r);
+                    }
+                }
+            } else if (type == EventConstants.UPDATE
+                    && t.getColumn(col) == idColumn) {
+                for (int r = start; r <= end; r++) {
+                    removeObject(r);
+                    addObject(r);
+                }
+            }
+        }
+    }
+
+    /**
+     * Invalidates the index if referenced temporal elements are removed or
+     * change their id. New elements invalidate the index only if there are
+     * references that could not be resolved.
+     */
+    private class ElementListener implements TableListener {
+        @Override
+        public void tableChanged(Table t, int start, int end, int col, int type) {
+            if (stale) {
+                return;
+            }
+            if (col == EventConstants.ALL_COLUMNS) {
+                if (type == EventConstants.DELETE) {
+                    // unreferenced elements leave only removed rows in the CSR
+                    for (int r = start; r <= end && !stale; r++) {
+                        stale = isReferenced(r);
+                    }
+                } else if (type == EventConstants.INSERT && unresolved > 0) {
+                    stale = true;
+                }
+            } else if (type == EventConstants.UPDATE
+                    && TemporalElement.ID.equals(t.getColumnName(col))) {
+                if (unresolved > 0) {
+                    stale = true;
+                } else {
+                    for (int r = start; r <= end && !stale; r++) {
+                        stale = isReferenced(r);
+                    }
+                }
+            }
+        }
+    }
+}
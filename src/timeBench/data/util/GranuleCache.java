@@ -55,6 +55,34 @@ public class GranuleCache {
         return (Granule[]) granules.get(row);
     }
 
+    /**
+     * Add the estimated memory usage of the cache to a report. Granules are
+     * counted with their boxed bounds and identifier; granularities and
+     * labels are not included.
+     * 
+     * @param report
+     *            the report
+     * @param structure
+     *            the name of the cache in the report
+     */
+    public void reportMemory(MemoryReport report, String structure) {
+        long granuleBytes = MemoryReport.OBJECT_HEADER + 6
+                * MemoryReport.REFERENCE + 3 * (MemoryReport.OBJECT_HEADER + 8);
+        int rows = granules.getRowCount();
+        int cached = 0;
+        long bytes = MemoryReport.ARRAY_HEADER + (long) rows
+                * MemoryReport.REFERENCE;
+        for (int row = 0; row < rows; row++) {
+            Granule[] value = (Granule[]) granules.get(row);
+            if (value != null) {
+                cached++;
+                bytes += MemoryReport.estimate(value) + value.length
+                        * granuleBytes;
+            }
+        }
+        report.add(structure, "granules", cached, bytes);
+    }
+
     public Granule getGranule(long id) throws TemporalDataException {
         GenericTemporalElement elem = tmpstr.getTemporalElement(id);
         return (elem != null) ? this.getGranule(elem.getRow()) : null;
@@ -0,0 +1,492 @@
+package timeBench.data.util;
+
+import java.util.Arrays;
+
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.data.event.ColumnListener;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
+import prefuse.data.util.Index;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * Index of table rows by a long id column, which also maintains a monotonic
+ * sequence of ids. As long as every id equals its row number plus a constant
+ * (e.g., ids assigned in insertion order), rows are computed without any
+ * array (<tt>row = id - delta</tt>). Otherwise, as long as ids are unique and
+ * dense, rows are resolved by an array offset (<tt>row = slots[id - base]</tt>).
+ * The array follows the range of ids in use, i.e., it is moved when ids are
+ * added at one end and removed at the other (e.g., a sliding window) and
+ * shrunk when most of it is empty. If an id is far outside the populated range
+ * or an id is used twice, the index falls back to a prefuse {@link Index} on
+ * the id column. It returns to the array once the ids in use are dense and
+ * unique again (e.g., after the outlier has been removed).
+ *
+ * <p>
+ * Rows whose id equals the default value of the column are considered not yet
+ * initialized and are not indexed. The existing rows are indexed on the first
+ * query, so that a large table (e.g., a memory-mapped one) can be opened
+ * without reading every id.
+ */
+public class IdIndex {
+
+    /**
+     * minimal range of ids that is kept in the array, irrespective of density
+     */
+    private static final int MIN_DENSE_SPAN = 1024;
+
+    /**
+     * maximal ratio of the id range to the number of indexed rows
+     */
+    private static final int MAX_SPARSENESS = 4;
+
+    private static final int NO_ROW = -1;
+
+    private final Table table;
+    private final String field;
+    private final Column column;
+    private final long unset;
+
+    /**
+     * <tt>true</tt> while all indexed ids equal row + {@link #delta}
+     */
+    private boolean aligned = true;
+    private long delta = 0l;
+
+    /**
+     * rows by id offset, {@link #NO_ROW} for unused ids
+     */
+    private int[] slots = null;
+    private long base = 0l;
+    private int size = 0;
+
+    /**
+     * smallest and largest id in the slot array
+     */
+    private long minId = Long.MAX_VALUE;
+    private long maxId = Long.MIN_VALUE;
+
+    /**
+     * largest id that was ever indexed
+     */
+    private long lastId = Long.MIN_VALUE;
+
+    /**
+     * index used for sparse or duplicate ids (<tt>null</tt> while dense)
+     */
+    private Index fallback = null;
+
+    /**
+     * <tt>true</tt> if the fallback index was created by this index and is
+     * removed from the table when it is no longer needed
+     */
+    private boolean ownsFallback = false;
+
+    /**
+     * number of removals in sparse mode until the next attempt to return to
+     * the slot array
+     */
+    private int removalsToRetry = 0;
+
+    /**
+     * number of rows while all rows are indexed again, 0 otherwise
+     */
+    private int reindexedRows = 0;
+
+    /**
+     * <tt>false</tt> until the existing rows have been indexed; changes are
+     * ignored until then
+     */
+    private boolean built = false;
+
+    /**
+     * Create an index on an id column of a table. Existing rows are indexed
+     * on the first query and subsequent changes are tracked by listeners.
+     *
+     * @param table
+     *            the table
+     * @param field
+     *            the name of the id column
+     */
+    public IdIndex(Table table, String field) {
+        this.table = table;
+        this.field = field;
+        this.column = table.getColumn(field);
+        this.unset = ((Number) column.getDefaultValue()).longValue();
+
+        Listener listener = new Listener();
+        table.addTableListener(listener);
+        column.addColumnListener(listener);
+    }
+
+    /**
+     * Get the row with the given id.
+     *
+     * @param id
+     *            the id to look up
+     * @return the row or {@link Integer#MIN_VALUE} if no row has this id (same
+     *         as {@link Index#get(long)})
+     */
+    public int get(long id) {
+        build();
+        if (fallback != null) {
+            return fallback.get(id);
+        }
+        if (aligned) {
+            long row = id - delta;
+            if (size > 0 && id != unset && row >= 0
+                    && row <= table.getMaximumRow()
+                    && table.isValidRow((int) row)
+                    && column.getLong((int) row) == id) {
+                return (int) row;
+            }
+            return Integer.MIN_VALUE;
+        }
+        long offset = id - base;
+        if (slots != null && offset >= 0 && offset < slots.length) {
+            int row = slots[(int) offset];
+            if (row != NO_ROW) {
+                return row;
+            }
+        }
+        return Integer.MIN_VALUE;
+    }
+
+    /**
+     * Get the number of indexed rows.
+     *
+     * @return the number of indexed rows
+     */
+    public int size() {
+        build();
+        return (fallback != null) ? fallback.size() : size;
+    }
+
+    /**
+     * Get the next id of the sequence, i.e., one more than the largest id
+     * that was ever indexed. Ids of removed rows are not reused.
+     *
+     * @param firstId
+     *            the id to return if no id has been indexed yet
+     * @return the next id
+     */
+    public long getNextId(long firstId) {
+        build();
+        return (lastId == Long.MIN_VALUE) ? firstId : lastId + 1;
+    }
+
+    /**
+     * Check whether ids are resolved by an array offset.
+     *
+     * @return <tt>true</tt> if the dense fast path is used
+     */
+    public boolean isDense() {
+        build();
+        return fallback == null;
+    }
+
+    /**
+     * Add the estimated memory usage of the index to a report.
+     *
+     * @param report
+     *            the report
+     * @param structure
+     *            the name of the index in the report
+     */
+    public void reportMemory(MemoryReport report, String structure) {
+        build();
+        if (fallback != null) {
+            report.add(structure, field, fallback.size(), (long) fallback
+                    .size() * MemoryReport.MAP_ENTRY);
+        } else {
+            report.add(structure, field, size, (slots == null) ? 0
+                    : MemoryReport.ARRAY_HEADER + 4l * slots.length);
+        }
+    }
+
+    /**
+     * Index the existing rows unless this has been done before and check
+     * whether the slot array can be used again.
+     */
+    private void build() {
+        if (!built) {
+            built = true;
+            reindex();
+        } else if (fallback != null && removalsToRetry == 0) {
+            toDense();
+        }
+    }
+
+    private void put(long id, int row) {
+        if (id == unset) {
+            return;
+        }
+        lastId = Math.max(lastId, id);
+        if (fallback != null) {
+            return; // the prefuse index tracks changes on its own
+        }
+        minId = Math.min(minId, id);
+        maxId = Math.max(maxId, id);
+        if (aligned) {
+            if (size == 0) {
+                delta = id - row;
+            }
+            if (id - row == delta) {
+                size++;
+                return;
+            }
+            toSlots();
+        }
+        if (!ensureSlot(id)) {
+            toSparse();
+            return;
+        }
+        int offset = (int) (id - base);
+        int prev = slots[offset];
+        if (prev == NO_ROW) {
+            slots[offset] = row;
+            size++;
+        } else if (prev != row) {
+            // duplicate id
+            toSparse();
+        }
+    }
+
+    private void remove(long id, int row) {
+        if (id == unset) {
+            return;
+        }
+        if (fallback != null) {
+            if (removalsToRetry > 0) {
+                removalsToRetry--;
+            }
+            return;
+        }
+        if (aligned) {
+            if (id - row == delta) {
+                size--;
+            }
+            return;
+        }
+        if (slots == null) {
+            return;
+        }
+        long offset = id - base;
+        if (offset >= 0 && offset < slots.length
+                && slots[(int) offset] == row) {
+            slots[(int) offset] = NO_ROW;
+            size--;
+            if (size == 0) {
+                slots = null;
+                minId = Long.MAX_VALUE;
+                maxId = Long.MIN_VALUE;
+                return;
+            }
+            // move the bounds to the next ids in use
+            if (id == minId) {
+                int o = (int) offset;
+                while (slots[o] == NO_ROW) {
+                    o++;
+                }
+                minId = base + o;
+            } else if (id == maxId) {
+                int o = (int) offset;
+                while (slots[o] == NO_ROW) {
+                    o--;
+                }
+                maxId = base + o;
+            }
+            if (slots.length > Math.max(MIN_DENSE_SPAN, 4l * (maxId - minId + 1))) {
+                resize();
+            }
+        }
+    }
+
+    /**
+     * Make sure the slot array covers the given id.
+     *
+     * @return <tt>false</tt> if the ids are too sparse for an array
+     */
+    private boolean ensureSlot(long id) {
+        if (slots == null) {
+            base = id;
+            slots = new int[MIN_DENSE_SPAN];
+            Arrays.fill(slots, NO_ROW);
+            return true;
+        }
+        if (id >= base && id - base < slots.length) {
+            return true;
+        }
+
+        long span = maxId - minId + 1;
+        if (span <= 0
+                || span > Math.max(MIN_DENSE_SPAN, MAX_SPARSENESS
+                        * Math.max((long) size + 1, reindexedRows)) || span > Integer.MAX_VALUE - 8) {
+            return false;
+        }
+
+        resize();
+        return true;
+    }
+
+    /**
+     * Move the slot array to start at the smallest id in use. The array grows
+     * if the ids in use do not fit and shrinks if most of it is empty;
+     * otherwise the slots are moved within the array.
+     */
+    private void resize() {
+        long span = maxId - minId + 1;
+        int capacity = slots.length;
+        if (span > capacity) {
+            capacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(span,
+                    (3l * capacity) / 2 + 1));
+        } else if (capacity > Math.max(MIN_DENSE_SPAN, 4l * span)) {
+            capacity = (int) Math.max(MIN_DENSE_SPAN, 2l * span);
+        }
+        int[] target = (capacity == slots.length) ? slots : new int[capacity];
+
+        // all rows in the old array have ids within the new range
+        long from = Math.max(base, minId);
+        long to = Math.min(base + slots.length, minId + capacity);
+        int length = (int) Math.max(0l, to - from);
+        int dst = (length > 0) ? (int) (from - minId) : 0;
+        if (length > 0) {
+            System.arraycopy(slots, (int) (from - base), target, dst, length);
+        }
+        Arrays.fill(target, 0, dst, NO_ROW);
+        Arrays.fill(target, dst + length, capacity, NO_ROW);
+        slots = target;
+        base = minId;
+    }
+
+    /**
+     * Switch from computed rows to the slot array by indexing all rows again.
+     */
+    private void toSlots() {
+        aligned = false;
+        size = 0;
+        minId = Long.MAX_VALUE;
+        maxId = Long.MIN_VALUE;
+        reindex();
+    }
+
+    /**
+     * Index all rows of the table. As rows are not necessarily visited in the
+     * order of their ids, the density of the ids is judged by the number of
+     * rows in the table instead of the number of rows indexed so far.
+     */
+    private void reindex() {
+        int prev = reindexedRows;
+        reindexedRows = table.getRowCount();
+        IntIterator rows = table.rows();
+        while (rows.hasNext()) {
+            int row = rows.nextInt();
+            put(column.getLong(row), row);
+        }
+        reindexedRows = prev;
+    }
+
+    private void toSparse() {
+        slots = null;
+        size = 0;
+        minId = Long.MAX_VALUE;
+        maxId = Long.MIN_VALUE;
+        ownsFallback = (table.getIndex(field) == null);
+        fallback = table.index(field);
+        removalsToRetry = 1;
+    }
+
+    /**
+     * Switch from the prefuse index back to computed rows or the slot array
+     * if the ids in use have become dense and unique by indexing all rows
+     * again. If duplicate ids remain, the next attempt is made after as many
+     * removals as there are rows.
+     */
+    private void toDense() {
+        int n = fallback.size();
+        if (n > 0) {
+            long min = column.getLong(fallback.minimum());
+            long max = column.getLong(fallback.maximum());
+            if (min == unset
+                    || max - min + 1 > Math.max(MIN_DENSE_SPAN, MAX_SPARSENESS
+                            * (long) n)) {
+                removalsToRetry = 1;
+                return;
+            }
+        }
+
+        boolean owned = ownsFallback;
+        fallback = null;
+        aligned = true;
+        size = 0;
+        reindex();
+        if (fallback != null) {
+            // the existing prefuse index was picked up again
+            ownsFallback = owned;
+            removalsToRetry = Math.max(1, n);
+        } else if (owned) {
+            table.removeIndex(field);
+        }
+    }
+
+    /**
+     * Updates the index on inserted and deleted rows as well as changed ids.
+     */
+    private class Listener implements TableListener, ColumnListener {
+
+        @Override
+        public void tableChanged(Table t, int start, int end, int col, int type) {
+            if (!built || col != EventConstants.ALL_COLUMNS) {
+                return;
+            }
+            if (type == EventConstants.INSERT) {
+                for (int r = start; r <= end; r++) {
+                    put(column.getLong(r), r);
+                }
+            } else if (type == EventConstants.DELETE) {
+                // deleted rows still hold their values
+                for (int r = start; r <= end; r++) {
+                    remove(column.getLong(r), r);
+                }
+            }
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, long prev) {
+            if (built && table.isValidRow(idx)) {
+                remove(prev, idx);
+                put(src.getLong(idx), idx);
+            }
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, int prev) {
+            columnChanged(src, idx, (long) prev);
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, Object prev) {
+            if (prev instanceof Number) {
+                columnChanged(src, idx, ((Number) prev).longValue());
+            }
+        }
+
+        @Override
+        public void columnChanged(Column src, int type, int start, int end) {
+            // bulk changes are announced by table events
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, float prev) {
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, double prev) {
+        }
+
+        @Override
+        public void columnChanged(Column src, int idx, boolean prev) {
+        }
+    }
+}
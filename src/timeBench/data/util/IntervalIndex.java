@@ -48,6 +48,17 @@ public interface IntervalIndex {
      * @return an iterator over a range of rows
      */
     public IntIterator rows(long lo, long hi);
+
+    /**
+     * Get an iterator over at most <tt>limit</tt> rows whose ranges overlap
+     * with the given interval. Rows are produced while iterating, so the
+     * index must not be modified while the iterator is in use.
+     * @param lo the minimum data value
+     * @param hi the maximum data value
+     * @param limit the maximal number of rows or {@link Integer#MAX_VALUE}
+     * @return an iterator over a range of rows
+     */
+    public IntIterator rows(long lo, long hi, int limit);
     
     /**
      * Get an iterator over all rows whose ranges contain the given data value.
@@ -55,9 +66,41 @@ public interface IntervalIndex {
      * @return an iterator over all rows matching the data value
      */
     public IntIterator rows(long val);
+
+    /**
+     * Find the rows whose ranges contain each of the given data values. The
+     * values must be sorted in ascending order, so that they can be answered
+     * in one sweep instead of one search each.
+     * @param values the data values in ascending order
+     * @param visitor called with the position of the value and each matching row
+     */
+    public void rows(long[] values, QueryVisitor visitor);
+
+    /**
+     * Find the rows whose ranges overlap with each of the given intervals. The
+     * lower and upper ends must both be in ascending order (e.g., adjacent
+     * pixel columns), so that they can be answered in one sweep.
+     * @param lo the minimum data values in ascending order
+     * @param hi the maximum data values in ascending order
+     * @param visitor called with the position of the interval and each matching row
+     */
+    public void rows(long[] lo, long[] hi, QueryVisitor visitor);
     
 	Iterator<TemporalObject> temporalObjects(long value);
 	
 	Iterator<TemporalObject> temporalObjects(long low, long high);
 
+    /**
+     * Receives the results of a batch of queries.
+     */
+    public interface QueryVisitor {
+        /**
+         * Called for each row that matches a query. The rows of a query are
+         * reported before those of the next query.
+         * @param query the position of the query in the batch
+         * @param row the matching row
+         */
+        public void visit(int query, int row);
+    }
+
 }
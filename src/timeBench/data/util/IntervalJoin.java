@@ -0,0 +1,634 @@
+package timeBench.data.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import prefuse.data.Table;
+import prefuse.data.column.Column;
+import prefuse.util.collections.IntIterator;
+import timeBench.data.TemporalDataException;
+import timeBench.data.TemporalDataset;
+import timeBench.data.TemporalElementStore;
+import timeBench.data.TemporalObject;
+
+/**
+ * Joins the temporal objects of two datasets (the left and the right side)
+ * whose temporal elements are in a given relation, e.g., to find the events
+ * that happen during each source object.
+ *
+ * <p>
+ * Each relation is reduced to an overlap of a window derived from the left
+ * interval with a probe derived from the right interval (e.g., for
+ * {@link Relation#BEFORE} the window after the end of the left interval and
+ * the start of the right interval). Windows and probes are sorted by their
+ * lower end and merged in one sweep that keeps the windows and probes that
+ * have started but not yet ended. The exact relation is checked for each
+ * overlapping pair. This takes O((n + m) log(n + m) + k) time for k
+ * candidate pairs instead of testing all n * m pairs.
+ *
+ * <p>
+ * For parallel execution, the sorted windows are split into time partitions
+ * and each partition is swept with the probes that can reach into it.
+ * Temporal objects with unanchored temporal elements are not joined.
+ */
+public class IntervalJoin {
+
+    /**
+     * Relations of a left interval <tt>a</tt> to a right interval <tt>b</tt>.
+     * The ends of intervals are inclusive, as {@link TemporalElementStore}
+     * inf and sup.
+     */
+    public enum Relation {
+        /** <tt>a</tt> and <tt>b</tt> share at least one chronon */
+        OVERLAPS,
+        /** <tt>a</tt> lies within <tt>b</tt> */
+        DURING,
+        /** <tt>b</tt> lies within <tt>a</tt> */
+        CONTAINS,
+        /** <tt>a</tt> ends before <tt>b</tt> starts, within the gap */
+        BEFORE,
+        /** <tt>a</tt> starts after <tt>b</tt> ends, within the gap */
+        AFTER,
+        /** <tt>b</tt> starts right after <tt>a</tt> ends */
+        MEETS,
+        /** <tt>a</tt> and <tt>b</tt> start together and <tt>a</tt> ends first */
+        STARTS,
+        /** <tt>a</tt> and <tt>b</tt> end together and <tt>a</tt> starts last */
+        FINISHES,
+        /** <tt>a</tt> and <tt>b</tt> are the same interval */
+        EQUALS
+    }
+
+    /**
+     * Receives the pairs of a join.
+     */
+    public interface PairVisitor {
+        /**
+         * Called for each pair of rows in the relation.
+         *
+         * @param leftRow
+         *            the row on the left side
+         * @param rightRow
+         *            the row on the right side
+         */
+        void visit(int leftRow, int rightRow);
+    }
+
+    private final Relation relation;
+    private final long gap;
+
+    /**
+     * Create a join for a relation. {@link Relation#BEFORE} and
+     * {@link Relation#AFTER} are not limited by a gap.
+     *
+     * @param relation
+     *            the relation of the left to the right intervals
+     */
+    public IntervalJoin(Relation relation) {
+        this(relation, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a join for a relation with a maximal gap between the intervals
+     * for {@link Relation#BEFORE} and {@link Relation#AFTER}, e.g., to find
+     * the events within an hour after each source object.
+     *
+     * @param relation
+     *            the relation of the left to the right intervals
+     * @param gap
+     *            the maximal difference between the end of one interval and
+     *            the start of the other (at least 1)
+     */
+    public IntervalJoin(Relation relation, long gap) {
+        if (relation == null || gap < 1) {
+            throw new IllegalArgumentException("Invalid join relation.");
+        }
+        this.relation = relation;
+        this.gap = gap;
+    }
+
+    public Relation getRelation() {
+        return relation;
+    }
+
+    public long getGap() {
+        return gap;
+    }
+
+    /**
+     * Join the temporal objects of two datasets in the calling thread.
+     *
+     * @param left
+     *            the dataset on the left side
+     * @param right
+     *            the dataset on the right side
+     * @param visitor
+     *            receives the pairs of temporal object rows
+     */
+    public void join(TemporalDataset left, TemporalDataset right,
+            PairVisitor visitor) {
+        Intervals a = new Intervals(left);
+        Intervals b = new Intervals(right);
+        join(a.inf, a.sup, a.rows, a.size, b.inf, b.sup, b.rows, b.size,
+                visitor);
+    }
+
+    /**
+     * Join the temporal objects of two datasets in parallel time partitions.
+     * The pairs are collected per partition and passed to the visitor in the
+     * calling thread.
+     *
+     * @param left
+     *            the dataset on the left side
+     * @param right
+     *            the dataset on the right side
+     * @param visitor
+     *            receives the pairs of temporal object rows
+     * @param executor
+     *            the executor to run the partitions or <tt>null</tt> to join
+     *            in the calling thread
+     * @param partitions
+     *            the number of time partitions
+     * @throws TemporalDataException
+     *             if a partition failed or was interrupted
+     */
+    public void join(TemporalDataset left, TemporalDataset right,
+            PairVisitor visitor, ExecutorService executor, int partitions)
+            throws TemporalDataException {
+        Intervals a = new Intervals(left);
+        Intervals b = new Intervals(right);
+        join(a.inf, a.sup, a.rows, a.size, b.inf, b.sup, b.rows, b.size,
+                visitor, executor, partitions);
+    }
+
+    /**
+     * Join two lists of intervals in the calling thread.
+     *
+     * @param leftInf
+     *            the lower ends of the left intervals
+     * @param leftSup
+     *            the upper ends of the left intervals
+     * @param rightInf
+     *            the lower ends of the right intervals
+     * @param rightSup
+     *            the upper ends of the right intervals
+     * @param visitor
+     *            receives the pairs of positions in the lists
+     */
+    public void join(long[] leftInf, long[] leftSup, long[] rightInf,
+            long[] rightSup, PairVisitor visitor) {
+        checkLength(leftInf, leftSup);
+        checkLength(rightInf, rightSup);
+        join(leftInf, leftSup, positions(leftInf.length), leftInf.length,
+                rightInf, rightSup, positions(rightInf.length),
+                rightInf.length, visitor);
+    }
+
+    private void join(long[] aInf, long[] aSup, int[] aRows, int n,
+            long[] bInf, long[] bSup, int[] bRows, int m, PairVisitor visitor) {
+        Sweep sweep = new Sweep(windows(aInf, aSup, aRows, n), probes(bInf,
+                bSup, bRows, m));
+        sweep.run(0, n, visitor);
+    }
+
+    private void join(long[] aInf, long[] aSup, int[] aRows, int n,
+            final long[] bInf, final long[] bSup, final int[] bRows,
+            final int m, PairVisitor visitor, ExecutorService executor,
+            int partitions) throws TemporalDataException {
+        int count = Math.max(1, Math.min(partitions, n));
+        if (executor == null || count == 1) {
+            join(aInf, aSup, aRows, n, bInf, bSup, bRows, m, visitor);
+            return;
+        }
+
+        // sort probes and windows concurrently
+        Future<Sorted> sortedProbes = executor.submit(new Callable<Sorted>() {
+            @Override
+            public Sorted call() {
+                return probes(bInf, bSup, bRows, m);
+            }
+        });
+        Sorted windows = windows(aInf, aSup, aRows, n);
+        final Sweep sweep;
+        try {
+            sweep = new Sweep(windows, sortedProbes.get());
+        } catch (InterruptedException e) {
+            sortedProbes.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new TemporalDataException("Join was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new TemporalDataException(e.getCause());
+        }
+
+        List<Future<PairBuffer>> futures = new ArrayList<Future<PairBuffer>>(
+                count);
+        for (int p = 0; p < count; p++) {
+            final int from = (int) ((long) n * p / count);
+            final int to = (int) ((long) n * (p + 1) / count);
+            futures.add(executor.submit(new Callable<PairBuffer>() {
+                @Override
+                public PairBuffer call() {
+                    PairBuffer buffer = new PairBuffer();
+                    sweep.run(from, to, buffer);
+                    return buffer;
+                }
+            }));
+        }
+        try {
+            for (Future<PairBuffer> future : futures) {
+                future.get().replay(visitor);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TemporalDataException("Join was interrupted.", e);
+        } catch (ExecutionException e) {
+            throw new TemporalDataException(e.getCause());
+        } finally {
+            for (Future<PairBuffer> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Check whether two intervals are in the relation of this join.
+     */
+    boolean matches(long aInf, long aSup, long bInf, long bSup) {
+        switch (relation) {
+        case OVERLAPS:
+            return aInf <= bSup && bInf <= aSup;
+        case DURING:
+            return bInf <= aInf && aSup <= bSup;
+        case CONTAINS:
+            return aInf <= bInf && bSup <= aSup;
+        case BEFORE:
+            // the difference of the ends may overflow, so compare with the
+            // end of the gap, which saturates at the end of time
+            return aSup < bInf && bInf <= saturatedAdd(aSup, gap);
+        case AFTER:
+            return bSup < aInf && aInf <= saturatedAdd(bSup, gap);
+        case MEETS:
+            // aSup < bInf, so aSup + 1 does not overflow
+            return aSup < bInf && bInf == aSup + 1;
+        case STARTS:
+            return aInf == bInf && aSup < bSup;
+        case FINISHES:
+            return aSup == bSup && bInf < aInf;
+        case EQUALS:
+            return aInf == bInf && aSup == bSup;
+        default:
+            throw new IllegalStateException("Unknown relation " + relation);
+        }
+    }
+
+    /**
+     * Get the lower end of the window of a left interval.
+     */
+    private long windowLow(long inf, long sup) {
+        switch (relation) {
+        case BEFORE:
+        case MEETS:
+            return saturatedAdd(sup, 1);
+        case AFTER:
+            return saturatedAdd(inf, -gap);
+        case FINISHES:
+            return sup;
+        default:
+            return inf;
+        }
+    }
+
+    /**
+     * Get the upper end of the window of a left interval.
+     */
+    private long windowHigh(long inf, long sup) {
+        switch (relation) {
+        case OVERLAPS:
+        case CONTAINS:
+        case FINISHES:
+            return sup;
+        case BEFORE:
+            return saturatedAdd(sup, gap);
+        case MEETS:
+            return saturatedAdd(sup, 1);
+        case AFTER:
+            return saturatedAdd(inf, -1);
+        default:
+            return inf;
+        }
+    }
+
+    /**
+     * Get the lower end of the probe of a right interval.
+     */
+    private long probeLow(long inf, long sup) {
+        switch (relation) {
+        case AFTER:
+        case FINISHES:
+            return sup;
+        default:
+            return inf;
+        }
+    }
+
+    /**
+     * Get the upper end of the probe of a right interval.
+     */
+    private long probeHigh(long inf, long sup) {
+        switch (relation) {
+        case OVERLAPS:
+        case DURING:
+        case AFTER:
+        case FINISHES:
+            return sup;
+        default:
+            return inf;
+        }
+    }
+
+    private static long saturatedAdd(long value, long delta) {
+        long result = value + delta;
+        // overflow iff both operands have the same sign as each other but
+        // not as the result
+        if (((value ^ result) & (delta ^ result)) < 0) {
+            return delta < 0 ? Long.MIN_VALUE : Long.MAX_VALUE;
+        }
+        return result;
+    }
+
+    private static void checkLength(long[] inf, long[] sup) {
+        if (inf.length != sup.length) {
+            throw new IllegalArgumentException(
+                    "Lower and upper ends differ in length.");
+        }
+    }
+
+    private static int[] positions(int n) {
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = i;
+        }
+        return positions;
+    }
+
+    /**
+     * The anchored temporal objects of a dataset with the inf and sup of
+     * their temporal elements.
+     */
+    private static class Intervals {
+        long[] inf;
+        long[] sup;
+        int[] rows;
+        int size = 0;
+
+        Intervals(TemporalDataset dataset) {
+            Table objects = dataset.getNodeTable();
+            TemporalElementStore store = dataset.getTemporalElements();
+            Column elementIds = objects
+                    .getColumn(TemporalObject.TEMPORAL_ELEMENT_ID);
+            int capacity = objects.getRowCount();
+            inf = new long[capacity];
+            sup = new long[capacity];
+            rows = new int[capacity];
+            IntIterator it = objects.rows();
+            while (it.hasNext()) {
+                int row = it.nextInt();
+                int elementRow = store.getTemporalElementRow(elementIds
+                        .getLong(row));
+                if (elementRow >= 0 && store.isAnchored(elementRow)) {
+                    inf[size] = store.getInf(elementRow);
+                    sup[size] = store.getSup(elementRow);
+                    rows[size] = row;
+                    size++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Windows of the left or probes of the right intervals sorted by their
+     * lower ends, together with the intervals and rows in the same order.
+     */
+    private static class Sorted {
+        final long[] lo;
+        final long[] hi;
+        final long[] inf;
+        final long[] sup;
+        final int[] rows;
+
+        Sorted(long[] lo, long[] hi, long[] inf, long[] sup, int[] rows,
+                int n) {
+            int[] pos = new int[n];
+            for (int i = 0; i < n; i++) {
+                pos[i] = i;
+            }
+            StaticIntervalIndex.sort(lo, hi, pos, n);
+            this.lo = lo;
+            this.hi = hi;
+            // gather once, so that pairs are checked without indirection
+            this.inf = new long[n];
+            this.sup = new long[n];
+            this.rows = new int[n];
+            for (int i = 0; i < n; i++) {
+                this.inf[i] = inf[pos[i]];
+                this.sup[i] = sup[pos[i]];
+                this.rows[i] = rows[pos[i]];
+            }
+        }
+    }
+
+    private Sorted windows(long[] inf, long[] sup, int[] rows, int n) {
+        long[] lo = new long[n];
+        long[] hi = new long[n];
+        for (int i = 0; i < n; i++) {
+            lo[i] = windowLow(inf[i], sup[i]);
+            hi[i] = windowHigh(inf[i], sup[i]);
+        }
+        return new Sorted(lo, hi, inf, sup, rows, n);
+    }
+
+    private Sorted probes(long[] inf, long[] sup, int[] rows, int m) {
+        long[] lo = new long[m];
+        long[] hi = new long[m];
+        for (int j = 0; j < m; j++) {
+            lo[j] = probeLow(inf[j], sup[j]);
+            hi[j] = probeHigh(inf[j], sup[j]);
+        }
+        return new Sorted(lo, hi, inf, sup, rows, m);
+    }
+
+    /**
+     * Merges windows and probes. The arrays are only read during sweeps, so
+     * that partitions can be swept in parallel.
+     */
+    private class Sweep {
+        private final long[] aInf;
+        private final long[] aSup;
+        private final int[] aRows;
+        private final long[] bInf;
+        private final long[] bSup;
+        private final int[] bRows;
+
+        private final long[] wLo;
+        private final long[] wHi;
+        private final long[] pLo;
+        private final long[] pHi;
+        private final int m;
+
+        /**
+         * maximal upper end of the probes up to each position
+         */
+        private final long[] pHiPrefixMax;
+
+        Sweep(Sorted windows, Sorted probes) {
+            aInf = windows.inf;
+            aSup = windows.sup;
+            aRows = windows.rows;
+            wLo = windows.lo;
+            wHi = windows.hi;
+            bInf = probes.inf;
+            bSup = probes.sup;
+            bRows = probes.rows;
+            pLo = probes.lo;
+            pHi = probes.hi;
+            m = pLo.length;
+
+            pHiPrefixMax = new long[m];
+            long max = Long.MIN_VALUE;
+            for (int j = 0; j < m; j++) {
+                max = Math.max(max, pHi[j]);
+                pHiPrefixMax[j] = max;
+            }
+        }
+
+        /**
+         * Sweep the windows in [from, to) with all probes that can overlap
+         * them.
+         */
+        void run(int from, int to, PairVisitor visitor) {
+            if (from >= to || m == 0) {
+                return;
+            }
+            long minLo = wLo[from];
+            long maxHi = Long.MIN_VALUE;
+            for (int i = from; i < to; i++) {
+                maxHi = Math.max(maxHi, wHi[i]);
+            }
+            // probes before this one end before the first window starts
+            int j = firstReaching(minLo);
+            int end = firstAfter(maxHi);
+
+            int[] activeW = new int[16];
+            int countW = 0;
+            int[] activeP = new int[16];
+            int countP = 0;
+            int i = from;
+            while (i < to || j < end) {
+                if (j < end && (i >= to || pLo[j] < wLo[i])) {
+                    // probe starts: pair with windows that have not ended
+                    long lo = pLo[j];
+                    int kept = 0;
+                    for (int k = 0; k < countW; k++) {
+                        int w = activeW[k];
+                        if (wHi[w] >= lo) {
+                            activeW[kept++] = w;
+                            report(w, j, visitor);
+                        }
+                    }
+                    countW = kept;
+                    if (countP == activeP.length) {
+                        activeP = Arrays.copyOf(activeP, countP * 2);
+                    }
+                    activeP[countP++] = j;
+                    j++;
+                } else {
+                    // window starts: pair with probes that have not ended
+                    long lo = wLo[i];
+                    int kept = 0;
+                    for (int k = 0; k < countP; k++) {
+                        int p = activeP[k];
+                        if (pHi[p] >= lo) {
+                            activeP[kept++] = p;
+                            report(i, p, visitor);
+                        }
+                    }
+                    countP = kept;
+                    if (countW == activeW.length) {
+                        activeW = Arrays.copyOf(activeW, countW * 2);
+                    }
+                    activeW[countW++] = i;
+                    i++;
+                }
+            }
+        }
+
+        private void report(int w, int p, PairVisitor visitor) {
+            if (matches(aInf[w], aSup[w], bInf[p], bSup[p])) {
+                visitor.visit(aRows[w], bRows[p]);
+            }
+        }
+
+        /**
+         * Binary search for the first probe whose upper end or that of an
+         * earlier probe reaches a value.
+         */
+        private int firstReaching(long value) {
+            int l = 0;
+            int r = m;
+            while (l < r) {
+                int k = (l + r) >>> 1;
+                if (pHiPrefixMax[k] >= value) {
+                    r = k;
+                } else {
+                    l = k + 1;
+                }
+            }
+            return l;
+        }
+
+        /**
+         * Binary search for the first probe whose lower end is after a value.
+         */
+        private int firstAfter(long value) {
+            int l = 0;
+            int r = m;
+            while (l < r) {
+                int k = (l + r) >>> 1;
+                if (pLo[k] > value) {
+                    r = k;
+                } else {
+                    l = k + 1;
+                }
+            }
+            return l;
+        }
+    }
+
+    /**
+     * Pairs collected by a partition.
+     */
+    private static class PairBuffer implements PairVisitor {
+        private int[] pairs = new int[64];
+        private int size = 0;
+
+        @Override
+        public void visit(int leftRow, int rightRow) {
+            if (size + 2 > pairs.length) {
+                pairs = Arrays.copyOf(pairs, pairs.length * 2);
+            }
+            pairs[size++] = leftRow;
+            pairs[size++] = rightRow;
+        }
+
+        void replay(PairVisitor visitor) {
+            for (int k = 0; k < size; k += 2) {
+                visitor.visit(pairs[k], pairs[k + 1]);
+            }
+        }
+    }
+}
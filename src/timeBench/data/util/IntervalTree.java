@@ -26,29 +26,49 @@
 
 package timeBench.data.util;
 
+import java.util.Arrays;
 import java.util.List;
+import java.util.NoSuchElementException;
 
 import prefuse.data.Table;
 import prefuse.data.column.Column;
+import prefuse.util.collections.IntIterator;
 
 /**
  * Implements an interval tree as described in Section 14.3 of <i>Introduction
  * to Algorithms</i>, Second edition.
+ * 
+ * <p>
+ * In addition to the maximum of right endpoints, each node keeps the minimum
+ * of left endpoints in its subtree. Queries prune subtrees on both bounds and
+ * stream their results in tree order (see {@link #rows(long, long, int)}).
+ * Batches of ascending queries are answered in one sweep (see
+ * {@link #rows(long[], long[], IntervalIndex.QueryVisitor)}).
  */
 
 public class IntervalTree  extends RedBlackTree {
 
+	/**
+	 * number of passed intervals that ended before a query, after which a
+	 * sweep restarts with a search
+	 */
+	static final int MAX_SWEEP_SKIP = 32;
+
 	/**
 	 * Inner class for an interval tree node, extending a red-black tree node
 	 * with an additional max field. <code>IntervalTree.Node</code> contains an
 	 * <code>Interval</code> as its data and has as auxiliary data a
 	 * <code>double</code>, <code>max</code>, which is the maximum value of
 	 * right endpoints for the subtree of which a particular node is the root.
+	 * Likewise, <code>min</code> is the minimum value of left endpoints.
 	 */
 	protected class Node extends RedBlackTree.Node {
 		/** Maximum value in the subtree rooted at this node. */
 		protected long max;
 
+		/** Minimum value in the subtree rooted at this node. */
+		protected long min;
+
 		/**
 		 * Initializes a new node in an interval tree.
 		 * 
@@ -57,15 +77,17 @@ public class IntervalTree  extends RedBlackTree {
 		 */
 		public Node(int row) {
 			super(row);
-			if (row >= 0)
+			if (row >= 0) {
 				max = getHigh();
+				min = getLow();
+			}
 		}
 
 		/**
 		 * Returns the <code>String</code> representation of this node.
 		 */
 		public String toString() {
-			return super.toString() + ", max = " + max;
+			return super.toString() + ", max = " + max + ", min = " + min;
 		}
 
 		long getLow() {
@@ -104,6 +126,8 @@ public class IntervalTree  extends RedBlackTree {
 	public IntervalTree(Table table, Column colLo,
 			Column colHi, IntervalComparator comparator) {
 		setNil(new Node(-1));
+		((Node) nil).max = Long.MIN_VALUE;
+		((Node) nil).min = Long.MAX_VALUE;
 		root = nil;
 		this.colLo = colLo;
 		this.colHi = colHi;
@@ -124,8 +148,8 @@ public class IntervalTree  extends RedBlackTree {
 		super.leftRotate(x);
 
 		y.max = x.max;
-		x.max = Math.max(x.getHigh(),
-				Math.max((x.getLeft()).max, (x.getRight()).max));
+		y.min = x.min;
+		updateBounds(x);
 	}
 
 	/**
@@ -142,9 +166,8 @@ public class IntervalTree  extends RedBlackTree {
 		super.rightRotate(x);
 
 		y.max = x.max;
-		x.max = Math.max(x.getHigh(),
-				Math.max(x.getLeft().max, x.getRight().max));
-		// x.max = Math.max(((Node) x.left).max, ((Node) x.right).max);
+		y.min = x.min;
+		updateBounds(x);
 	}
 
 	/**
@@ -165,18 +188,21 @@ public class IntervalTree  extends RedBlackTree {
 
 
 	/**
-	 * Inserts a node, updating the <code>max</code> fields of its ancestors
+	 * Inserts a node, updating the <code>max</code> and <code>min</code>
+	 * fields of its ancestors
 	 * before the superclass's <code>insertNode</code> is called.
 	 * 
 	 * @param x
 	 *            The node to insert.
 	 */
 	protected void treeInsert(Node x) {
-		// Update the max fields of the path down to where the node
+		// Update the max and min fields of the path down to where the node
 		// will be inserted in the tree.
 		for (Node i = (Node) root; i != nil; i = (Node) ((i.compareTo(x) >= 0) ? i.left
-				: i.right))
+				: i.right)) {
 			i.max = Math.max(x.max, i.max);
+			i.min = Math.min(x.min, i.min);
+		}
 
 		super.treeInsert(x);
 	}
@@ -190,21 +216,61 @@ public class IntervalTree  extends RedBlackTree {
 	 *             if <code>handle</code> is not a <code>Node</code> object.
 	 */
 	public void delete(Object handle) {
+		Node z = (Node) handle;
+
+		// lowest node whose subtree changes: the parent of z or, if z has
+		// two children, the former parent of its successor
+		Node start = z.getParent();
+		if (z.getLeft() != nil && z.getRight() != nil) {
+			Node y = (Node) successor(z);
+			start = (y.getParent() == z) ? y : y.getParent();
+		}
+
+		// Now actually remove the node.
+		super.delete(handle);
+
 		// Walk up the tree by following parent pointers while
-		// updating the max value of each node along the path.
-		Node x = (Node) handle;
+		// updating the max and min values of each node along the path.
+		for (Node i = start; i != nil; i = i.getParent())
+			updateBounds(i);
+
+		// detach the node, so that it can be inserted again
+		z.parent = nil;
+		z.left = nil;
+		z.right = nil;
+		z.color = RED;
+		z.max = z.getHigh();
+		z.min = z.getLow();
+	}
 
-		x.max = Long.MIN_VALUE;
+	/**
+	 * Removes a node and inserts it again after its interval has changed.
+	 * 
+	 * @param handle
+	 *            Handle to the node being updated.
+	 */
+	public void update(Object handle) {
+		delete(handle);
+		treeInsert((Node) handle);
+	}
 
-		for (Node i = x.getParent(); i != nil; i = i.getParent())
-			i.max = Math.max(i.getLeft().max, i.getRight().max);
+	private void updateBounds(Node x) {
+		x.max = Math.max(x.getHigh(),
+				Math.max(x.getLeft().max, x.getRight().max));
+		x.min = Math.min(x.getLow(),
+				Math.min(x.getLeft().min, x.getRight().min));
+	}
 
-		// Now actually remove the node.
-		super.delete(handle);
+	/**
+	 * Checks whether a subtree may contain intervals that overlap with the
+	 * given interval.
+	 */
+	private boolean mayOverlap(Node node, long low, long high) {
+		return node != nil && low <= node.max && node.min <= high;
 	}
 
 	public void search(long low, long high, Node node, List<Node> result) {
-		if (node != nil && low < node.max) {
+		if (mayOverlap(node, low, high)) {
 			search(low, high, node.getLeft(), result);
 			if (comparator.match(low, high, node.getLow(), node.getHigh())) {
 				result.add(node);
@@ -214,7 +280,7 @@ public class IntervalTree  extends RedBlackTree {
 	}
 
 	public void search(long value, Node node, List<Node> result) {
-		if (node != nil && value < node.max) {
+		if (mayOverlap(node, value, value)) {
 			search(value, node.getLeft(), result);
 			if (node.getLow() <= value && value <= node.getHigh()) {
 				result.add(node);
@@ -222,4 +288,204 @@ public class IntervalTree  extends RedBlackTree {
 			search(value, node.getRight(), result);
 		}
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Finds the intervals that overlap with a given interval. The rows are
+	 * returned lazily in tree order (i.e., sorted by the
+	 * {@link IntervalComparator}), without collecting all of them first. The
+	 * tree must not be modified while the iterator is in use.
+	 * 
+	 * @param low
+	 *            the lower end of the interval
+	 * @param high
+	 *            the upper end of the interval
+	 * @param limit
+	 *            the maximal number of rows to return or
+	 *            {@link Integer#MAX_VALUE} for all
+	 * @return an iterator over the rows of the overlapping intervals
+	 */
+	public IntIterator rows(long low, long high, int limit) {
+		return new SearchIterator(low, high, limit);
+	}
+
+	/**
+	 * Finds the intervals that overlap with each of a batch of intervals,
+	 * whose lower and upper ends are both ascending. The tree is walked in
+	 * order once: intervals are added to a list of active intervals when the
+	 * query reaches their lower end and dropped when a query starts after
+	 * their upper end. If the walk passes over too many intervals that ended
+	 * before the query, it restarts with a search from the root. This
+	 * requires the {@link IntervalComparator} to order intervals by their
+	 * lower ends (as {@link DefaultIntervalComparator}).
+	 * 
+	 * @param lows
+	 *            the lower ends of the queries
+	 * @param highs
+	 *            the upper ends of the queries
+	 * @param visitor
+	 *            receives the rows of each query
+	 */
+	public void rows(long[] lows, long[] highs, IntervalIndex.QueryVisitor visitor) {
+		checkBatch(lows, highs);
+		Node[] active = new Node[16];
+		int count = 0;
+		Node next = (Node) nil;
+		for (int q = 0; q < lows.length; q++) {
+			long low = lows[q];
+			long high = highs[q];
+			boolean restart = (q == 0);
+			if (!restart) {
+				// drop intervals that ended before this query
+				int kept = 0;
+				for (int i = 0; i < count; i++) {
+					if (active[i].getHigh() >= low) {
+						active[kept++] = active[i];
+					}
+				}
+				Arrays.fill(active, kept, count, null);
+				count = kept;
+				// add intervals that start up to the end of this query
+				int skipped = 0;
+				while (next != nil && next.getLow() <= high) {
+					if (next.getHigh() >= low) {
+						if (count == active.length) {
+							active = Arrays.copyOf(active, count * 2);
+						}
+						active[count++] = next;
+					} else if (++skipped > MAX_SWEEP_SKIP) {
+						restart = true;
+						break;
+					}
+					next = (Node) successor(next);
+				}
+			}
+			if (restart) {
+				Arrays.fill(active, 0, count, null);
+				count = 0;
+				SearchIterator it = new SearchIterator(low, high, Integer.MAX_VALUE);
+				while (it.hasNext()) {
+					if (count == active.length) {
+						active = Arrays.copyOf(active, count * 2);
+					}
+					active[count++] = it.nextNode();
+				}
+				next = firstAfter(high);
+			}
+			for (int i = 0; i < count; i++) {
+				Node node = active[i];
+				if (comparator.match(low, high, node.getLow(), node.getHigh())) {
+					visitor.visit(q, node.row);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the first node in order whose lower end is after a value.
+	 */
+	private Node firstAfter(long value) {
+		Node result = (Node) nil;
+		Node node = (Node) root;
+		while (node != nil) {
+			if (node.getLow() > value) {
+				result = node;
+				node = node.getLeft();
+			} else {
+				node = node.getRight();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Checks that the lower and upper ends of a batch of queries are
+	 * ascending.
+	 */
+	static void checkBatch(long[] lows, long[] highs) {
+		if (lows.length != highs.length) {
+			throw new IllegalArgumentException(
+					"Lower and upper ends differ in length.");
+		}
+		for (int i = 1; i < lows.length; i++) {
+			if (lows[i] < lows[i - 1] || highs[i] < highs[i - 1]) {
+				throw new IllegalArgumentException(
+						"Queries are not in ascending order at " + i + ".");
+			}
+		}
+	}
+
+	/**
+	 * In-order traversal with an explicit stack that skips subtrees outside
+	 * the query bounds.
+	 */
+	private class SearchIterator extends IntIterator {
+		private final long low;
+		private final long high;
+		private int remaining;
+
+		private Node[] stack = new Node[64];
+		private int depth = 0;
+		private Node next;
+
+		SearchIterator(long low, long high, int limit) {
+			this.low = low;
+			this.high = high;
+			this.remaining = limit;
+			pushLeft((Node) root);
+			advance();
+		}
+
+		private void pushLeft(Node node) {
+			while (mayOverlap(node, low, high)) {
+				if (depth == stack.length) {
+					Node[] grown = new Node[depth * 2];
+					System.arraycopy(stack, 0, grown, 0, depth);
+					stack = grown;
+				}
+				stack[depth++] = node;
+				node = node.getLeft();
+			}
+		}
+
+		private void advance() {
+			next = null;
+			if (remaining <= 0) {
+				return;
+			}
+			while (depth > 0) {
+				Node node = stack[--depth];
+				stack[depth] = null;
+				pushLeft(node.getRight());
+				if (comparator.match(low, high, node.getLow(), node.getHigh())) {
+					next = node;
+					remaining--;
+					return;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public int nextInt() {
+			return nextNode().row;
+		}
+
+		Node nextNode() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			Node node = next;
+			advance();
+			return node;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
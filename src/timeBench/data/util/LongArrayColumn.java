@@ -0,0 +1,258 @@
+package timeBench.data.util;
+
+import java.util.Arrays;
+
+import prefuse.data.DataTypeException;
+import prefuse.data.column.Column;
+
+/**
+ * Column instance for storing long values in growable primitive arrays.
+ *
+ * <p>
+ * In contrast to {@link prefuse.data.column.LongColumn}, rows added in a batch
+ * can be filled without column events (e.g., by array copies) and the
+ * values can be shared with read-only snapshots. Values are held in segments
+ * of {@link #SEGMENT_SIZE} rows, so that the column grows without copying
+ * and a change after a snapshot copies only the segment of the changed row.
+ * Columns with fewer rows use a single, smaller segment.
+ */
+public class LongArrayColumn extends AbstractLongColumn {
+
+    /**
+     * number of bits of the row offset within a segment
+     */
+    public static final int SEGMENT_SHIFT = 14;
+
+    /**
+     * number of rows per segment
+     */
+    public static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT;
+
+    /**
+     * mask of the row offset within a segment
+     */
+    public static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    private long[][] segments;
+    private int capacity;
+    private int size;
+
+    /**
+     * segments that are shared with snapshots
+     */
+    private boolean[] shared;
+
+    /**
+     * number of leading rows whose values are shared with snapshots
+     */
+    private int sharedRows = 0;
+
+    /**
+     * Create a new, empty LongArrayColumn.
+     *
+     * @param defaultValue
+     *            the default value for new rows
+     */
+    public LongArrayColumn(long defaultValue) {
+        this(0, 16, defaultValue);
+    }
+
+    /**
+     * Create a new LongArrayColumn.
+     *
+     * @param nrows
+     *            the initial size of the column
+     * @param capacity
+     *            the initial capacity of the column
+     * @param defaultValue
+     *            the default value for new rows
+     */
+    public LongArrayColumn(int nrows, int capacity, long defaultValue) {
+        super(defaultValue);
+        if (capacity < nrows) {
+            throw new IllegalArgumentException(
+                    "Capacity value can not be less than the row count.");
+        }
+        segments = new long[][] { new long[Math.min(capacity, SEGMENT_SIZE)] };
+        shared = new boolean[1];
+        Arrays.fill(segments[0], defaultValue);
+        this.capacity = segments[0].length;
+        grow(capacity);
+        size = nrows;
+    }
+
+    // ------------------------------------------------------------------------
+    // Column Metadata
+
+    @Override
+    public int getRowCount() {
+        return size;
+    }
+
+    @Override
+    public void setMaximumRow(int nrows) {
+        if (nrows > capacity) {
+            grow(Math.max((3 * capacity) / 2 + 1, nrows));
+        }
+        size = nrows;
+    }
+
+    /**
+     * Extend the segments to hold at least the given number of rows. The
+     * first segment grows until it reaches the segment size, then further
+     * segments are added.
+     */
+    private void grow(int rows) {
+        if (rows <= capacity) {
+            return;
+        }
+        long defaultValue = getDefaultLong();
+        if (capacity < SEGMENT_SIZE) {
+            int length = Math.min(rows, SEGMENT_SIZE);
+            long[] first = new long[length];
+            System.arraycopy(segments[0], 0, first, 0, Math.min(size, capacity));
+            Arrays.fill(first, Math.min(size, capacity), length, defaultValue);
+            segments[0] = first;
+            shared[0] = false;
+            capacity = length;
+        }
+        if (rows > capacity) {
+            int count = (int) (((long) rows + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            int old = segments.length;
+            segments = Arrays.copyOf(segments, count);
+            shared = Arrays.copyOf(shared, count);
+            for (int i = old; i < count; i++) {
+                segments[i] = new long[SEGMENT_SIZE];
+                Arrays.fill(segments[i], defaultValue);
+            }
+            capacity = count << SEGMENT_SHIFT;
+        }
+    }
+
+    /**
+     * Get the number of rows the column can hold without growing.
+     */
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the segments for a read-only snapshot of the current rows. The
+     * segments are shared with the column until one of these rows is
+     * changed, then the column continues on a copy of the changed segment
+     * (copy-on-write). Appended rows may be written to a shared segment, so
+     * readers of a snapshot must not access rows beyond the row count at the
+     * time of this call.
+     *
+     * @return the segments, where a row is found in the segment of the row
+     *         shifted right by {@link #SEGMENT_SHIFT} at the offset of the row
+     *         masked by {@link #SEGMENT_MASK}; the first
+     *         {@link #getRowCount()} rows remain unchanged
+     */
+    public long[][] shareValues() {
+        sharedRows = Math.max(sharedRows, size);
+        int count = (int) (((long) size + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        Arrays.fill(shared, 0, count, true);
+        return segments.clone();
+    }
+
+    /**
+     * Get the segment of a row for writing. A segment shared with snapshots
+     * is copied before a row visible to them is changed.
+     */
+    private long[] writable(int row) {
+        int s = row >>> SEGMENT_SHIFT;
+        if (row < sharedRows && shared[s]) {
+            segments[s] = segments[s].clone();
+            shared[s] = false;
+        }
+        return segments[s];
+    }
+
+    // ------------------------------------------------------------------------
+    // Data Type Convenience Methods
+
+    @Override
+    public long getLong(int row) throws DataTypeException {
+        if (row < 0 || row >= size) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + row);
+        }
+        return segments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+    }
+
+    @Override
+    public void setLong(long val, int row) throws DataTypeException {
+        if (m_readOnly) {
+            throw new DataTypeException(this.getClass());
+        } else if (row < 0 || row >= size) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + row);
+        }
+        // get the previous value
+        long prev = segments[row >>> SEGMENT_SHIFT][row & SEGMENT_MASK];
+
+        // exit early if no change
+        if (prev == val)
+            return;
+
+        // set the new value
+        writable(row)[row & SEGMENT_MASK] = val;
+
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+
+    @Override
+    public void initLong(long val, int row) {
+        if (row < 0 || row >= size) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + row);
+        }
+        writable(row)[row & SEGMENT_MASK] = val;
+    }
+
+    /**
+     * Set the values of consecutive rows to the values of the given rows of
+     * another column without notifying listeners of this column. If the other
+     * column is also a {@link LongArrayColumn}, runs of consecutive source rows
+     * are copied as array ranges.
+     *
+     * @param source
+     *            the column to copy from
+     * @param sourceRows
+     *            the rows of the source column
+     * @param row
+     *            the first row to set
+     */
+    @Override
+    public void initValues(Column source, int[] sourceRows, int row) {
+        int n = sourceRows.length;
+        if (row < 0 || row + n > size) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + (row + n - 1));
+        }
+        if (!(source instanceof LongArrayColumn)) {
+            super.initValues(source, sourceRows, row);
+            return;
+        }
+        long[][] from = ((LongArrayColumn) source).segments;
+        int i = 0;
+        while (i < n) {
+            // copy the longest run that stays within one source and one
+            // target segment
+            int src = sourceRows[i];
+            int dst = row + i;
+            int limit = Math.min(n - i, Math.min(
+                    SEGMENT_SIZE - (src & SEGMENT_MASK), SEGMENT_SIZE
+                            - (dst & SEGMENT_MASK)));
+            int j = 1;
+            while (j < limit && sourceRows[i + j] == src + j) {
+                j++;
+            }
+            System.arraycopy(from[src >>> SEGMENT_SHIFT], src & SEGMENT_MASK,
+                    writable(dst), dst & SEGMENT_MASK, j);
+            i += j;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package timeBench.data.util;
+
+import java.io.IOException;
+
+/**
+ * Column whose values are stored in a memory-mapped file.
+ *
+ * @see MappedLongColumn
+ * @see MappedIntColumn
+ */
+public interface MappedColumn {
+
+    /**
+     * Get the number of rows stored in the file, which can be larger than
+     * the number of rows of the column.
+     *
+     * @return the number of stored rows
+     */
+    public int getStoredRowCount();
+
+    /**
+     * Discard stored rows from the given row on, so that they are not
+     * restored when the file is opened again.
+     *
+     * @param nrows
+     *            the number of rows to keep
+     */
+    public void truncate(int nrows);
+
+    /**
+     * Write changes to the storage device.
+     */
+    public void force();
+
+    /**
+     * Close the column file. The column must not be used afterwards.
+     *
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void close() throws IOException;
+}
@@ -0,0 +1,173 @@
+package timeBench.data.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * File of fixed-size values that is mapped into memory in segments. The
+ * mapping is sized to the number of rows and grows geometrically, so that
+ * small columns do not reserve a full segment. The file starts with a header
+ * of {@link #HEADER_SIZE} bytes:
+ *
+ * <pre>
+ * int  magic number 0x5442434C (&quot;TBCL&quot;)
+ * int  format version
+ * int  value size in bytes (4 or 8)
+ * int  reserved
+ * long number of rows
+ * long number of released rows (row files of {@link MappedRowManager} only)
+ * </pre>
+ *
+ * followed by the values of rows 0, 1, ... in big-endian byte order.
+ */
+class MappedColumnFile {
+
+    static final int MAGIC = 0x5442434C;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 4096;
+
+    private static final int OFFSET_ROW_COUNT = 16;
+    private static final int OFFSET_RELEASED_COUNT = 24;
+
+    /**
+     * segments of 128 MiB keep each mapping below the 2 GiB limit
+     */
+    private static final int SEGMENT_SHIFT = 27;
+    private static final long SEGMENT_SIZE = 1l << SEGMENT_SHIFT;
+    private static final long SEGMENT_MASK = SEGMENT_SIZE - 1;
+
+    /**
+     * smallest size of the mapped values in bytes
+     */
+    private static final long MIN_MAPPED_SIZE = 1l << 16;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int valueSize;
+    private final MappedByteBuffer header;
+    private MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+    /**
+     * number of value bytes covered by the segments
+     */
+    private long mappedSize = 0;
+
+    /**
+     * Open a column file or create it if it does not exist. No values are
+     * mapped until {@link #ensureCapacity(long)} is called.
+     *
+     * @param path
+     *            the file
+     * @param valueSize
+     *            the size of values in bytes
+     * @throws IOException
+     *             if the file cannot be mapped or has an incompatible header
+     */
+    MappedColumnFile(File path, int valueSize) throws IOException {
+        this.valueSize = valueSize;
+        this.file = new RandomAccessFile(path, "rw");
+        this.channel = file.getChannel();
+        boolean created = channel.size() == 0;
+        this.header = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                HEADER_SIZE);
+        if (created) {
+            header.putInt(0, MAGIC);
+            header.putInt(4, FORMAT_VERSION);
+            header.putInt(8, valueSize);
+            header.putLong(OFFSET_ROW_COUNT, 0l);
+            header.putLong(OFFSET_RELEASED_COUNT, 0l);
+        } else if (header.getInt(0) != MAGIC
+                || header.getInt(4) != FORMAT_VERSION
+                || header.getInt(8) != valueSize) {
+            close();
+            throw new IOException("Incompatible column file: " + path);
+        }
+    }
+
+    long getRowCount() {
+        return header.getLong(OFFSET_ROW_COUNT);
+    }
+
+    void setRowCount(long rows) {
+        header.putLong(OFFSET_ROW_COUNT, rows);
+    }
+
+    long getReleasedCount() {
+        return header.getLong(OFFSET_RELEASED_COUNT);
+    }
+
+    void setReleasedCount(long rows) {
+        header.putLong(OFFSET_RELEASED_COUNT, rows);
+    }
+
+    /**
+     * Map enough segments to hold the given number of rows. The mapped size
+     * is at least doubled, all segments except the last one are full, and
+     * only the last segment is mapped again when it grows. The file is
+     * extended as needed.
+     */
+    void ensureCapacity(long rows) throws IOException {
+        long bytes = rows * valueSize;
+        if (bytes <= mappedSize) {
+            return;
+        }
+        long size = Math.max(bytes, Math.max(2 * mappedSize, MIN_MAPPED_SIZE));
+        int count = (int) ((size + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT);
+        int full = (int) (mappedSize >>> SEGMENT_SHIFT);
+        segments = Arrays.copyOf(segments, count);
+        for (int i = full; i < count; i++) {
+            long length = Math.min(SEGMENT_SIZE, size - i * SEGMENT_SIZE);
+            segments[i] = channel.map(FileChannel.MapMode.READ_WRITE,
+                    HEADER_SIZE + i * SEGMENT_SIZE, length);
+        }
+        mappedSize = size;
+    }
+
+    long getLong(int row) {
+        long pos = (long) row << 3;
+        return segments[(int) (pos >>> SEGMENT_SHIFT)]
+                .getLong((int) (pos & SEGMENT_MASK));
+    }
+
+    void putLong(int row, long value) {
+        long pos = (long) row << 3;
+        segments[(int) (pos >>> SEGMENT_SHIFT)].putLong(
+                (int) (pos & SEGMENT_MASK), value);
+    }
+
+    int getInt(int row) {
+        long pos = (long) row << 2;
+        return segments[(int) (pos >>> SEGMENT_SHIFT)]
+                .getInt((int) (pos & SEGMENT_MASK));
+    }
+
+    void putInt(int row, int value) {
+        long pos = (long) row << 2;
+        segments[(int) (pos >>> SEGMENT_SHIFT)].putInt(
+                (int) (pos & SEGMENT_MASK), value);
+    }
+
+    /**
+     * Write changes to the storage device.
+     */
+    void force() {
+        header.force();
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    /**
+     * Close the file. The mappings are released when they are garbage
+     * collected.
+     */
+    void close() throws IOException {
+        segments = new MappedByteBuffer[0];
+        mappedSize = 0;
+        file.close();
+    }
+}
@@ -0,0 +1,133 @@
+package timeBench.data.util;
+
+import java.io.File;
+import java.io.IOException;
+
+import prefuse.data.DataTypeException;
+
+/**
+ * Column instance for storing long values in a memory-mapped file (see
+ * {@link MappedColumnFile} for the layout). Values are not held in the Java
+ * heap, so that the operating system can page them in on demand.
+ *
+ * <p>
+ * Rows already stored in the file are not part of the column until the table
+ * grows to include them (see {@link #getStoredRowCount()}); only rows beyond
+ * the stored rows are initialized with the default value.
+ */
+public class MappedLongColumn extends AbstractLongColumn implements
+        MappedColumn {
+
+    private final MappedColumnFile file;
+    private int size = 0;
+    private int stored;
+
+    /**
+     * Open a memory-mapped column or create it if the file does not exist.
+     *
+     * @param path
+     *            the column file
+     * @param defaultValue
+     *            the default value for new rows
+     * @throws IOException
+     *             if the file cannot be mapped or has an incompatible header
+     */
+    public MappedLongColumn(File path, long defaultValue) throws IOException {
+        super(defaultValue);
+        this.file = new MappedColumnFile(path, 8);
+        this.stored = (int) file.getRowCount();
+        try {
+            file.ensureCapacity(stored);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public int getStoredRowCount() {
+        return stored;
+    }
+
+    @Override
+    public int getRowCount() {
+        return size;
+    }
+
+    @Override
+    public void setMaximumRow(int nrows) {
+        if (nrows > stored) {
+            try {
+                file.ensureCapacity(nrows);
+            } catch (IOException e) {
+                throw new RuntimeException("Could not grow column file.", e);
+            }
+            long defaultValue = getDefaultLong();
+            for (int row = stored; row < nrows; row++) {
+                file.putLong(row, defaultValue);
+            }
+            stored = nrows;
+            file.setRowCount(nrows);
+        }
+        size = nrows;
+    }
+
+    @Override
+    public long getLong(int row) throws DataTypeException {
+        if (row < 0 || row >= size) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + row);
+        }
+        return file.getLong(row);
+    }
+
+    @Override
+    public void setLong(long val, int row) throws DataTypeException {
+        if (m_readOnly) {
+            throw new DataTypeException(this.getClass());
+        } else if (row < 0 || row >= size) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + row);
+        }
+        // get the previous value
+        long prev = file.getLong(row);
+
+        // exit early if no change
+        if (prev == val)
+            return;
+
+        // set the new value
+        file.putLong(row, val);
+
+        // fire a change event
+        fireColumnEvent(row, prev);
+    }
+
+    @Override
+    public void initLong(long val, int row) {
+        if (row < 0 || row >= size) {
+            throw new IllegalArgumentException("Row index out of bounds: "
+                    + row);
+        }
+        file.putLong(row, val);
+    }
+
+    @Override
+    public void truncate(int nrows) {
+        if (nrows < stored) {
+            stored = nrows;
+            size = Math.min(size, nrows);
+            file.setRowCount(nrows);
+        }
+    }
+
+    @Override
+    public void force() {
+        file.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
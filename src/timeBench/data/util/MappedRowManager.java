@@ -0,0 +1,243 @@
+package timeBench.data.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import prefuse.data.Table;
+import prefuse.data.util.RowManager;
+import prefuse.util.collections.IntIterator;
+
+/**
+ * Row manager that keeps the released rows of a table in a memory-mapped
+ * bitmap (see {@link MappedColumnFile} for the layout; values are 64-bit
+ * words of the bitmap), so that a table backed by {@link MappedColumn}s can
+ * be opened again without registering every stored row and without reviving
+ * removed rows.
+ *
+ * <p>
+ * In contrast to {@link RowManager}, releasing the last row does not shrink
+ * the table. The maximum row is always the number of stored rows minus one,
+ * which keeps it consistent with the mapped columns. Released rows are reused
+ * in ascending order.
+ */
+public class MappedRowManager extends RowManager {
+
+    private final MappedColumnFile file;
+    private int rows;
+    private int released;
+
+    /**
+     * first word of the bitmap that may contain a released row
+     */
+    private int firstFree = 0;
+
+    /**
+     * Open the row file of a table or create it if it does not exist. The
+     * table must not have any rows yet.
+     *
+     * @param table
+     *            the table
+     * @param path
+     *            the row file
+     * @param storedRows
+     *            the number of rows stored in the columns of the table; if
+     *            the row file is new, all these rows are valid
+     * @throws IOException
+     *             if the file cannot be mapped, has an incompatible header, or
+     *             does not match the number of stored rows
+     */
+    public MappedRowManager(Table table, File path, int storedRows)
+            throws IOException {
+        super(table);
+        this.file = new MappedColumnFile(path, 8);
+        try {
+            if (file.getRowCount() == 0) {
+                file.setRowCount(storedRows);
+                file.setReleasedCount(0);
+            } else if (file.getRowCount() != storedRows) {
+                throw new IOException("Row file " + path
+                        + " does not match the number of stored rows.");
+            }
+            this.rows = storedRows;
+            this.released = (int) file.getReleasedCount();
+            file.ensureCapacity(words(rows));
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    private static int words(int rows) {
+        return (rows + 63) >>> 6;
+    }
+
+    private boolean isReleased(int row) {
+        return (file.getLong(row >>> 6) & (1l << row)) != 0;
+    }
+
+    private void setReleased(int row, boolean value) {
+        long word = file.getLong(row >>> 6);
+        file.putLong(row >>> 6, value ? word | (1l << row) : word
+                & ~(1l << row));
+    }
+
+    @Override
+    public int getMinimumRow() {
+        return 0;
+    }
+
+    @Override
+    public int getMaximumRow() {
+        return rows - 1;
+    }
+
+    @Override
+    public int getRowCount() {
+        return rows - released;
+    }
+
+    @Override
+    public boolean isValidRow(int row) {
+        return row >= 0 && row < rows && !isReleased(row);
+    }
+
+    @Override
+    public void clear() {
+        rows = 0;
+        released = 0;
+        firstFree = 0;
+        file.setRowCount(0);
+        file.setReleasedCount(0);
+    }
+
+    @Override
+    public int addRow() {
+        if (released > 0) {
+            int words = words(rows);
+            for (int w = firstFree; w < words; w++) {
+                long word = file.getLong(w);
+                if (word != 0) {
+                    int row = (w << 6) + Long.numberOfTrailingZeros(word);
+                    setReleased(row, false);
+                    file.setReleasedCount(--released);
+                    firstFree = w;
+                    return row;
+                }
+            }
+        }
+        int row = rows;
+        try {
+            file.ensureCapacity(words(row + 1));
+        } catch (IOException e) {
+            throw new RuntimeException("Could not grow row file.", e);
+        }
+        // bits beyond the stored rows may remain from a truncation
+        setReleased(row, false);
+        rows = row + 1;
+        file.setRowCount(rows);
+        return row;
+    }
+
+    @Override
+    public boolean releaseRow(int row) {
+        if (!isValidRow(row)) {
+            return false;
+        }
+        setReleased(row, true);
+        file.setReleasedCount(++released);
+        firstFree = Math.min(firstFree, row >>> 6);
+        return true;
+    }
+
+    @Override
+    public IntIterator rows() {
+        return rows(false);
+    }
+
+    @Override
+    public IntIterator rows(boolean reverse) {
+        return new RowIterator(reverse);
+    }
+
+    /**
+     * Discard rows from the given row on, so that the row file matches
+     * truncated columns (see {@link MappedColumn#truncate(int)}).
+     *
+     * @param nrows
+     *            the number of rows to keep
+     */
+    public void truncate(int nrows) {
+        if (nrows < rows) {
+            for (int row = nrows; row < rows; row++) {
+                if (isReleased(row)) {
+                    released--;
+                }
+            }
+            rows = nrows;
+            file.setRowCount(rows);
+            file.setReleasedCount(released);
+        }
+    }
+
+    /**
+     * Write changes to the storage device.
+     */
+    public void force() {
+        file.force();
+    }
+
+    /**
+     * Close the row file. The row manager must not be used afterwards.
+     *
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public void close() throws IOException {
+        file.close();
+    }
+
+    /**
+     * Iterates over valid rows in ascending or descending order.
+     */
+    private class RowIterator extends IntIterator {
+
+        private final boolean reverse;
+        private int next;
+
+        RowIterator(boolean reverse) {
+            this.reverse = reverse;
+            this.next = advance(reverse ? rows - 1 : 0);
+        }
+
+        private int advance(int row) {
+            while (row >= 0 && row < rows) {
+                if (released == 0 || !isReleased(row)) {
+                    return row;
+                }
+                row += reverse ? -1 : 1;
+            }
+            return -1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public int nextInt() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            int row = next;
+            next = advance(reverse ? row - 1 : row + 1);
+            return row;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package timeBench.data.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.Logger;
+
+import prefuse.data.Table;
+import prefuse.data.column.BooleanColumn;
+import prefuse.data.column.Column;
+import prefuse.data.column.ExpressionColumn;
+import prefuse.data.column.ObjectColumn;
+
+/**
+ * Estimated memory usage of the tables, indices, and caches of a temporal
+ * dataset, broken down by structure and column.
+ *
+ * <p>
+ * Estimates assume a 64-bit JVM without compressed references. They include
+ * the arrays that hold column values and index entries and a shallow estimate
+ * of values stored in object columns (strings and primitive arrays are
+ * counted with their content). Tuples, listeners, and objects shared between
+ * rows (e.g., granularities) are not included. Columns stored in
+ * memory-mapped files are reported separately from the Java heap.
+ *
+ * @see timeBench.data.TemporalDataset#getMemoryReport()
+ */
+public class MemoryReport {
+
+    private static final Logger log = Logger.getLogger(MemoryReport.class);
+
+    /**
+     * estimated size of an object header
+     */
+    public static final int OBJECT_HEADER = 16;
+
+    /**
+     * estimated size of an array header including the length
+     */
+    public static final int ARRAY_HEADER = 16;
+
+    /**
+     * estimated size of a reference
+     */
+    public static final int REFERENCE = 8;
+
+    /**
+     * estimated size of an entry in a tree map or hash map, excluding boxed
+     * keys and values
+     */
+    public static final int MAP_ENTRY = 40;
+
+    private final List<Entry> entries = new ArrayList<Entry>();
+
+    /**
+     * Add the estimated memory usage of an index, cache, or other structure
+     * on the Java heap.
+     *
+     * @param structure
+     *            the structure, e.g., "object id index"
+     * @param name
+     *            the part of the structure, e.g., a column name
+     * @param rows
+     *            the number of rows or entries
+     * @param bytes
+     *            the estimated size in bytes
+     */
+    public void add(String structure, String name, int rows, long bytes) {
+        entries.add(new Entry(structure, name, rows, bytes, false));
+    }
+
+    /**
+     * Add the estimated memory usage of each stored column of a table.
+     * Derived columns are skipped.
+     *
+     * @param structure
+     *            the structure, e.g., "temporal objects"
+     * @param table
+     *            the table
+     */
+    public void addTable(String structure, Table table) {
+        for (int i = 0; i < table.getColumnCount(); i++) {
+            addColumn(structure, table.getColumnName(i), table.getColumn(i));
+        }
+    }
+
+    /**
+     * Add the estimated memory usage of a column. Derived columns are
+     * skipped.
+     *
+     * @param structure
+     *            the structure the column belongs to
+     * @param name
+     *            the column name
+     * @param col
+     *            the column
+     */
+    public void addColumn(String structure, String name, Column col) {
+        int rows = col.getRowCount();
+        if (col instanceof ExpressionColumn) {
+            return;
+        } else if (col instanceof MappedColumn) {
+            int stored = ((MappedColumn) col).getStoredRowCount();
+            entries.add(new Entry(structure, name, rows, (long) stored
+                    * valueSize(col.getColumnType()), true));
+        } else if (col instanceof LongArrayColumn) {
+            entries.add(new Entry(structure, name, rows, ARRAY_HEADER + 8l
+                    * ((LongArrayColumn) col).capacity(), false));
+        } else if (col instanceof IntArrayColumn) {
+            entries.add(new Entry(structure, name, rows, ARRAY_HEADER + 4l
+                    * ((IntArrayColumn) col).capacity(), false));
+        } else if (col instanceof DoubleArrayColumn) {
+            entries.add(new Entry(structure, name, rows, ARRAY_HEADER + 8l
+                    * ((DoubleArrayColumn) col).capacity(), false));
+        } else if (col instanceof DictionaryColumn) {
+            DictionaryColumn dc = (DictionaryColumn) col;
+            long bytes = ARRAY_HEADER + 4l * dc.capacity();
+            for (int code = 0; code < dc.getDictionarySize(); code++) {
+                bytes += REFERENCE + MAP_ENTRY + estimate(dc.getValue(code));
+            }
+            entries.add(new Entry(structure, name, rows, bytes, false));
+        } else if (col instanceof BooleanColumn) {
+            entries.add(new Entry(structure, name, rows, ARRAY_HEADER
+                    + (rows + 63) / 64 * 8, false));
+        } else if (col instanceof ObjectColumn
+                || !col.getColumnType().isPrimitive()) {
+            long bytes = ARRAY_HEADER + (long) rows * REFERENCE;
+            for (int row = 0; row < rows; row++) {
+                bytes += estimate(col.get(row));
+            }
+            entries.add(new Entry(structure, name, rows, bytes, false));
+        } else {
+            // prefuse columns do not expose their capacity
+            entries.add(new Entry(structure, name, rows, ARRAY_HEADER
+                    + (long) rows * valueSize(col.getColumnType()), false));
+        }
+    }
+
+    /**
+     * Estimate the size of a value stored in an object column.
+     *
+     * @param value
+     *            the value
+     * @return the estimated size in bytes (0 for <tt>null</tt>)
+     */
+    public static long estimate(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return OBJECT_HEADER + 8 + ARRAY_HEADER + 2l
+                    * ((String) value).length();
+        } else if (value instanceof int[]) {
+            return ARRAY_HEADER + 4l * ((int[]) value).length;
+        } else if (value instanceof long[]) {
+            return ARRAY_HEADER + 8l * ((long[]) value).length;
+        } else if (value instanceof double[]) {
+            return ARRAY_HEADER + 8l * ((double[]) value).length;
+        } else if (value instanceof Object[]) {
+            return ARRAY_HEADER + (long) REFERENCE * ((Object[]) value).length;
+        } else if (value instanceof Long || value instanceof Double) {
+            return OBJECT_HEADER + 8;
+        } else {
+            return OBJECT_HEADER + REFERENCE;
+        }
+    }
+
+    private static int valueSize(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == boolean.class || type == byte.class) {
+            return 1;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+
+    /**
+     * Get all entries of the report in the order they were added.
+     *
+     * @return an unmodifiable list of entries
+     */
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Get the estimated heap usage of all structures.
+     *
+     * @return the size in bytes
+     */
+    public long getHeapBytes() {
+        return getHeapBytes(null);
+    }
+
+    /**
+     * Get the estimated heap usage of a structure.
+     *
+     * @param structure
+     *            the structure or <tt>null</tt> for all structures
+     * @return the size in bytes
+     */
+    public long getHeapBytes(String structure) {
+        long bytes = 0;
+        for (Entry entry : entries) {
+            if (!entry.mapped
+                    && (structure == null || structure.equals(entry.structure))) {
+                bytes += entry.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the size of all columns stored in memory-mapped files.
+     *
+     * @return the size in bytes
+     */
+    public long getMappedBytes() {
+        long bytes = 0;
+        for (Entry entry : entries) {
+            if (entry.mapped) {
+                bytes += entry.bytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Log the report at info level.
+     */
+    public void log() {
+        log(log, Level.INFO);
+    }
+
+    /**
+     * Log the report, one line per entry followed by the totals.
+     *
+     * @param logger
+     *            the logger
+     * @param level
+     *            the log level
+     */
+    public void log(Logger logger, Level level) {
+        if (logger.isEnabledFor(level)) {
+            for (Entry entry : entries) {
+                logger.log(level, entry);
+            }
+            logger.log(level, "total heap: " + getHeapBytes()
+                    + " bytes, mapped: " + getMappedBytes() + " bytes");
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Entry entry : entries) {
+            sb.append(entry).append('\n');
+        }
+        sb.append("total heap: ").append(getHeapBytes())
+                .append(" bytes, mapped: ").append(getMappedBytes())
+                .append(" bytes");
+        return sb.toString();
+    }
+
+    /**
+     * Estimated memory usage of one part of a structure.
+     */
+    public static class Entry {
+        private final String structure;
+        private final String name;
+        private final int rows;
+        private final long bytes;
+        private final boolean mapped;
+
+        Entry(String structure, String name, int rows, long bytes,
+                boolean mapped) {
+            this.structure = structure;
+            this.name = name;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.mapped = mapped;
+        }
+
+        public String getStructure() {
+            return structure;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Get the number of rows of a column or entries of an index.
+         */
+        public int getRows() {
+            return rows;
+        }
+
+        /**
+         * Get the estimated size in bytes.
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Check whether the values are stored in a memory-mapped file rather
+         * than the Java heap.
+         */
+        public boolean isMapped() {
+            return mapped;
+        }
+
+        @Override
+        public String toString() {
+            return structure + " / " + name + ": " + rows + " rows, " + bytes
+                    + " bytes" + (mapped ? " (mapped)" : "");
+        }
+    }
+}
@@ -144,7 +144,7 @@ class RedBlackTree extends BinarySearchTree
 	Node y = (Node) x.left;
 
 	x.left = y.right;
-	if (x.left != null)
+	if (y.right != nil)
 	    y.right.parent = x;
 
 	y.parent = x.parent;
@@ -247,7 +247,10 @@ class RedBlackTree extends BinarySearchTree
 	if (z.left != nil && z.right != nil)
 	    y = (Node) successor(z);
 
-	if (z.left != nil)
+	// color of the node that is removed from its position
+	Color removedColor = y.color;
+
+	if (y.left != nil)
 	    x = (Node) y.left;
 	else
 	    x = (Node) y.right;
@@ -268,6 +271,7 @@ class RedBlackTree extends BinarySearchTree
 	    y.right = z.right;
 	    y.right.parent = y;
 	    y.parent = z.parent;
+	    y.color = z.color;
 	    if (z == root)
 		root = y;
 	    else
@@ -277,7 +281,7 @@ class RedBlackTree extends BinarySearchTree
 		    z.parent.right = y;
 	}
 
-	if (y.color == BLACK)
+	if (removedColor == BLACK)
 	    deleteFixup(x);
     }
     
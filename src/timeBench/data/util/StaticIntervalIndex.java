@@ -0,0 +1,500 @@
+package timeBench.data.util;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import prefuse.data.Table;
+import prefuse.data.event.EventConstants;
+import prefuse.data.event.TableListener;
+import prefuse.util.collections.IntArrayIterator;
+import prefuse.util.collections.IntIterator;
+import timeBench.data.TemporalDataset;
+import timeBench.data.TemporalElement;
+import timeBench.data.TemporalElementStore;
+import timeBench.data.TemporalObject;
+
+/**
+ * Interval index over the anchored temporal elements of a store, which is
+ * built in bulk for read-mostly data. The intervals are kept in primitive
+ * arrays sorted by their lower end. The sorted arrays form an implicit
+ * balanced search tree: the range <tt>[l, r)</tt> has its root at
+ * <tt>(l + r) / 2</tt> and <tt>maxHigh</tt> holds the maximal upper end of
+ * the subtree of each position.
+ *
+ * <p>
+ * The arrays are built with a radix sort in linear time and take 28 bytes per
+ * interval instead of a tree node and a map entry per interval (see
+ * {@link TemporalIndex}). Batches of ascending queries are answered in one
+ * sweep over the arrays. Any change to the temporal elements marks the index
+ * as outdated and it is rebuilt on the next query.
+ */
+public class StaticIntervalIndex implements IntervalIndex {
+
+    private static final int RADIX_BITS = 16;
+
+    private final TemporalElementStore store;
+    private final TemporalDataset dataset;
+    private final IntervalComparator comparator;
+
+    private final Listener listener = new Listener();
+
+    // sorted by lows (ties by row)
+    private long[] lows;
+    private long[] highs;
+    private int[] rows;
+    private long[] maxHigh;
+    private int size = 0;
+
+    private boolean outdated = true;
+
+    /**
+     * Create a static interval index over the anchored temporal elements of
+     * a store.
+     *
+     * @param store
+     *            the temporal element store
+     * @param comparator
+     *            the comparator of intervals
+     */
+    public StaticIntervalIndex(TemporalElementStore store,
+            IntervalComparator comparator) {
+        this(store, null, comparator);
+    }
+
+    /**
+     * Create a static interval index over the anchored temporal elements of a
+     * dataset, which also resolves its temporal objects.
+     *
+     * @param dataset
+     *            the temporal dataset
+     * @param comparator
+     *            the comparator of intervals
+     */
+    public StaticIntervalIndex(TemporalDataset dataset,
+            IntervalComparator comparator) {
+        this(dataset.getTemporalElements(), dataset, comparator);
+    }
+
+    private StaticIntervalIndex(TemporalElementStore store,
+            TemporalDataset dataset, IntervalComparator comparator) {
+        this.store = store;
+        this.dataset = dataset;
+        this.comparator = comparator;
+        store.getNodeTable().addTableListener(listener);
+        store.getEdgeTable().addTableListener(listener);
+        build();
+    }
+
+    /**
+     * Stop listening to the temporal element store.
+     */
+    public void dispose() {
+        store.getNodeTable().removeTableListener(listener);
+        store.getEdgeTable().removeTableListener(listener);
+    }
+
+    /**
+     * Build the sorted arrays and the implicit tree from the current temporal
+     * elements.
+     */
+    private void build() {
+        Table table = store.getNodeTable();
+        int n = 0;
+        long[] lo = new long[table.getRowCount()];
+        long[] hi = new long[lo.length];
+        int[] r = new int[lo.length];
+        IntIterator it = table.rows();
+        while (it.hasNext()) {
+            int row = it.nextInt();
+            if (store.isAnchored(row)) {
+                lo[n] = store.getInf(row);
+                hi[n] = store.getSup(row);
+                r[n] = row;
+                n++;
+            }
+        }
+        sort(lo, hi, r, n);
+
+        lows = lo;
+        highs = hi;
+        rows = r;
+        size = n;
+        maxHigh = new long[n];
+        buildMax(0, n);
+        outdated = false;
+    }
+
+    /**
+     * Compute the maximal upper end of the subtree of range [l, r) bottom-up.
+     * The recursion depth is logarithmic.
+     */
+    private long buildMax(int l, int r) {
+        if (l >= r) {
+            return Long.MIN_VALUE;
+        }
+        int m = (l + r) >>> 1;
+        long max = Math.max(highs[m],
+                Math.max(buildMax(l, m), buildMax(m + 1, r)));
+        maxHigh[m] = max;
+        return max;
+    }
+
+    /**
+     * Sort the first <tt>n</tt> entries of the parallel arrays by the lower
+     * end using a stable least significant digit radix sort. As rows are
+     * collected in ascending order, ties are ordered by row.
+     */
+    static void sort(long[] lo, long[] hi, int[] r, int n) {
+        long[] lo2 = new long[n];
+        long[] hi2 = new long[n];
+        int[] r2 = new int[n];
+        int[] counts = new int[1 << RADIX_BITS];
+        int mask = (1 << RADIX_BITS) - 1;
+        boolean swapped = false;
+        for (int shift = 0; shift < 64; shift += RADIX_BITS) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[digit(lo[i], shift, mask)]++;
+            }
+            // skip digits that are equal for all entries (e.g., high bits)
+            if (n == 0 || counts[digit(lo[0], shift, mask)] == n) {
+                continue;
+            }
+            int sum = 0;
+            for (int d = 0; d < counts.length; d++) {
+                int c = counts[d];
+                counts[d] = sum;
+                sum += c;
+            }
+            for (int i = 0; i < n; i++) {
+                int pos = counts[digit(lo[i], shift, mask)]++;
+                lo2[pos] = lo[i];
+                hi2[pos] = hi[i];
+                r2[pos] = r[i];
+            }
+            long[] tl = lo; lo = lo2; lo2 = tl;
+            long[] th = hi; hi = hi2; hi2 = th;
+            int[] tr = r; r = r2; r2 = tr;
+            swapped = !swapped;
+        }
+        if (swapped) {
+            System.arraycopy(lo, 0, lo2, 0, n);
+            System.arraycopy(hi, 0, hi2, 0, n);
+            System.arraycopy(r, 0, r2, 0, n);
+        }
+    }
+
+    private static int digit(long value, int shift, int mask) {
+        // flip the sign bit, so that negative values sort first
+        return (int) ((value ^ Long.MIN_VALUE) >>> shift) & mask;
+    }
+
+    private void ensureBuilt() {
+        if (outdated) {
+            build();
+        }
+    }
+
+    @Override
+    public IntervalComparator getComparator() {
+        return comparator;
+    }
+
+    @Override
+    public int minimum() {
+        ensureBuilt();
+        return size > 0 ? rows[0] : -1;
+    }
+
+    /**
+     * Get the row with the maximal upper end.
+     */
+    @Override
+    public int maximum() {
+        ensureBuilt();
+        if (size == 0) {
+            return -1;
+        }
+        // descend to the position whose upper end is the maximum of the tree
+        int l = 0;
+        int r = size;
+        long max = maxHigh[(l + r) >>> 1];
+        while (true) {
+            int m = (l + r) >>> 1;
+            if (highs[m] == max) {
+                return rows[m];
+            } else if (m > l && maxHigh[(l + m) >>> 1] == max) {
+                r = m;
+            } else {
+                l = m + 1;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        ensureBuilt();
+        return size;
+    }
+
+    @Override
+    public IntIterator rows(long lo, long hi) {
+        return rows(lo, hi, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public IntIterator rows(long val) {
+        return rows(val, val, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Finds up to <tt>limit</tt> intervals that overlap with a given
+     * interval. Rows are returned sorted by the lower end of the interval.
+     * The iterator keeps working on the arrays it was created with, even if
+     * the index is rebuilt in the meantime.
+     */
+    @Override
+    public IntIterator rows(long lo, long hi, int limit) {
+        ensureBuilt();
+        return new SearchIterator(lo, hi, limit);
+    }
+
+    @Override
+    public Iterator<TemporalObject> temporalObjects(long value) {
+        return temporalObjects(value, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Iterator<TemporalObject> temporalObjects(long low, long high) {
+        if (dataset == null) {
+            throw new UnsupportedOperationException(
+                    "Temporal objects are resolved by the interval index of a dataset.");
+        }
+        IntIterator elementRows = rows(low, high, Integer.MAX_VALUE);
+        int[] objects = new int[16];
+        int n = 0;
+        while (elementRows.hasNext()) {
+            int[] objectRows = dataset
+                    .getTemporalObjectRowsByElementRow(elementRows.nextInt());
+            if (n + objectRows.length > objects.length) {
+                objects = Arrays.copyOf(objects,
+                        Math.max(2 * objects.length, n + objectRows.length));
+            }
+            System.arraycopy(objectRows, 0, objects, n, objectRows.length);
+            n += objectRows.length;
+        }
+        return dataset.getNodeTable().tuples(
+                new IntArrayIterator(objects, 0, n));
+    }
+
+    @Override
+    public void rows(long[] values, QueryVisitor visitor) {
+        rows(values, values, visitor);
+    }
+
+    /**
+     * Finds the intervals that overlap with each of a batch of intervals in
+     * one sweep over the sorted arrays (see
+     * {@link IntervalTree#rows(long[], long[], IntervalIndex.QueryVisitor)}).
+     */
+    @Override
+    public void rows(long[] lo, long[] hi, QueryVisitor visitor) {
+        IntervalTree.checkBatch(lo, hi);
+        ensureBuilt();
+        int[] active = new int[16];
+        int count = 0;
+        int next = size;
+        for (int q = 0; q < lo.length; q++) {
+            long low = lo[q];
+            long high = hi[q];
+            boolean restart = (q == 0);
+            if (!restart) {
+                // drop intervals that ended before this query
+                int kept = 0;
+                for (int i = 0; i < count; i++) {
+                    if (highs[active[i]] >= low) {
+                        active[kept++] = active[i];
+                    }
+                }
+                count = kept;
+                // add intervals that start up to the end of this query
+                int skipped = 0;
+                while (next < size && lows[next] <= high) {
+                    if (highs[next] >= low) {
+                        if (count == active.length) {
+                            active = Arrays.copyOf(active, count * 2);
+                        }
+                        active[count++] = next;
+                    } else if (++skipped > IntervalTree.MAX_SWEEP_SKIP) {
+                        restart = true;
+                        break;
+                    }
+                    next++;
+                }
+            }
+            if (restart) {
+                count = 0;
+                SearchIterator it = new SearchIterator(low, high,
+                        Integer.MAX_VALUE);
+                while (it.hasNext()) {
+                    if (count == active.length) {
+                        active = Arrays.copyOf(active, count * 2);
+                    }
+                    active[count++] = it.nextPosition();
+                }
+                next = firstAfter(high);
+            }
+            for (int i = 0; i < count; i++) {
+                int pos = active[i];
+                if (comparator.match(low, high, lows[pos], highs[pos])) {
+                    visitor.visit(q, rows[pos]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Binary search for the first position whose lower end is after a value.
+     */
+    private int firstAfter(long value) {
+        int l = 0;
+        int r = size;
+        while (l < r) {
+            int m = (l + r) >>> 1;
+            if (lows[m] > value) {
+                r = m;
+            } else {
+                l = m + 1;
+            }
+        }
+        return l;
+    }
+
+    /**
+     * Add the estimated memory usage of the index to a report.
+     *
+     * @param report
+     *            the report
+     * @param structure
+     *            the name of the index in the report
+     */
+    public void reportMemory(MemoryReport report, String structure) {
+        long capacity = rows.length;
+        report.add(structure, "sorted intervals", size, 4
+                * MemoryReport.ARRAY_HEADER + capacity * (8 + 8 + 4) + 8l
+                * maxHigh.length);
+    }
+
+    /**
+     * In-order traversal of the implicit tree with an explicit stack of
+     * ranges, which skips ranges outside the query bounds.
+     */
+    private class SearchIterator extends IntIterator {
+        private final long low;
+        private final long high;
+        private int remaining;
+
+        private final long[] lows = StaticIntervalIndex.this.lows;
+        private final long[] highs = StaticIntervalIndex.this.highs;
+        private final int[] rows = StaticIntervalIndex.this.rows;
+        private final long[] maxHigh = StaticIntervalIndex.this.maxHigh;
+
+        // the tree is balanced, so 64 levels suffice
+        private final int[] stackL = new int[64];
+        private final int[] stackR = new int[64];
+        private int depth = 0;
+        private int next = -1;
+
+        SearchIterator(long low, long high, int limit) {
+            this.low = low;
+            this.high = high;
+            this.remaining = limit;
+            pushLeft(0, size);
+            advance();
+        }
+
+        private boolean mayOverlap(int l, int r) {
+            // lows are sorted, so the minimum of a range is its first entry
+            return l < r && low <= maxHigh[(l + r) >>> 1] && lows[l] <= high;
+        }
+
+        private void pushLeft(int l, int r) {
+            while (mayOverlap(l, r)) {
+                stackL[depth] = l;
+                stackR[depth] = r;
+                depth++;
+                r = (l + r) >>> 1;
+            }
+        }
+
+        private void advance() {
+            next = -1;
+            if (remaining <= 0) {
+                return;
+            }
+            while (depth > 0) {
+                depth--;
+                int l = stackL[depth];
+                int r = stackR[depth];
+                int m = (l + r) >>> 1;
+                if (lows[m] > high) {
+                    // all remaining positions are further right
+                    depth = 0;
+                    return;
+                }
+                pushLeft(m + 1, r);
+                if (comparator.match(low, high, lows[m], highs[m])) {
+                    next = m;
+                    remaining--;
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next >= 0;
+        }
+
+        @Override
+        public int nextInt() {
+            return rows[nextPosition()];
+        }
+
+        int nextPosition() {
+            if (next < 0) {
+                throw new NoSuchElementException();
+            }
+            int pos = next;
+            advance();
+            return pos;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Marks the index as outdated on changes of temporal elements or their
+     * relationships (which determine whether sets are anchored).
+     */
+    private class Listener implements TableListener {
+        @Override
+        public void tableChanged(Table t, int start, int end, int col, int type) {
+            if (t == store.getNodeTable() && type == EventConstants.UPDATE
+                    && col != EventConstants.ALL_COLUMNS) {
+                String name = t.getColumnName(col);
+                if (!TemporalElement.INF.equals(name)
+                        && !TemporalElement.SUP.equals(name)
+                        && !TemporalElement.KIND.equals(name)) {
+                    return;
+                }
+            }
+            outdated = true;
+        }
+    }
+}
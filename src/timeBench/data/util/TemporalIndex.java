@@ -26,28 +26,36 @@
 
 package timeBench.data.util;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
-import java.util.List;
 
 import prefuse.data.Table;
 import prefuse.data.column.Column;
 import prefuse.data.event.EventConstants;
 import prefuse.data.event.TableListener;
 import prefuse.data.expression.Predicate;
-import prefuse.util.collections.CompositeIterator;
+import prefuse.util.collections.IntArrayIterator;
 import prefuse.util.collections.IntIterator;
-import timeBench.data.GenericTemporalElement;
 import timeBench.data.TemporalDataset;
 import timeBench.data.TemporalElement;
+import timeBench.data.TemporalElementStore;
 import timeBench.data.TemporalObject;
+import timeBench.data.expression.AnchoredPredicate;
 import timeBench.data.util.IntervalTree.Node;
 
 /**
  * Implements an interval tree as described in Section 14.3 of <i>Introduction
  * to Algorithms</i>, Second edition.
+ * 
+ * <p>
+ * The index is built over the temporal elements of a
+ * {@link TemporalElementStore} and maintained by listening to its tables.
+ * Inserted and updated elements, as well as sets whose children changed, are
+ * collected and (re-)indexed before the next query, because whether a set is
+ * anchored depends on its children. Datasets that share the store use a view
+ * of the same tree (see {@link #TemporalIndex(TemporalIndex, TemporalDataset)}).
  */
 
 public class TemporalIndex implements TableListener,  IntervalIndex {
@@ -64,24 +72,86 @@ public class TemporalIndex implements TableListener,  IntervalIndex {
 	
 	private int colHiInd; 
 	
+	private int colKindInd;
+	
 	private Predicate rowsPredicate;
 	
+	private TemporalElementStore store;
+	
 	private TemporalDataset dataset;
 	
+	/**
+	 * the index that maintains the tree (this index unless it is a view)
+	 */
+	private TemporalIndex elementIndex;
+	
+	/**
+	 * element rows to (re-)index before the next query
+	 */
+	private BitSet pending = new BitSet();
+	
 	public TemporalIndex(TemporalDataset dataset, Predicate rowsPredicate,
 			IntervalComparator comparator) {
+		this(dataset.getTemporalElements(), rowsPredicate, comparator);
 		this.dataset = dataset;
-		table = dataset.getTemporalElements().getNodeTable();
+	}
+
+	/**
+	 * Create an interval index over the temporal elements of a store.
+	 * 
+	 * @param store
+	 *            the temporal element store
+	 * @param rowsPredicate
+	 *            the temporal elements to index or <tt>null</tt> for all
+	 * @param comparator
+	 *            the comparator of intervals
+	 */
+	public TemporalIndex(TemporalElementStore store, Predicate rowsPredicate,
+			IntervalComparator comparator) {
+		this.store = store;
+		this.elementIndex = this;
+		this.comparator = comparator;
+		table = store.getNodeTable();
 		table.addTableListener(this);
+		store.getEdgeTable().addTableListener(new EdgeListener());
         Column colLo = table.getColumn(TemporalElement.INF);
         Column colHi = table.getColumn(TemporalElement.SUP);
         colLoInd = table.getColumnNumber(colLo);
         colHiInd = table.getColumnNumber(colHi);
+        colKindInd = table.getColumnNumber(TemporalElement.KIND);
         intervalTree = new IntervalTree(table, colLo, colHi, comparator);
         this.rowsPredicate = rowsPredicate;
         index();
 	}
 
+	/**
+	 * Create a view of an interval index for a dataset that uses the same
+	 * temporal element store. The view shares the tree with the index and
+	 * additionally resolves the temporal objects of the dataset.
+	 * 
+	 * @param elementIndex
+	 *            the interval index of the temporal element store
+	 * @param dataset
+	 *            the temporal dataset
+	 */
+	public TemporalIndex(TemporalIndex elementIndex, TemporalDataset dataset) {
+		if (dataset.getTemporalElements() != elementIndex.store) {
+			throw new IllegalArgumentException(
+					"The dataset does not use the indexed temporal element store.");
+		}
+		this.elementIndex = elementIndex.elementIndex;
+		this.dataset = dataset;
+		this.store = elementIndex.store;
+		this.intervalTree = elementIndex.intervalTree;
+		this.treeNodes = elementIndex.treeNodes;
+		this.comparator = elementIndex.comparator;
+		this.table = elementIndex.table;
+		this.colLoInd = elementIndex.colLoInd;
+		this.colHiInd = elementIndex.colHiInd;
+		this.colKindInd = elementIndex.colKindInd;
+		this.rowsPredicate = elementIndex.rowsPredicate;
+	}
+
 	@Override
 	public void tableChanged(Table t, int start, int end, int col, int type) {
 		switch (type) {
@@ -92,25 +162,85 @@ public class TemporalIndex implements TableListener,  IntervalIndex {
 					intervalTree.delete(node);
 					treeNodes.remove(i);
 				}
+				// the row may be reused before the next query
+				pending.clear(i);
 			}
 			return;
 		case EventConstants.INSERT:
-			for (int i = start; i <= end; i++) {
-				Node node = intervalTree.insert(i);
-				treeNodes.put(i, node);
-			}
+			pending.set(start, end + 1);
 			return;
 		case EventConstants.UPDATE:
-			if (col == colHiInd || col == colLoInd || col == EventConstants.ALL_COLUMNS) {
-				for (int i = start; i <= end; i++) {
-					Node node = treeNodes.get(i);
-					if (node != null) {
-						intervalTree.delete(node);
-						intervalTree.treeInsert(node);
+			if (col == colHiInd || col == colLoInd || col == colKindInd
+					|| col == EventConstants.ALL_COLUMNS) {
+				pending.set(start, end + 1);
+			}
+			return;
+		}
+	}
+
+	/**
+	 * Listens to the element relationships, because whether a set is anchored
+	 * depends on its children. The adjacency lists of the store may not be
+	 * updated yet, so the parent is only marked.
+	 */
+	private class EdgeListener implements TableListener {
+		@Override
+		public void tableChanged(Table t, int start, int end, int col, int type) {
+			for (int i = start; i <= end; i++) {
+				if (t.isValidRow(i)) {
+					int parent = store.getTargetNode(i);
+					if (parent >= 0) {
+						pending.set(parent);
 					}
 				}
 			}
-			return;
+		}
+	}
+
+	/**
+	 * (Re-)index all pending element rows. The nodes of all pending rows are
+	 * removed before any is inserted again, because inserting a node compares
+	 * it with the current values of the other rows in the tree.
+	 */
+	private void flush() {
+		while (!pending.isEmpty()) {
+			BitSet rows = pending;
+			pending = new BitSet();
+			BitSet indexed = new BitSet();
+			for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+				Node node = treeNodes.remove(row);
+				if (node != null) {
+					intervalTree.delete(node);
+					indexed.set(row);
+				}
+			}
+			for (int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)) {
+				if (!table.isValidRow(row)) {
+					continue;
+				}
+				boolean accepted = accept(row);
+				if (accepted) {
+					treeNodes.put(row, intervalTree.insert(row));
+				}
+				if (accepted != indexed.get(row)) {
+					// parents may be anchored by this element
+					IntIterator edges = store.outEdgeRows(row);
+					while (edges.hasNext()) {
+						pending.set(store.getTargetNode(edges.nextInt()));
+					}
+				}
+			}
+		}
+	}
+
+	private boolean accept(int row) {
+		if (rowsPredicate == null) {
+			return true;
+		} else if (rowsPredicate instanceof AnchoredPredicate) {
+			// cached by the store instead of evaluated on a tuple
+			return store.isAnchored(row);
+		} else {
+			return rowsPredicate.getBoolean(table.getTuple(row));
 		}
 	}
 
@@ -121,8 +251,29 @@ public class TemporalIndex implements TableListener,  IntervalIndex {
 
 	@Override
 	public int size() {
+		elementIndex.flush();
 		return treeNodes.size();
 	}
+
+	/**
+	 * Add the estimated memory usage of the index to a report. Each indexed
+	 * row takes a tree node and an entry in the map from rows to nodes.
+	 * 
+	 * @param report
+	 *            the report
+	 * @param structure
+	 *            the name of the index in the report
+	 */
+	public void reportMemory(MemoryReport report, String structure) {
+		int nodes = treeNodes.size();
+		// parent, left, right, color, and enclosing tree; row, max, and min
+		long nodeBytes = MemoryReport.OBJECT_HEADER + 5
+				* MemoryReport.REFERENCE + 4 + 8 + 8;
+		long entryBytes = MemoryReport.MAP_ENTRY + MemoryReport.OBJECT_HEADER
+				+ 8;
+		report.add(structure, "interval tree", nodes, nodes
+				* (nodeBytes + entryBytes));
+	}
 	
 	
 
@@ -136,10 +287,7 @@ public class TemporalIndex implements TableListener,  IntervalIndex {
 	 */
 	@Override
 	public IntIterator rows(long value) {
-		final List<Node> result = new ArrayList<Node>();
-		intervalTree.search(value, (Node)intervalTree.root, result);
-		Collections.sort(result);
-		return new NodesIntIterator(result);
+		return rows(value, value, Integer.MAX_VALUE);
 	}
 
 
@@ -153,10 +301,35 @@ public class TemporalIndex implements TableListener,  IntervalIndex {
 	 */
 	@Override
 	public IntIterator rows(long low, long high) {
-		final List<Node> result = new ArrayList<Node>();
-		intervalTree.search(low, high,  (Node)intervalTree.root, result);
-		Collections.sort(result);
-		return new NodesIntIterator(result);
+		return rows(low, high, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Finds up to <tt>limit</tt> intervals that overlap with a given
+	 * interval. The rows are streamed from the tree in sorted order (using the
+	 * provided {@link IntervalComparator}), so the index must not be modified
+	 * while the iterator is in use.
+	 */
+	@Override
+	public IntIterator rows(long low, long high, int limit) {
+		elementIndex.flush();
+		return intervalTree.rows(low, high, limit);
+	}
+
+	@Override
+	public void rows(long[] values, QueryVisitor visitor) {
+		rows(values, values, visitor);
+	}
+
+	/**
+	 * Finds the intervals that overlap with each of a batch of intervals in
+	 * one sweep over the tree. This requires the {@link IntervalComparator} to
+	 * order intervals by their lower ends.
+	 */
+	@Override
+	public void rows(long[] low, long[] high, QueryVisitor visitor) {
+		elementIndex.flush();
+		intervalTree.rows(low, high, visitor);
 	}
 
 
@@ -167,59 +340,32 @@ public class TemporalIndex implements TableListener,  IntervalIndex {
 	 */
 	@Override
 	public Iterator<TemporalObject> temporalObjects(long value) {
-		final List<Node> nodes = new ArrayList<Node>();
-		intervalTree.search(value,  (Node)intervalTree.root, nodes);
-		return getTemporalObjects(nodes);
+		return temporalObjects(value, value);
 	}
 	
 	@Override
 	public Iterator<TemporalObject> temporalObjects(long low, long high) {
-		final List<Node> nodes = new ArrayList<Node>();
-		intervalTree.search(low, high,  (Node)intervalTree.root, nodes);
-		return getTemporalObjects(nodes);
-	}
-
-	/**
-	 * Finds the intervals that overlaps with a given interval. The intervals
-	 * are returned in a sorted order (using the provided
-	 * {@link IntervalComparator}).
-	 * 
-	 * @param interval
-	 *            The interval to overlap with.
-	 */
-
-	private Iterator<TemporalObject> getTemporalObjects(List<Node> temporalElements) {
-		Iterator[] result = new Iterator[temporalElements.size()];
-		int i = 0;
-		for (Node node : temporalElements) {
-			GenericTemporalElement tE = dataset.getTemporalElementByRow(node.row);
-			result[i++] = dataset.getTemporalObjectsByElementId(tE.getId()).iterator();
+		if (dataset == null) {
+			throw new UnsupportedOperationException(
+					"Temporal objects are resolved by the interval index of a dataset.");
 		}
-		return new CompositeIterator(result);
+		return getTemporalObjects(rows(low, high, Integer.MAX_VALUE));
 	}
 
-	private static class NodesIntIterator extends IntIterator {
-		int index = 0;
-		final List<Node> result;
-
-		NodesIntIterator(List<Node> result) {
-			this.result = result;
-		}
-
-		@Override
-		public void remove() {
-		}
-
-		@Override
-		public boolean hasNext() {
-			return index < result.size();
-		}
-
-		@Override
-		public int nextInt() {
-			return result.get(index++).row;
+	@SuppressWarnings("unchecked")
+	private Iterator<TemporalObject> getTemporalObjects(IntIterator elementRows) {
+		// collect object rows from the reverse index (no element proxies)
+		int[] rows = new int[16];
+		int n = 0;
+		while (elementRows.hasNext()) {
+			int[] objectRows = dataset.getTemporalObjectRowsByElementRow(elementRows.nextInt());
+			if (n + objectRows.length > rows.length) {
+				rows = Arrays.copyOf(rows, Math.max(2 * rows.length, n + objectRows.length));
+			}
+			System.arraycopy(objectRows, 0, rows, n, objectRows.length);
+			n += objectRows.length;
 		}
-
+		return dataset.getNodeTable().tuples(new IntArrayIterator(rows, 0, n));
 	}
 
 	/**
@@ -234,10 +380,13 @@ public class TemporalIndex implements TableListener,  IntervalIndex {
 		}
 		// TODO: clear intervaTree (no appropriate method for this yet).
 		
-        IntIterator rows = table.rows(rowsPredicate);
+        IntIterator rows = table.rows();
 		// iterate over all valid values, adding them to the index
 		while (rows.hasNext()) {
 			int r = rows.nextInt();
+			if (!accept(r)) {
+				continue;
+			}
 			Node node = intervalTree.insert(table.getColumnRow(r,  colLoInd));
 			treeNodes.put(r, node);
 		}
@@ -245,7 +394,7 @@ public class TemporalIndex implements TableListener,  IntervalIndex {
 
 	@Override
 	public int minimum() {
-		// TODO Auto-generated method stub
+		elementIndex.flush();
 		return intervalTree.minimum();
 	}
 